@@ -4,6 +4,8 @@ import com.springboot.test.models.Banco;
 import com.springboot.test.models.Cuenta;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 public class Datos {
@@ -28,11 +30,24 @@ public class Datos {
                 .build());
     }
 
+    /**
+     * Cuentas sin id "Cliente 0".."Cliente n-1", para cargas masivas en pruebas de carga
+     */
+    public static List<Cuenta> crearCuentas(int cantidad, BigDecimal saldo) {
+        List<Cuenta> cuentas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            cuentas.add(Cuenta.builder()
+                    .persona("Cliente " + i)
+                    .saldo(saldo)
+                    .build());
+        }
+        return cuentas;
+    }
+
     public static Optional<Banco> crearBanco() {
         return Optional.of(Banco.builder()
                 .id(1L)
                 .nombre("BANCO FINANCIERO")
-                .totalTransferencia(0)
                 .build());
     }
 
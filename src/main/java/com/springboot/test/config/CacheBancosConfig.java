@@ -0,0 +1,98 @@
+package com.springboot.test.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.util.UUID;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Cache de segundo nivel de hibernate con ehcache (JCache, en memoria del proceso).
+ * Cada contexto crea su propio CacheManager: JCache comparte el CacheManager entre todos los que
+ * usan la misma URI, y dos contextos con bases distintas (por ejemplo en las pruebas) se verian
+ * los bancos entre si.
+ *
+ * Con app.cache.bancos.estadisticas=true las regiones se publican como cache.gets (result=hit|miss)
+ * y cache.puts con el tag cache=bancos para las entidades y cache=consultas para los resultados de consultas.
+ */
+@Configuration(proxyBeanMethods = false)
+public class CacheBancosConfig {
+
+    public static final String REGION_BANCOS = "bancos";
+
+    @Bean
+    public HibernatePropertiesCustomizer cacheBancosHibernate(CacheBancosProperties properties) {
+        return hibernateProperties -> {
+            if (!properties.isHabilitado()) {
+                hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, false);
+                return;
+            }
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, crearCacheManager());
+            //Las metricas de las regiones salen de las estadisticas de hibernate
+            hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, properties.isEstadisticas());
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = {"app.cache.bancos.habilitado", "app.cache.bancos.estadisticas"}, havingValue = "true")
+    public MeterBinder cacheBancosMetricas(EntityManagerFactory entityManagerFactory) {
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        return registry -> {
+            registrar(registry, "cache.gets", REGION_BANCOS, "hit", estadisticas,
+                    s -> s.getDomainDataRegionStatistics(REGION_BANCOS).getHitCount());
+            registrar(registry, "cache.gets", REGION_BANCOS, "miss", estadisticas,
+                    s -> s.getDomainDataRegionStatistics(REGION_BANCOS).getMissCount());
+            registrar(registry, "cache.puts", REGION_BANCOS, null, estadisticas,
+                    s -> s.getDomainDataRegionStatistics(REGION_BANCOS).getPutCount());
+
+            registrar(registry, "cache.gets", "consultas", "hit", estadisticas, Statistics::getQueryCacheHitCount);
+            registrar(registry, "cache.gets", "consultas", "miss", estadisticas, Statistics::getQueryCacheMissCount);
+            registrar(registry, "cache.puts", "consultas", null, estadisticas, Statistics::getQueryCachePutCount);
+        };
+
+    }
+
+    private static void registrar(MeterRegistry registry, String nombre, String cache,
+                                  String resultado, Statistics estadisticas, ToDoubleFunction<Statistics> valor) {
+
+        FunctionCounter.Builder<Statistics> contador = FunctionCounter.builder(nombre, estadisticas, valor)
+                .tag("cache", cache);
+        if (resultado != null) {
+            contador.tag("result", resultado);
+        }
+        contador.register(registry);
+
+    }
+
+    private static CacheManager crearCacheManager() {
+
+        ClassLoader classLoader = CacheBancosConfig.class.getClassLoader();
+        XmlConfiguration configuracion = new XmlConfiguration(classLoader.getResource("ehcache.xml"), classLoader);
+        EhcacheCachingProvider proveedor = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName(), classLoader);
+        return proveedor.getCacheManager(URI.create("urn:test-springboot:cache:" + UUID.randomUUID()), configuracion);
+
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.springboot.test.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.cache.bancos")
+public class CacheBancosProperties {
+
+    //Cache de segundo nivel de hibernate para Banco y las consultas cacheables
+    private boolean habilitado = true;
+    //Estadisticas de hibernate para las metricas cache.gets y cache.puts; cuestan en cada operacion
+    //de la sesion, se activan en las pruebas o al revisar la cache y no en produccion
+    private boolean estadisticas = false;
+
+}
@@ -0,0 +1,20 @@
+package com.springboot.test.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.cache.cuentas")
+public class CacheCuentasProperties {
+
+    private boolean habilitado = false;
+    //Nro maximo de cuentas en memoria, al superarlo caffeine desaloja con W-TinyLFU
+    private long tamanioMaximo = 10_000;
+    //Tiempo maximo que una cuenta permanece en la cache desde que se cargo
+    private Duration ttl = Duration.ofSeconds(30);
+
+}
@@ -0,0 +1,27 @@
+package com.springboot.test.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.eventos.saldos")
+public class EventosSaldoProperties {
+
+    //Nro maximo de cuentas por suscripcion, tambien es el maximo de eventos pendientes de un cliente
+    private int maximoCuentas = 100;
+    //Hilos de envio, fijos. Solo la conexion que tiene algo que enviar ocupa un hilo
+    private int hilosEnvio = 4;
+    //Suscripciones con eventos esperando un hilo de envio, una que no cabe se desconecta
+    private int colaEnvios = 1000;
+    //Duracion de una conexion, al vencer el cliente (EventSource) se vuelve a conectar
+    private Duration timeout = Duration.ofMinutes(30);
+    //Cada cuanto se envia un comentario para detectar las conexiones cerradas
+    private Duration latido = Duration.ofSeconds(15);
+    //Un cliente que tarda mas que esto en recibir un envio deja de recibir eventos y se desconecta
+    private Duration esperaMaxima = Duration.ofSeconds(30);
+
+}
@@ -0,0 +1,17 @@
+package com.springboot.test.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.exportacion")
+public class ExportacionProperties {
+
+    //Filas que el driver trae de la base de datos por cada viaje
+    private int fetchSize = 1000;
+    //Filas por grupo en el formato binario, cada grupo se escribe columna por columna
+    private int filasPorGrupo = 4096;
+
+}
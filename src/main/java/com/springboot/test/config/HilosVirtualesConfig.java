@@ -0,0 +1,68 @@
+package com.springboot.test.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Con app.hilos-virtuales.habilitado=true cada peticion de tomcat y cada respuesta asincrona de MVC
+ * (stream de cuentas) corre en su propio hilo virtual.
+ * El limite de concurrencia deja de ser server.tomcat.threads.max y pasa a ser el pool de conexiones
+ * (spring.datasource.hikari.maximum-pool-size): el resto de peticiones espera una conexion sin ocupar
+ * un hilo de plataforma.
+ *
+ * Pinning (Java 21): un hilo virtual dentro de un bloque synchronized no suelta su hilo portador.
+ * El driver de H2 1.4.200 ejecuta cada sentencia dentro de synchronized sobre la sesion, incluida la
+ * espera por una fila bloqueada (modo pesimista, SELECT ... FOR UPDATE). Solo un hilo con conexion
+ * llega ahi, asi que hay a lo sumo maximum-pool-size portadores fijados; si el pool es mayor que
+ * jdk.virtualThreadScheduler.parallelism (por defecto la cantidad de nucleos) esas esperas pueden
+ * ocupar todos los portadores y detener tambien a las peticiones que no usan la base.
+ * HikariCP 3.4.5 no fija hilos al pedir conexiones: la espera es en su ConcurrentBag (SynchronousQueue),
+ * y sus metodos synchronized (fillPool, suspend/resume, registro de sentencias) no esperan por la base.
+ * Para revisarlo en ejecucion: -Djdk.tracePinnedThreads=short.
+ *
+ * Requiere ejecutar con Java 21 (perfil maven hilos-virtuales). El ejecutor se obtiene por reflexion,
+ * asi las clases siguen compiladas para Java 11.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "app.hilos-virtuales.habilitado", havingValue = "true")
+public class HilosVirtualesConfig implements DisposableBean {
+
+    private final ExecutorService hilosVirtuales = crearEjecutorVirtual();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> tomcatHilosVirtuales() {
+        return protocolHandler -> protocolHandler.setExecutor(hilosVirtuales);
+    }
+
+    /**
+     * Reemplaza al ejecutor de spring boot, que usa MVC para las respuestas asincronas
+     */
+    @Bean(name = "applicationTaskExecutor")
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(hilosVirtuales);
+    }
+
+    @Override
+    public void destroy() {
+        hilosVirtuales.shutdown();
+    }
+
+    private static ExecutorService crearEjecutorVirtual() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("app.hilos-virtuales.habilitado requiere Java 21 o superior", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo crear el ejecutor de hilos virtuales", e);
+        }
+    }
+
+}
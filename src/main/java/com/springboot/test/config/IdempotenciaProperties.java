@@ -0,0 +1,22 @@
+package com.springboot.test.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.idempotencia")
+public class IdempotenciaProperties {
+
+    //Tiempo desde la primera peticion durante el cual un reintento con la misma clave recibe la respuesta
+    //guardada (o 409 si sigue en curso); despues la clave se trata como nueva
+    private Duration ttl = Duration.ofHours(24);
+    //Cada cuanto se borran de la base las claves vencidas
+    private long limpiezaMs = 3_600_000;
+    //Tiempo que un duplicado espera a que termine la peticion original
+    private Duration esperaMaxima = Duration.ofSeconds(30);
+
+}
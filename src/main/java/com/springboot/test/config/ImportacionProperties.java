@@ -0,0 +1,15 @@
+package com.springboot.test.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.importacion")
+public class ImportacionProperties {
+
+    //Filas por transaccion y por jdbc batch, solo estas filas se mantienen en memoria
+    private int lote = 1000;
+
+}
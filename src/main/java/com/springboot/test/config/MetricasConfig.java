@@ -0,0 +1,21 @@
+package com.springboot.test.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registra los tiempos de los metodos anotados con @Timed (servicio.cuentas, servicio.bancos)
+ * con tags class, method y exception. La espera por una conexion del pool la publica spring boot
+ * como hikaricp.connections.acquire.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricasConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.springboot.test.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+
+/**
+ * Solo se activa con spring.main.web-application-type=reactive (perfil reactivo)
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = REACTIVE)
+public class ReactivoConfig {
+
+    /**
+     * Tomcat tambien esta en el classpath (spring-boot-starter-web) y spring boot lo prefiere,
+     * se declara netty para que las conexiones las atiendan sus event loops
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Las llamadas a JPA bloquean el hilo, se ejecutan aqui para no bloquear los event loops de netty
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jpaScheduler(ReactivoProperties reactivoProperties) {
+        return Schedulers.newBoundedElastic(reactivoProperties.getHilosJpa(),
+                reactivoProperties.getColaMaxima(), "jpa");
+    }
+
+}
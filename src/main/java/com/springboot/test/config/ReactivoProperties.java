@@ -0,0 +1,17 @@
+package com.springboot.test.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.reactivo")
+public class ReactivoProperties {
+
+    //Hilos para las llamadas bloqueantes a JPA, no sirve tener mas que conexiones en el pool de hikari
+    private int hilosJpa = 10;
+    //Tareas que pueden esperar un hilo libre antes de rechazar la peticion
+    private int colaMaxima = 100_000;
+
+}
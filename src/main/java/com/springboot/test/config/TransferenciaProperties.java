@@ -0,0 +1,125 @@
+package com.springboot.test.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.transferencias")
+public class TransferenciaProperties {
+
+    private Motor motor = Motor.TRANSACCIONAL;
+    private ModoBloqueo bloqueo = ModoBloqueo.NINGUNO;
+    private final Lote lote = new Lote();
+    private final Reintentos reintentos = new Reintentos();
+    private final Contador contador = new Contador();
+    private final Particionado particionado = new Particionado();
+    private final Cola cola = new Cola();
+
+    @Getter
+    @Setter
+    public static class Lote {
+
+        //Nro de transferencias que se aplican en cada transaccion
+        private int tamanio = 500;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Reintentos {
+
+        //Nro maximo de intentos por transferencia ante un conflicto de version o de bloqueo (incluye el primero)
+        private int maximo = 5;
+        //La espera entre intentos crece de forma exponencial desde esperaBase hasta esperaMaxima
+        private Duration esperaBase = Duration.ofMillis(5);
+        private Duration esperaMaxima = Duration.ofMillis(200);
+
+    }
+
+    @Getter
+    @Setter
+    public static class Contador {
+
+        private ModoContador modo = ModoContador.FILA;
+        //Nro de filas en las que se reparte el contador de cada banco
+        private int slots = 16;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Particionado {
+
+        //Nro de hilos, cada uno es el unico que modifica los saldos de las cuentas de su particion
+        private int particiones = 4;
+        //Mensajes en espera por particion, se redondea a la siguiente potencia de 2
+        private int capacidad = 65_536;
+        //Nro maximo de transferencias por transaccion de escritura diferida
+        private int loteEscritura = 1000;
+        //Tiempo maximo que una transferencia aplicada en memoria espera para escribirse en la base
+        private Duration intervaloEscritura = Duration.ofMillis(50);
+        //Transferencias que el motor retiene como maximo, desde que entran hasta que se escriben en la base
+        private int maximoRetenidas = 200_000;
+        //Tiempo que espera una transferencia por lugar en el motor antes de rechazarse (503)
+        private Duration esperaAdmision = Duration.ofSeconds(1);
+
+    }
+
+    @Getter
+    @Setter
+    public static class Cola {
+
+        //Nro maximo de transferencias pendientes entre todas las instancias (se cuenta en cada barrido),
+        //al superarlo POST /api/cuentas/transferencias responde 503
+        private long capacidad = 100_000;
+        //Hilos que procesan la cola, cualquiera puede reclamar cualquier fila
+        private int trabajadores = 2;
+        //Filas que reclama un trabajador de una vez, cada una se transfiere en su propia transaccion
+        private int lote = 500;
+        //Veces que se reclama una fila antes de marcarla FALLIDA (errores transitorios o un trabajador que no termino)
+        private int intentos = 5;
+        //Tiempo que una fila reclamada queda reservada para su trabajador, despues otro la puede reclamar
+        private Duration reclamo = Duration.ofMinutes(1);
+        //Cada cuanto se revisa la cola por filas que no se procesaron al encolarlas (reinicios, errores)
+        private Duration barrido = Duration.ofSeconds(5);
+
+    }
+
+    public enum Motor {
+
+        //Cada transferencia es una transaccion sobre las filas de las cuentas (BancoServiceImpl)
+        TRANSACCIONAL,
+        //Saldos en memoria repartidos en particiones de un solo hilo, con escritura diferida (BancoServiceParticionadoImpl)
+        PARTICIONADO
+
+    }
+
+    public enum ModoBloqueo {
+
+        //Lee y guarda las cuentas sin bloquear filas, el @Version de Cuenta detecta la escritura concurrente y se reintenta
+        NINGUNO,
+        //SELECT ... FOR UPDATE sobre las cuentas en orden ascendente de id
+        PESIMISTA,
+        //Igual que NINGUNO, se conserva para las configuraciones que ya lo indican
+        OPTIMISTA,
+        //Un solo UPDATE condicional para ambas cuentas, la base revisa el saldo y bloquea las filas
+        CONDICIONAL
+
+    }
+
+    public enum ModoContador {
+
+        //Se incrementa la unica fila del banco en contadores_transferencias en cada transferencia
+        FILA,
+        //Se incrementa una fila al azar de contadores_transferencias
+        PARTICIONADO,
+        //Se acumula en memoria (LongAdder) y se vacia a contadores_transferencias periodicamente
+        MEMORIA
+
+    }
+
+}
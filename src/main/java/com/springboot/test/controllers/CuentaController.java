@@ -1,30 +1,59 @@
 package com.springboot.test.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.test.dto.CambiosCuentasDTO;
+import com.springboot.test.dto.CuentasEncontradasDTO;
+import com.springboot.test.dto.PaginaDTO;
 import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.dto.VersionCuentaDTO;
 import com.springboot.test.models.Cuenta;
+import com.springboot.test.models.Movimiento;
 import com.springboot.test.services.IBancoService;
 import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.IIdempotenciaService;
+import com.springboot.test.services.IMovimientoService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.time.LocalDate;
-import java.util.HashMap;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
 import static org.springframework.http.HttpStatus.*;
 
 @RestController
 @RequestMapping("/api/cuentas")
+@ConditionalOnWebApplication(type = SERVLET)
 public class CuentaController {
 
     private final ICuentaService cuentaService;
     private final IBancoService bancoService;
-
-    public CuentaController(ICuentaService cuentaService, IBancoService bancoService) {
+    private final IIdempotenciaService idempotenciaService;
+    private final IMovimientoService movimientoService;
+    private final ObjectMapper objectMapper;
+
+    public CuentaController(ICuentaService cuentaService,
+                            IBancoService bancoService,
+                            IIdempotenciaService idempotenciaService,
+                            IMovimientoService movimientoService,
+                            ObjectMapper objectMapper) {
         this.cuentaService = cuentaService;
         this.bancoService = bancoService;
+        this.idempotenciaService = idempotenciaService;
+        this.movimientoService = movimientoService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -33,40 +62,182 @@ public class CuentaController {
         return cuentaService.guardar(cuenta);
     }
 
+    /**
+     * Con If-None-Match igual al ETag actual responde 304 consultando solo la version de la tabla
+     */
     @GetMapping
+    public ResponseEntity<List<Cuenta>> listar(HttpServletRequest request){
+
+        String etag = cuentaService.versionCuentas();
+        if (noModificado(request, etag, -1)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(cuentaService.findAll());
+    }
+
+    @GetMapping(params = "limit")
+    @ResponseStatus(OK)
+    public PaginaDTO<Cuenta> listarPagina(@RequestParam int limit,
+                                          @RequestParam(required = false) Long afterId){
+
+        return cuentaService.findPagina(afterId, limit);
+    }
+
+    /**
+     * Varias cuentas en una sola peticion: GET /api/cuentas?ids=1,2,3
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<CuentasEncontradasDTO> listarPorIds(@RequestParam List<Long> ids){
+        return buscarVarias(ids);
+    }
+
+    /**
+     * Igual que listarPorIds pero con los ids en el cuerpo, para listas que no caben en la url
+     */
+    @PostMapping("/varias")
+    public ResponseEntity<CuentasEncontradasDTO> buscarPorIds(@RequestBody List<Long> ids){
+        return buscarVarias(ids);
+    }
+
+    private ResponseEntity<CuentasEncontradasDTO> buscarVarias(List<Long> ids){
+        try{
+            return ResponseEntity.ok(cuentaService.findVarias(ids));
+        }catch (IllegalArgumentException e){
+            //Mas ids de los permitidos
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Sincronizacion por deltas: el cliente envia el siguiente de la respuesta anterior (0 la primera vez)
+     * y recibe solo las cuentas creadas, modificadas o eliminadas desde entonces
+     */
+    @GetMapping("/cambios")
     @ResponseStatus(OK)
-    public List<Cuenta> listar(){
-        return cuentaService.findAll();
+    public CambiosCuentasDTO cambios(@RequestParam(defaultValue = "0") long desde,
+                                     @RequestParam(defaultValue = "100") int limit){
+
+        return cuentaService.findCambios(desde, limit);
     }
 
+    @GetMapping("/buscar")
+    public ResponseEntity<PaginaDTO<Cuenta>> buscar(@RequestParam String persona,
+                                                    @RequestParam(defaultValue = "20") int limit,
+                                                    @RequestParam(required = false) Long afterId){
+        try{
+            return ResponseEntity.ok(cuentaService.buscarPorPersona(persona, afterId, limit));
+        }catch (NoSuchElementException e){
+            //afterId no corresponde a ninguna cuenta
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Envia una cuenta por linea (NDJSON) a medida que se leen de la base de datos
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> listarStream(){
+
+        StreamingResponseBody cuerpo = salida -> {
+            OutputStream buffer = new BufferedOutputStream(salida);
+            int[] escritas = {0};
+            cuentaService.recorrer(cuenta -> {
+                try {
+                    buffer.write(objectMapper.writeValueAsBytes(cuenta));
+                    buffer.write('\n');
+                    if (++escritas[0] % 500 == 0) {
+                        buffer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            buffer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(cuerpo);
+    }
+
+    /**
+     * ETag = version de la cuenta y Last-Modified = ultima escritura. En un GET condicional
+     * primero se consulta solo la version: si no cambio se responde 304 sin cargar la cuenta.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<?> detalle(@PathVariable Long id){
+    public ResponseEntity<?> detalle(@PathVariable Long id, HttpServletRequest request){
 
         Cuenta cuenta = null;
         try{
+            if (esCondicional(request)) {
+                VersionCuentaDTO version = cuentaService.findVersion(id);
+                if (version.getVersion() != null && noModificado(request,
+                        String.valueOf(version.getVersion()), milisegundos(version.getModificado()))) {
+                    return conValidadores(ResponseEntity.status(NOT_MODIFIED), version.getVersion(), version.getModificado())
+                            .build();
+                }
+            }
             cuenta = cuentaService.findById(id);
         }catch (NoSuchElementException e){
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(cuenta);
+        return conValidadores(ResponseEntity.ok(), cuenta.getVersion(), cuenta.getModificado()).body(cuenta);
     }
 
-    @PostMapping("/transferir")
-    public ResponseEntity<Map<String, Object>> transferir(@RequestBody TransaccionDTO transaccionDTO){
+    private static boolean esCondicional(HttpServletRequest request){
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
 
-        bancoService.transferir(transaccionDTO.getBancoDestinoId(),
-                transaccionDTO.getCuentaOrigenId(),
-                transaccionDTO.getCuentaDestinoId(),
-                transaccionDTO.getMonto());
+    /**
+     * Evalua If-None-Match e If-Modified-Since sin escribir en la respuesta (ServletWebRequest sin response)
+     */
+    private static boolean noModificado(HttpServletRequest request, String etag, long ultimaModificacion){
+        return new ServletWebRequest(request).checkNotModified(etag, ultimaModificacion);
+    }
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("date", LocalDate.now().toString());
-        response.put("status", "OK");
-        response.put("mensaje", "Transferencia realizada con éxito!");
-        response.put("transaccion", transaccionDTO);
+    private static ResponseEntity.BodyBuilder conValidadores(ResponseEntity.BodyBuilder respuesta, Long version, Instant modificado){
+        if (version != null) {
+            respuesta.eTag(String.valueOf(version));
+        }
+        if (modificado != null) {
+            respuesta.lastModified(modificado);
+        }
+        return respuesta;
+    }
 
-        return ResponseEntity.ok(response);
+    private static long milisegundos(Instant instante){
+        return instante == null ? -1 : instante.toEpochMilli();
+    }
+
+    @GetMapping("/{id}/movimientos")
+    @ResponseStatus(OK)
+    public PaginaDTO<Movimiento> movimientos(@PathVariable Long id,
+                                             @RequestParam(defaultValue = "20") int limit,
+                                             @RequestParam(required = false) Long afterId){
+
+        return movimientoService.findPagina(id, afterId, limit);
+    }
+
+    /**
+     * Con el header Idempotency-Key un reintento del cliente recibe la misma respuesta
+     * sin volver a mover el dinero; la misma clave con otra transaccion responde 422
+     */
+    @PostMapping("/transferir")
+    public ResponseEntity<Map<String, Object>> transferir(@RequestBody TransaccionDTO transaccionDTO,
+                                                          @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia){
+
+        if (claveIdempotencia == null || claveIdempotencia.isBlank()) {
+            return ResponseEntity.ok(Transferencias.transferir(bancoService, transaccionDTO));
+        }
+        return ResponseEntity.ok(idempotenciaService.ejecutar(claveIdempotencia, transaccionDTO, Transferencias.Respuesta.class,
+                () -> Transferencias.transferir(bancoService, transaccionDTO)));
+
+    }
 
+    @PostMapping("/transferir/lote")
+    public ResponseEntity<Map<String, Object>> transferirLote(@RequestBody List<TransaccionDTO> transacciones){
+        return ResponseEntity.ok(Transferencias.lote(bancoService.transferirLote(transacciones)));
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,87 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.dto.ResultadoImportacionDTO;
+import com.springboot.test.services.IExportacionCuentaService;
+import com.springboot.test.services.IImportacionCuentaService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+import static org.springframework.http.HttpStatus.CREATED;
+
+/**
+ * Carga y descarga masiva de cuentas. Los archivos se leen y se escriben a medida que pasan, sin cargarlos en memoria:
+ * curl -X POST -H "Content-Type: text/csv" --data-binary @cuentas.csv http://localhost:8080/api/cuentas/importar
+ * curl -o cuentas.csv "http://localhost:8080/api/cuentas/exportar?saldoMinimo=1000"
+ */
+@RestController
+@RequestMapping("/api/cuentas")
+@ConditionalOnWebApplication(type = SERVLET)
+public class CuentaMasivaController {
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final IImportacionCuentaService importacionService;
+    private final IExportacionCuentaService exportacionService;
+
+    public CuentaMasivaController(IImportacionCuentaService importacionService,
+                                  IExportacionCuentaService exportacionService) {
+        this.importacionService = importacionService;
+        this.exportacionService = exportacionService;
+    }
+
+    @PostMapping(value = "/importar", consumes = TEXT_CSV_VALUE)
+    @ResponseStatus(CREATED)
+    public ResultadoImportacionDTO importarCsv(HttpServletRequest request) throws IOException {
+        return importacionService.importarCsv(lector(request));
+    }
+
+    @PostMapping(value = "/importar", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(CREATED)
+    public ResultadoImportacionDTO importarNdjson(HttpServletRequest request) throws IOException {
+        return importacionService.importarNdjson(lector(request));
+    }
+
+    /**
+     * formato=csv (id,persona,saldo) o binario (columnar, ver ExportacionCuentaServiceImpl)
+     */
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportar(@RequestParam(defaultValue = "csv") String formato,
+                                                          @RequestParam(required = false) BigDecimal saldoMinimo,
+                                                          @RequestParam(required = false) BigDecimal saldoMaximo) {
+
+        if ("binario".equalsIgnoreCase(formato)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=cuentas.bin")
+                    .body(salida -> exportacionService.exportarBinario(salida, saldoMinimo, saldoMaximo));
+        }
+        if ("csv".equalsIgnoreCase(formato)) {
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=cuentas.csv")
+                    .body(salida -> exportacionService.exportarCsv(salida, saldoMinimo, saldoMaximo));
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    private static Reader lector(HttpServletRequest request) throws IOException {
+        Charset charset = request.getCharacterEncoding() == null
+                ? StandardCharsets.UTF_8
+                : Charset.forName(request.getCharacterEncoding());
+        return new InputStreamReader(request.getInputStream(), charset);
+    }
+
+}
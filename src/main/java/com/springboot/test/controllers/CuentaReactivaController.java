@@ -0,0 +1,151 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.dto.PaginaDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.models.Movimiento;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.IIdempotenciaService;
+import com.springboot.test.services.IMovimientoService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+import static org.springframework.http.HttpStatus.*;
+
+/**
+ * Version reactiva de las rutas principales de CuentaController, con las mismas respuestas: alta, listado,
+ * pagina, busqueda, stream, detalle, movimientos, transferencia (con Idempotency-Key), lote y baja.
+ * No tiene GET ?ids ni POST /varias, GET /cambios, el ETag del listado ni los GET condicionales del
+ * detalle, y el perfil reactivo tampoco sirve los controladores que solo existen sobre servlet:
+ * eventos de saldo (/eventos), transferencias asincronas (/transferencias) e importacion/exportacion.
+ * Los event loops de netty solo atienden conexiones, cada llamada a los services
+ * (JPA, bloqueante) se ejecuta en jpaScheduler.
+ */
+@RestController
+@RequestMapping("/api/cuentas")
+@ConditionalOnWebApplication(type = REACTIVE)
+public class CuentaReactivaController {
+
+    private static final int TAMANIO_PAGINA_STREAM = 500;
+
+    private final ICuentaService cuentaService;
+    private final IBancoService bancoService;
+    private final IIdempotenciaService idempotenciaService;
+    private final IMovimientoService movimientoService;
+    private final Scheduler jpaScheduler;
+
+    public CuentaReactivaController(ICuentaService cuentaService,
+                                    IBancoService bancoService,
+                                    IIdempotenciaService idempotenciaService,
+                                    IMovimientoService movimientoService,
+                                    Scheduler jpaScheduler) {
+        this.cuentaService = cuentaService;
+        this.bancoService = bancoService;
+        this.idempotenciaService = idempotenciaService;
+        this.movimientoService = movimientoService;
+        this.jpaScheduler = jpaScheduler;
+    }
+
+    @PostMapping
+    @ResponseStatus(CREATED)
+    public Mono<Cuenta> guardar(@RequestBody Cuenta cuenta){
+        return bloqueante(() -> cuentaService.guardar(cuenta));
+    }
+
+    @GetMapping
+    @ResponseStatus(OK)
+    public Flux<Cuenta> listar(){
+        return bloqueante(cuentaService::findAll).flatMapIterable(cuentas -> cuentas);
+    }
+
+    @GetMapping(params = "limit")
+    @ResponseStatus(OK)
+    public Mono<PaginaDTO<Cuenta>> listarPagina(@RequestParam int limit,
+                                                @RequestParam(required = false) Long afterId){
+        return bloqueante(() -> cuentaService.findPagina(afterId, limit));
+    }
+
+    @GetMapping("/buscar")
+    public Mono<ResponseEntity<PaginaDTO<Cuenta>>> buscar(@RequestParam String persona,
+                                                          @RequestParam(defaultValue = "20") int limit,
+                                                          @RequestParam(required = false) Long afterId){
+        return bloqueante(() -> cuentaService.buscarPorPersona(persona, afterId, limit))
+                .map(pagina -> ResponseEntity.ok(pagina))
+                //afterId no corresponde a ninguna cuenta
+                .onErrorReturn(NoSuchElementException.class, ResponseEntity.badRequest().build());
+    }
+
+    /**
+     * Una cuenta por linea (NDJSON). Las paginas se piden a medida que el cliente consume,
+     * asi un cliente lento no obliga a tener toda la tabla en memoria.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Cuenta> listarStream(){
+        return paginaStream(null)
+                .expand(pagina -> pagina.getSiguiente() == null ? Mono.empty() : paginaStream(pagina.getSiguiente()))
+                .flatMapIterable(PaginaDTO::getContenido);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Cuenta>> detalle(@PathVariable Long id){
+        return bloqueante(() -> cuentaService.findById(id))
+                .map(cuenta -> ResponseEntity.ok(cuenta))
+                .onErrorReturn(NoSuchElementException.class, ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}/movimientos")
+    @ResponseStatus(OK)
+    public Mono<PaginaDTO<Movimiento>> movimientos(@PathVariable Long id,
+                                                   @RequestParam(defaultValue = "20") int limit,
+                                                   @RequestParam(required = false) Long afterId){
+        return bloqueante(() -> movimientoService.findPagina(id, afterId, limit));
+    }
+
+    @PostMapping("/transferir")
+    public Mono<Map<String, Object>> transferir(@RequestBody TransaccionDTO transaccionDTO,
+                                                @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia){
+
+        if (claveIdempotencia == null || claveIdempotencia.isBlank()) {
+            return bloqueante(() -> Transferencias.transferir(bancoService, transaccionDTO));
+        }
+        //Un duplicado recibe el futuro de la peticion original y lo espera sin ocupar un hilo de jpaScheduler
+        return bloqueante(() -> idempotenciaService.ejecutarAsync(claveIdempotencia, transaccionDTO,
+                Transferencias.Respuesta.class, () -> Transferencias.transferir(bancoService, transaccionDTO)))
+                .flatMap(Mono::fromFuture);
+
+    }
+
+    @PostMapping("/transferir/lote")
+    public Mono<Map<String, Object>> transferirLote(@RequestBody List<TransaccionDTO> transacciones){
+        return bloqueante(() -> bancoService.transferirLote(transacciones)).map(Transferencias::lote);
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(NO_CONTENT)
+    public Mono<Void> eliminar(@PathVariable Long id){
+        return Mono.fromRunnable(() -> cuentaService.deleteByid(id))
+                .subscribeOn(jpaScheduler)
+                .then();
+    }
+
+    private Mono<PaginaDTO<Cuenta>> paginaStream(Long despuesDeId){
+        return bloqueante(() -> cuentaService.findPagina(despuesDeId, TAMANIO_PAGINA_STREAM));
+    }
+
+    private <T> Mono<T> bloqueante(Callable<T> llamada){
+        return Mono.fromCallable(llamada).subscribeOn(jpaScheduler);
+    }
+
+}
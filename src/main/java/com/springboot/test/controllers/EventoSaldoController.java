@@ -0,0 +1,102 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.config.EventosSaldoProperties;
+import com.springboot.test.dto.EventoSaldoDTO;
+import com.springboot.test.services.IEventoSaldoService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+
+/**
+ * Saldos en vivo por Server-Sent Events: un evento "saldo" con el saldo actual de cada cuenta
+ * y otro por cada commit que la modifique, en vez de consultar GET /api/cuentas/{id} periodicamente
+ */
+@RestController
+@RequestMapping("/api/cuentas")
+@ConditionalOnWebApplication(type = SERVLET)
+public class EventoSaldoController {
+
+    private static final String EVENTO = "saldo";
+
+    private final IEventoSaldoService eventoSaldoService;
+    private final EventosSaldoProperties properties;
+
+    public EventoSaldoController(IEventoSaldoService eventoSaldoService, EventosSaldoProperties properties) {
+        this.eventoSaldoService = eventoSaldoService;
+        this.properties = properties;
+    }
+
+    @GetMapping(value = "/{id}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> eventos(@PathVariable Long id){
+        return suscribir(Collections.singletonList(id));
+    }
+
+    /**
+     * Varias cuentas en una sola conexion: GET /api/cuentas/eventos?ids=1,2,3
+     */
+    @GetMapping(value = "/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> eventosVarias(@RequestParam List<Long> ids){
+        return suscribir(ids);
+    }
+
+    private ResponseEntity<SseEmitter> suscribir(Collection<Long> ids){
+        SseEmitter emisor = new SseEmitter(properties.getTimeout().toMillis());
+        try{
+            Runnable cancelar = eventoSaldoService.suscribir(ids, new ReceptorSse(emisor));
+            emisor.onCompletion(cancelar);
+            emisor.onTimeout(cancelar);
+            emisor.onError(e -> cancelar.run());
+            return ResponseEntity.ok(emisor);
+        }catch (IllegalArgumentException e){
+            //Sin cuentas o con mas de las permitidas
+            return ResponseEntity.badRequest().build();
+        }catch (NoSuchElementException e){
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * send escribe bloqueando hasta que el cliente recibe o vence el tiempo de escritura del servidor
+     */
+    private static class ReceptorSse implements IEventoSaldoService.Receptor {
+
+        private final SseEmitter emisor;
+
+        ReceptorSse(SseEmitter emisor) {
+            this.emisor = emisor;
+        }
+
+        @Override
+        public void enviar(EventoSaldoDTO evento) throws IOException {
+            SseEmitter.SseEventBuilder sse = SseEmitter.event()
+                    .name(EVENTO)
+                    .data(evento, MediaType.APPLICATION_JSON);
+            if (evento.getCambio() != null) {
+                sse.id(String.valueOf(evento.getCambio()));
+            }
+            emisor.send(sse);
+        }
+
+        @Override
+        public void latido() throws IOException {
+            emisor.send(SseEmitter.event().comment(""));
+        }
+
+        @Override
+        public void cerrar() {
+            emisor.complete();
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.ColaTransferenciasLlenaException;
+import com.springboot.test.models.TransferenciaEncolada;
+import com.springboot.test.services.ITransferenciaAsincronaService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.NoSuchElementException;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Transferencias asincronas: el POST solo encola y responde 202 con el id,
+ * el estado (PENDIENTE, REALIZADA o FALLIDA) se consulta con el GET
+ */
+@RestController
+@RequestMapping("/api/cuentas/transferencias")
+@ConditionalOnWebApplication(type = SERVLET)
+public class TransferenciaController {
+
+    //Segundos que el cliente deberia esperar antes de reintentar con la cola llena
+    private static final String REINTENTAR_EN = "1";
+
+    private final ITransferenciaAsincronaService transferenciaService;
+
+    public TransferenciaController(ITransferenciaAsincronaService transferenciaService) {
+        this.transferenciaService = transferenciaService;
+    }
+
+    @PostMapping
+    public ResponseEntity<TransferenciaEncolada> encolar(@RequestBody TransaccionDTO transaccionDTO){
+
+        if (transaccionDTO.getCuentaOrigenId() == null || transaccionDTO.getCuentaDestinoId() == null
+                || transaccionDTO.getBancoDestinoId() == null
+                || transaccionDTO.getMonto() == null || transaccionDTO.getMonto().signum() <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try{
+            TransferenciaEncolada encolada = transferenciaService.encolar(transaccionDTO);
+            URI ubicacion = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .path("/{id}")
+                    .buildAndExpand(encolada.getId())
+                    .toUri();
+            return ResponseEntity.accepted().location(ubicacion).body(encolada);
+        }catch (ColaTransferenciasLlenaException e){
+            return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, REINTENTAR_EN)
+                    .build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<TransferenciaEncolada> estado(@PathVariable Long id){
+
+        try{
+            return ResponseEntity.ok(transferenciaService.findById(id));
+        }catch (NoSuchElementException e){
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.ResultadoTransaccionDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.services.IBancoService;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transferencias y sus respuestas, iguales en CuentaController y CuentaReactivaController
+ */
+final class Transferencias {
+
+    private Transferencias() {
+    }
+
+    static Respuesta transferir(IBancoService bancoService, TransaccionDTO transaccionDTO) {
+
+        bancoService.transferir(transaccionDTO.getBancoDestinoId(),
+                transaccionDTO.getCuentaOrigenId(),
+                transaccionDTO.getCuentaDestinoId(),
+                transaccionDTO.getMonto());
+
+        Respuesta response = new Respuesta();
+        response.put("date", LocalDate.now().toString());
+        response.put("status", "OK");
+        response.put("mensaje", "Transferencia realizada con éxito!");
+        response.put("transaccion", transaccionDTO);
+
+        return response;
+
+    }
+
+    static Map<String, Object> lote(List<ResultadoTransaccionDTO> resultados) {
+
+        long realizadas = resultados.stream()
+                .filter(resultado -> resultado.getEstado() == EstadoTransaccion.REALIZADA)
+                .count();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("date", LocalDate.now().toString());
+        response.put("status", "OK");
+        response.put("total", resultados.size());
+        response.put("realizadas", realizadas);
+        response.put("resultados", resultados);
+
+        return response;
+
+    }
+
+    /**
+     * Respuesta de una transferencia. Es una clase y no un Map<String, Object> para leer la respuesta
+     * guardada por la clave de idempotencia con su tipo completo
+     */
+    static final class Respuesta extends HashMap<String, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.springboot.test.dto;
+
+import com.springboot.test.models.Cuenta;
+import lombok.*;
+
+/**
+ * Un cambio de una cuenta: la cuenta como quedo, o solo el id si se elimino
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CambioCuentaDTO {
+
+    private Long cambio;
+    private Long cuentaId;
+    private boolean eliminada;
+    private Cuenta cuenta;
+
+}
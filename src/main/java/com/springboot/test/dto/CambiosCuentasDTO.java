@@ -0,0 +1,22 @@
+package com.springboot.test.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Cambios ordenados por numero de cambio. siguiente es el valor que se envia en desde
+ * en la proxima consulta (aunque no haya cambios), hayMas indica que se corto por el limite.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CambiosCuentasDTO {
+
+    private List<CambioCuentaDTO> cambios;
+    private long siguiente;
+    private boolean hayMas;
+
+}
@@ -0,0 +1,21 @@
+package com.springboot.test.dto;
+
+import com.springboot.test.models.Cuenta;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Respuesta de la busqueda de varias cuentas por id, las cuentas van en el orden en que se pidieron
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CuentasEncontradasDTO {
+
+    private List<Cuenta> cuentas;
+    private List<Long> noEncontradas;
+
+}
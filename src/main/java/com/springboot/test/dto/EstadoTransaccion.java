@@ -0,0 +1,13 @@
+package com.springboot.test.dto;
+
+public enum EstadoTransaccion {
+
+    REALIZADA,
+    DINERO_INSUFICIENTE,
+    NO_ENCONTRADA,
+    INVALIDA,
+    //El motor de transferencias estaba lleno o la cola agoto sus intentos, la transferencia no se aplico
+    //y se puede reintentar
+    RECHAZADA
+
+}
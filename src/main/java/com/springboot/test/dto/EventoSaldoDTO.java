@@ -0,0 +1,22 @@
+package com.springboot.test.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Saldo de una cuenta despues de un commit. cambio es el numero de cambio de la escritura,
+ * un evento con un numero menor que el ultimo recibido de la misma cuenta ya no es vigente.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventoSaldoDTO {
+
+    private Long cuentaId;
+    private BigDecimal saldo;
+    private Long cambio;
+
+}
@@ -0,0 +1,35 @@
+package com.springboot.test.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pagina de resultados por keyset, siguiente es el valor que se envia en afterId
+ * para pedir la pagina siguiente (null si no hay mas)
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaginaDTO<T> {
+
+    private List<T> contenido;
+    private Long siguiente;
+
+    /**
+     * Arma la pagina a partir de una consulta que pidio tamanio + 1 filas,
+     * la fila extra solo indica que existe una pagina siguiente
+     */
+    public static <T> PaginaDTO<T> de(List<T> filas, int tamanio, Function<T, Long> clave) {
+        if (filas.size() <= tamanio) {
+            return new PaginaDTO<>(filas, null);
+        }
+        List<T> contenido = new ArrayList<>(filas.subList(0, tamanio));
+        return new PaginaDTO<>(contenido, clave.apply(contenido.get(tamanio - 1)));
+    }
+
+}
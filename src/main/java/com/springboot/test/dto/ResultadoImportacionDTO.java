@@ -0,0 +1,16 @@
+package com.springboot.test.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResultadoImportacionDTO {
+
+    private long filas;
+    private long milisegundos;
+    private long filasPorSegundo;
+
+}
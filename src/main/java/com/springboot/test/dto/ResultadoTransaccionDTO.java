@@ -0,0 +1,16 @@
+package com.springboot.test.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResultadoTransaccionDTO {
+
+    private int indice;
+    private EstadoTransaccion estado;
+    private String mensaje;
+
+}
@@ -1,5 +1,6 @@
 package com.springboot.test.dto;
 
+import com.springboot.test.models.Centavos;
 import lombok.*;
 
 import java.math.BigDecimal;
@@ -16,4 +17,12 @@ public class TransaccionDTO {
     private Long bancoDestinoId;
     private BigDecimal monto;
 
+    /**
+     * Copia con el monto en la escala de la moneda (ver Centavos.normalizar), la misma instancia si ya lo estaba
+     */
+    public TransaccionDTO conMontoNormalizado() {
+        BigDecimal normalizado = Centavos.normalizar(monto);
+        return normalizado == monto ? this : new TransaccionDTO(cuentaOrigenId, cuentaDestinoId, bancoDestinoId, normalizado);
+    }
+
 }
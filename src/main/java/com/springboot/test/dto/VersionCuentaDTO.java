@@ -0,0 +1,21 @@
+package com.springboot.test.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Version y fecha de la ultima modificacion de una cuenta, se consultan sin cargar la entidad
+ * para responder 304 a un GET condicional
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VersionCuentaDTO {
+
+    private Long version;
+    private Instant modificado;
+
+}
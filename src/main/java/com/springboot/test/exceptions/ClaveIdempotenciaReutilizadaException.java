@@ -0,0 +1,17 @@
+package com.springboot.test.exceptions;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+/**
+ * La clave de idempotencia ya se uso con otra peticion
+ */
+@ResponseStatus(UNPROCESSABLE_ENTITY)
+public class ClaveIdempotenciaReutilizadaException extends RuntimeException {
+
+    public ClaveIdempotenciaReutilizadaException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.springboot.test.exceptions;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+@ResponseStatus(SERVICE_UNAVAILABLE)
+public class ColaTransferenciasLlenaException extends RuntimeException {
+
+    public ColaTransferenciasLlenaException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.springboot.test.exceptions;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.CONFLICT;
+
+@ResponseStatus(CONFLICT)
+public class IdempotenciaEnCursoException extends RuntimeException {
+
+    public IdempotenciaEnCursoException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.springboot.test.exceptions;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+@ResponseStatus(BAD_REQUEST)
+public class ImportacionInvalidaException extends RuntimeException {
+
+    public ImportacionInvalidaException(String message) {
+        super(message);
+    }
+
+}
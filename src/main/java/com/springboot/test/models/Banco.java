@@ -1,24 +1,34 @@
 package com.springboot.test.models;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
+/**
+ * Cacheado en la region bancos. Solo tiene datos que casi no cambian: el contador de transferencias
+ * esta en contadores_transferencias (sin cache), asi las transferencias nunca escriben esta fila
+ * y su entrada en la cache no se invalida.
+ */
 @Getter
 @Setter
 @AllArgsConstructor
 @Builder
 @Entity
 @Table(name = "bancos")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "bancos")
 public class Banco {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bancos_seq")
+    @SequenceGenerator(name = "bancos_seq", sequenceName = "bancos_seq", allocationSize = 50)
     private Long id;
     private String nombre;
 
-    @Column(name = "total_transferencias")
-    private int totalTransferencia;
+    @Version
+    private Long version;
 
     public Banco(){}
 
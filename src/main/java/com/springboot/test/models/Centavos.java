@@ -0,0 +1,67 @@
+package com.springboot.test.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Aritmetica de saldos en unidades menores (centavos) sobre long.
+ * Los montos con mas decimales que la moneda se redondean a centavos con HALF_EVEN
+ * (redondeo bancario: 0.125 -> 0.12, 0.135 -> 0.14) y toda operacion que desborde
+ * un long lanza ArithmeticException en lugar de dar la vuelta en silencio.
+ */
+public final class Centavos {
+
+    public static final int ESCALA = 2;
+
+    private static final long[] POTENCIAS_DE_DIEZ = {1L, 10L, 100L};
+
+    private Centavos() {
+    }
+
+    public static long de(BigDecimal monto) {
+        //Los montos enteros son los mas comunes y longValueExact no crea objetos para ellos
+        if (monto.scale() == 0) {
+            return Math.multiplyExact(monto.longValueExact(), POTENCIAS_DE_DIEZ[ESCALA]);
+        }
+        if (monto.scale() == ESCALA) {
+            return monto.unscaledValue().longValueExact();
+        }
+        return monto.setScale(ESCALA, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * El monto con a lo sumo la escala de la moneda, redondeado igual que en de().
+     * Los servicios lo aplican al recibir una transferencia y desde ahi el saldo y el movimiento
+     * usan el mismo valor; sin esto la columna (escala 2) redondearia el movimiento por su cuenta.
+     */
+    public static BigDecimal normalizar(BigDecimal monto) {
+        if (monto == null || monto.scale() <= ESCALA) {
+            return monto;
+        }
+        return monto.setScale(ESCALA, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Devuelve los centavos con la escala pedida si se puede sin perder precision
+     * ("900" sigue siendo "900" y no "900.00"), si no con la escala de la moneda.
+     */
+    public static BigDecimal aBigDecimal(long centavos, int escala) {
+        if (escala >= ESCALA || escala < 0) {
+            return BigDecimal.valueOf(centavos, ESCALA);
+        }
+        long divisor = POTENCIAS_DE_DIEZ[ESCALA - escala];
+        if (centavos % divisor != 0) {
+            return BigDecimal.valueOf(centavos, ESCALA);
+        }
+        return BigDecimal.valueOf(centavos / divisor, escala);
+    }
+
+    public static long sumar(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long restar(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+}
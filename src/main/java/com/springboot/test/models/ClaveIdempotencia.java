@@ -0,0 +1,37 @@
+package com.springboot.test.models;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Clave de idempotencia recibida en el header Idempotency-Key.
+ * Mientras la operacion esta en curso respuesta es null; al terminar bien guarda la respuesta en JSON.
+ * La huella (SHA-256 del cuerpo de la peticion) detecta la misma clave usada con otra peticion.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "claves_idempotencia", indexes = @Index(name = "idx_claves_idempotencia_expira", columnList = "expira"))
+public class ClaveIdempotencia {
+
+    @Id
+    private String clave;
+
+    @Column(nullable = false, length = 64)
+    private String huella;
+
+    @Lob
+    private String respuesta;
+
+    @Column(nullable = false)
+    private LocalDateTime creada;
+
+    @Column(nullable = false)
+    private LocalDateTime expira;
+
+}
@@ -0,0 +1,35 @@
+package com.springboot.test.models;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Una de las N filas (slots) en las que se reparte el contador de transferencias de un banco,
+ * asi las transferencias concurrentes no compiten por la misma fila de bancos
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "contadores_transferencias",
+        uniqueConstraints = @UniqueConstraint(name = "uk_contador_banco_slot", columnNames = {"banco_id", "slot"}))
+public class ContadorTransferencia {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "contadores_transferencias_seq")
+    @SequenceGenerator(name = "contadores_transferencias_seq", sequenceName = "contadores_transferencias_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "banco_id", nullable = false)
+    private Long bancoId;
+
+    @Column(nullable = false)
+    private int slot;
+
+    @Column(nullable = false)
+    private long total;
+
+}
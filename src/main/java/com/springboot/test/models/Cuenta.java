@@ -1,11 +1,16 @@
 package com.springboot.test.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.springboot.test.exceptions.DineroInsuficienteException;
 import lombok.*;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 @Getter
 @Setter
@@ -13,24 +18,88 @@ import java.util.Objects;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "cuentas")
+@Table(name = "cuentas", indexes = {
+        @Index(name = "idx_cuentas_persona", columnList = "persona"),
+        @Index(name = "idx_cuentas_persona_normalizada", columnList = "persona_normalizada, id"),
+        @Index(name = "idx_cuentas_cambio", columnList = "cambio")
+})
 public class Cuenta {
 
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+
+    //Secuencia en bloques de 50 (pooled-lo): hibernate asigna los ids en memoria y puede agrupar los inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cuentas_seq")
+    @SequenceGenerator(name = "cuentas_seq", sequenceName = "cuentas_seq", allocationSize = 50)
     private Long id;
     private String persona;
     private BigDecimal saldo;
 
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    //persona en minusculas y sin tildes, se usa para buscar por prefijo ("Andrés" -> "andres")
+    @JsonIgnore
+    @Column(name = "persona_normalizada")
+    private String personaNormalizada;
+
+    //Ultima escritura de la fila, se envia como Last-Modified (null en las filas de import.sql)
+    @JsonIgnore
+    private Instant modificado;
+
+    //Numero de cambio de la ultima escritura, unico y creciente (ver ISecuenciaCambiosService)
+    @JsonIgnore
+    private Long cambio;
+
+    public static String normalizar(String texto){
+        if(texto == null){
+            return null;
+        }
+        String sinTildes = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void antesDeGuardar(){
+        this.personaNormalizada = normalizar(persona);
+        this.modificado = Instant.now();
+    }
+
+    /**
+     * Copia separada de la entidad, se usa para que la cache nunca comparta
+     * la misma instancia con quien la modifica
+     */
+    public Cuenta copiar(){
+        return Cuenta.builder()
+                .id(id)
+                .persona(persona)
+                .saldo(saldo)
+                .version(version)
+                .personaNormalizada(personaNormalizada)
+                .modificado(modificado)
+                .cambio(cambio)
+                .build();
+    }
+
+    /**
+     * El saldo y el monto se operan como centavos en long (ver Centavos),
+     * el resultado conserva la escala que traian si no tiene centavos
+     */
     public void debito(BigDecimal monto){
-        if(monto.compareTo(saldo) > 0){
+        long saldoCentavos = Centavos.de(saldo);
+        long montoCentavos = Centavos.de(monto);
+        if(montoCentavos > saldoCentavos){
             throw new DineroInsuficienteException("Dinero insuficiente en la cuenta");
         }
-        this.saldo = this.saldo.subtract(monto);
+        this.saldo = Centavos.aBigDecimal(Centavos.restar(saldoCentavos, montoCentavos),
+                Math.max(saldo.scale(), monto.scale()));
     }
 
     public void credito(BigDecimal monto){
-        this.saldo = this.saldo.add(monto);
+        this.saldo = Centavos.aBigDecimal(Centavos.sumar(Centavos.de(saldo), Centavos.de(monto)),
+                Math.max(saldo.scale(), monto.scale()));
     }
 
     @Override
@@ -0,0 +1,32 @@
+package com.springboot.test.models;
+
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Marca de una cuenta eliminada, permite que GET /api/cuentas/cambios informe la baja
+ * a los clientes que sincronizan por numero de cambio. El id es el de la cuenta.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Immutable
+@Entity
+@Table(name = "cuentas_eliminadas", indexes = @Index(name = "idx_cuentas_eliminadas_cambio", columnList = "cambio"))
+public class CuentaEliminada {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long cambio;
+
+    @Column(nullable = false)
+    private Instant eliminada;
+
+}
@@ -0,0 +1,12 @@
+package com.springboot.test.models;
+
+public enum EstadoEncolada {
+
+    PENDIENTE,
+    //Reclamada por un trabajador hasta reclamadaHasta, despues otro la puede volver a reclamar
+    EN_PROCESO,
+    REALIZADA,
+    //Estado final: la transferencia no se pudo hacer o se agotaron los intentos
+    FALLIDA
+
+}
@@ -0,0 +1,32 @@
+package com.springboot.test.models;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Horizonte de numeros de cambio que informa cada instancia de la aplicacion: los numeros que tomo hasta ahi
+ * ya hicieron commit o se descartaron. El horizonte de la consulta de cambios es el menor de todas.
+ * Una instancia que deja de informar (se detuvo o fallo) se ignora cuando vence su reporte.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "cambios_instancias")
+public class InstanciaCambios {
+
+    @Id
+    @Column(length = 36)
+    private String instancia;
+
+    @Column(nullable = false)
+    private long horizonte;
+
+    @Column(nullable = false)
+    private LocalDateTime vence;
+
+}
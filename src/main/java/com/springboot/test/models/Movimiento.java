@@ -0,0 +1,49 @@
+package com.springboot.test.models;
+
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Registro inmutable de un debito o credito sobre una cuenta.
+ * El id sale de una secuencia que reserva bloques de 50 valores, asi hibernate
+ * no necesita ir a la base de datos por cada fila y puede agrupar los inserts (jdbc batch).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Immutable
+@Entity
+@Table(name = "movimientos", indexes = @Index(name = "idx_movimientos_cuenta_id", columnList = "cuenta_id, id"))
+public class Movimiento {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimientos_seq")
+    @SequenceGenerator(name = "movimientos_seq", sequenceName = "movimientos_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "cuenta_id", nullable = false)
+    private Long cuentaId;
+
+    @Column(name = "cuenta_contraparte_id", nullable = false)
+    private Long cuentaContraparteId;
+
+    @Column(name = "banco_id", nullable = false)
+    private Long bancoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private TipoMovimiento tipo;
+
+    @Column(nullable = false)
+    private BigDecimal monto;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+}
@@ -0,0 +1,8 @@
+package com.springboot.test.models;
+
+public enum TipoMovimiento {
+
+    DEBITO,
+    CREDITO
+
+}
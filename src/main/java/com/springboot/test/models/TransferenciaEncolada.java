@@ -0,0 +1,73 @@
+package com.springboot.test.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.springboot.test.dto.EstadoTransaccion;
+import lombok.*;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Transferencia recibida por POST /api/cuentas/transferencias que espera a ser procesada.
+ * La fila se guarda antes de responder 202, asi la transferencia no se pierde si el proceso se reinicia.
+ * Un trabajador la reclama (EN_PROCESO, reclamo y reclamadaHasta) y la marca REALIZADA en la misma
+ * transaccion que mueve el dinero, solo si el reclamo sigue siendo suyo.
+ * Si falla, resultado y mensaje indican el motivo.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "transferencias_encoladas",
+        indexes = @Index(name = "idx_transferencias_encoladas_estado", columnList = "estado, id"))
+public class TransferenciaEncolada {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transferencias_encoladas_seq")
+    @SequenceGenerator(name = "transferencias_encoladas_seq", sequenceName = "transferencias_encoladas_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "cuenta_origen_id", nullable = false)
+    private Long cuentaOrigenId;
+
+    @Column(name = "cuenta_destino_id", nullable = false)
+    private Long cuentaDestinoId;
+
+    @Column(name = "banco_id", nullable = false)
+    private Long bancoId;
+
+    @Column(nullable = false)
+    private BigDecimal monto;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private EstadoEncolada estado;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private EstadoTransaccion resultado;
+
+    private String mensaje;
+
+    @Column(nullable = false)
+    private LocalDateTime creada;
+
+    private LocalDateTime procesada;
+
+    //Veces que se reclamo, al superar app.transferencias.cola.intentos queda FALLIDA
+    @Column(nullable = false)
+    private int intentos;
+
+    //Identifica el reclamo vigente, null fuera de EN_PROCESO
+    @JsonIgnore
+    @Column(length = 36)
+    private String reclamo;
+
+    @JsonIgnore
+    @Column(name = "reclamada_hasta")
+    private LocalDateTime reclamadaHasta;
+
+}
@@ -2,7 +2,18 @@ package com.springboot.test.repositories;
 
 import com.springboot.test.models.Banco;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 
 public interface BancoRepository extends JpaRepository<Banco, Long> {
 
+    //El resultado se invalida cuando cambia cualquier fila de bancos
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Override
+    List<Banco> findAll();
+
 }
@@ -0,0 +1,43 @@
+package com.springboot.test.repositories;
+
+import com.springboot.test.models.ClaveIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface ClaveIdempotenciaRepository extends JpaRepository<ClaveIdempotencia, String> {
+
+    /**
+     * Solo inserta: si la clave ya existe falla con DataIntegrityViolationException (save haria un merge)
+     */
+    @Modifying
+    @Query(value = "insert into claves_idempotencia (clave, huella, creada, expira) values (?1, ?2, ?3, ?4)",
+            nativeQuery = true)
+    void insertar(String clave, String huella, LocalDateTime creada, LocalDateTime expira);
+
+    /**
+     * Toma una clave vencida que aun no se borra, como si fuera nueva
+     */
+    @Modifying
+    @Query("update ClaveIdempotencia c set c.huella = ?2, c.respuesta = null, c.creada = ?3, c.expira = ?4 " +
+            "where c.clave = ?1 and c.expira < ?3")
+    int renovar(String clave, String huella, LocalDateTime creada, LocalDateTime expira);
+
+    @Modifying
+    @Query("update ClaveIdempotencia c set c.respuesta = ?3 where c.clave = ?1 and c.creada = ?2")
+    int completar(String clave, LocalDateTime creada, String respuesta);
+
+    /**
+     * La operacion fallo: la clave se libera, solo si sigue siendo la que se inserto
+     */
+    @Modifying
+    @Query("delete from ClaveIdempotencia c where c.clave = ?1 and c.creada = ?2 and c.respuesta is null")
+    int liberar(String clave, LocalDateTime creada);
+
+    @Modifying
+    @Query("delete from ClaveIdempotencia c where c.expira < ?1")
+    int borrarVencidas(LocalDateTime ahora);
+
+}
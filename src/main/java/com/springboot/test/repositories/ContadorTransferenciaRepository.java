@@ -0,0 +1,21 @@
+package com.springboot.test.repositories;
+
+import com.springboot.test.models.ContadorTransferencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface ContadorTransferenciaRepository extends JpaRepository<ContadorTransferencia, Long> {
+
+    @Modifying
+    @Query("update ContadorTransferencia c set c.total = c.total + ?3 where c.bancoId = ?1 and c.slot = ?2")
+    int incrementar(Long bancoId, int slot, long cantidad);
+
+    @Query("select coalesce(sum(c.total), 0) from ContadorTransferencia c where c.bancoId = ?1")
+    long sumarPorBanco(Long bancoId);
+
+    List<ContadorTransferencia> findByBancoId(Long bancoId);
+
+}
@@ -0,0 +1,18 @@
+package com.springboot.test.repositories;
+
+import com.springboot.test.models.CuentaEliminada;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface CuentaEliminadaRepository extends JpaRepository<CuentaEliminada, Long> {
+
+    @Query("select e from CuentaEliminada e where e.cambio > ?1 and e.cambio <= ?2 order by e.cambio")
+    List<CuentaEliminada> findCambios(Long desde, Long hasta, Pageable pagina);
+
+    @Query("select max(e.cambio) from CuentaEliminada e where e.cambio <= ?1")
+    Long findUltimoCambioHasta(Long hasta);
+
+}
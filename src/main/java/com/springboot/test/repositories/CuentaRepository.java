@@ -1,14 +1,69 @@
 package com.springboot.test.repositories;
 
+import com.springboot.test.dto.VersionCuentaDTO;
 import com.springboot.test.models.Cuenta;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface CuentaRepository extends JpaRepository<Cuenta, Long> {
 
-    @Query("select c from Cuenta c where c.persona =?1")
-    Optional<Cuenta> findByPersona(String persona);
+    /**
+     * Varias cuentas pueden tener la misma persona, se devuelve la de menor id
+     */
+    default Optional<Cuenta> findByPersona(String persona) {
+        return findFirstByPersonaOrderByIdAsc(persona);
+    }
+
+    Optional<Cuenta> findFirstByPersonaOrderByIdAsc(String persona);
+
+    @Query("select c from Cuenta c where c.personaNormalizada like ?1 escape '\\' " +
+            "order by c.personaNormalizada, c.id")
+    List<Cuenta> buscarPorPrefijo(String prefijo, Pageable pagina);
+
+    @Query("select c from Cuenta c where c.personaNormalizada like ?1 escape '\\' " +
+            "and (c.personaNormalizada > ?2 or (c.personaNormalizada = ?2 and c.id > ?3)) " +
+            "order by c.personaNormalizada, c.id")
+    List<Cuenta> buscarPorPrefijoDespuesDe(String prefijo, String personaNormalizada, Long id, Pageable pagina);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Cuenta c where c.id = ?1")
+    Optional<Cuenta> findByIdParaActualizar(Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Cuenta c where c.id in ?1 order by c.id")
+    List<Cuenta> findAllByIdParaActualizar(Collection<Long> ids);
+
+    @Query("select new com.springboot.test.dto.VersionCuentaDTO(c.version, c.modificado) from Cuenta c where c.id = ?1")
+    Optional<VersionCuentaDTO> findVersionById(Long id);
+
+    @Query("select c from Cuenta c where c.cambio > ?1 and c.cambio <= ?2 order by c.cambio")
+    List<Cuenta> findCambios(Long desde, Long hasta, Pageable pagina);
+
+    @Query("select max(c.cambio) from Cuenta c where c.cambio <= ?1")
+    Long findUltimoCambioHasta(Long hasta);
+
+    @Query("select c from Cuenta c where c.id > ?1 order by c.id")
+    List<Cuenta> findSiguientes(Long despuesDeId, Pageable pagina);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select c from Cuenta c order by c.id")
+    Stream<Cuenta> streamAll();
 
 }
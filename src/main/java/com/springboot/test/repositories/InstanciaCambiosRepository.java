@@ -0,0 +1,22 @@
+package com.springboot.test.repositories;
+
+import com.springboot.test.models.InstanciaCambios;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface InstanciaCambiosRepository extends JpaRepository<InstanciaCambios, String> {
+
+    /**
+     * @return el menor horizonte vigente de las demas instancias, null si no hay otras
+     */
+    @Query("select min(i.horizonte) from InstanciaCambios i where i.instancia <> ?1 and i.vence > ?2")
+    Long findHorizonteOtras(String instancia, LocalDateTime ahora);
+
+    @Modifying
+    @Query("delete from InstanciaCambios i where i.vence < ?1")
+    int borrarVencidas(LocalDateTime limite);
+
+}
@@ -0,0 +1,15 @@
+package com.springboot.test.repositories;
+
+import com.springboot.test.models.Movimiento;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface MovimientoRepository extends JpaRepository<Movimiento, Long> {
+
+    @Query("select m from Movimiento m where m.cuentaId = ?1 and m.id > ?2 order by m.id")
+    List<Movimiento> findSiguientes(Long cuentaId, Long despuesDeId, Pageable pagina);
+
+}
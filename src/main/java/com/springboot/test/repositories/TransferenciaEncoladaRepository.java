@@ -0,0 +1,54 @@
+package com.springboot.test.repositories;
+
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.models.EstadoEncolada;
+import com.springboot.test.models.TransferenciaEncolada;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface TransferenciaEncoladaRepository extends JpaRepository<TransferenciaEncolada, Long> {
+
+    /**
+     * Pendientes o reclamadas por un trabajador que no termino a tiempo (se detuvo o fallo el proceso)
+     */
+    @Query("select t.id from TransferenciaEncolada t " +
+            "where t.estado = ?1 or (t.estado = ?2 and t.reclamadaHasta < ?3) order by t.id")
+    List<Long> findReclamables(EstadoEncolada pendiente, EstadoEncolada enProceso, LocalDateTime ahora, Pageable pagina);
+
+    /**
+     * Solo toma las filas que siguen reclamables: si dos trabajadores eligen la misma fila,
+     * el UPDATE del segundo ya no la encuentra
+     */
+    @Modifying
+    @Query("update TransferenciaEncolada t set t.estado = ?2, t.reclamo = ?3, t.reclamadaHasta = ?4, t.intentos = t.intentos + 1 " +
+            "where t.id in ?1 and (t.estado = ?5 or (t.estado = ?2 and t.reclamadaHasta < ?6))")
+    int reclamar(Collection<Long> ids, EstadoEncolada enProceso, String reclamo, LocalDateTime hasta,
+                 EstadoEncolada pendiente, LocalDateTime ahora);
+
+    List<TransferenciaEncolada> findByReclamoOrderById(String reclamo);
+
+    /**
+     * @return 0 si el reclamo ya no es vigente (otro trabajador la reclamo o ya termino)
+     */
+    @Modifying
+    @Query("update TransferenciaEncolada t set t.estado = ?3, t.resultado = ?4, t.mensaje = ?5, t.procesada = ?6, " +
+            "t.reclamo = null, t.reclamadaHasta = null where t.id = ?1 and t.reclamo = ?2")
+    int finalizar(Long id, String reclamo, EstadoEncolada estado, EstadoTransaccion resultado, String mensaje,
+                  LocalDateTime procesada);
+
+    /**
+     * Un error transitorio: la fila sigue reclamada hasta el momento indicado y luego se reintenta
+     */
+    @Modifying
+    @Query("update TransferenciaEncolada t set t.reclamadaHasta = ?3 where t.id = ?1 and t.reclamo = ?2")
+    int posponer(Long id, String reclamo, LocalDateTime hasta);
+
+    long countByEstadoIn(Collection<EstadoEncolada> estados);
+
+}
@@ -1,47 +1,182 @@
 package com.springboot.test.services;
 
+import com.springboot.test.config.TransferenciaProperties;
+import com.springboot.test.config.TransferenciaProperties.ModoBloqueo;
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.ResultadoTransaccionDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.DineroInsuficienteException;
 import com.springboot.test.models.Banco;
+import com.springboot.test.models.Centavos;
 import com.springboot.test.models.Cuenta;
+import com.springboot.test.models.EstadoEncolada;
+import com.springboot.test.models.TransferenciaEncolada;
 import com.springboot.test.repositories.BancoRepository;
+import com.springboot.test.repositories.TransferenciaEncoladaRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
+@ConditionalOnProperty(prefix = "app.transferencias", name = "motor", havingValue = "transaccional", matchIfMissing = true)
 public class BancoServiceImpl implements IBancoService{
 
+    private static final Logger log = LoggerFactory.getLogger(BancoServiceImpl.class);
+    private static final String METRICA = "servicio.bancos";
+    //Unicos valores del tag "tipo" de las metricas de reintentos, no se usan ids para no crear una serie por cuenta
+    private static final String TIPO_TRANSFERENCIA = "transferencia";
+    private static final String TIPO_LOTE = "lote";
+
     private final BancoRepository bancoRepository;
+    private final TransferenciaEncoladaRepository encoladaRepository;
     private final ICuentaService cuentaService;
+    private final IContadorTransferenciaService contadorService;
+    private final IMovimientoService movimientoService;
+    private final TransferenciaProperties transferenciaProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    //Transferencias que entraron y aun no terminan (las del lote cuentan una por una)
+    private final AtomicInteger enCurso = new AtomicInteger();
 
-    public BancoServiceImpl(BancoRepository bancoRepository, ICuentaService cuentaService) {
+    public BancoServiceImpl(BancoRepository bancoRepository,
+                            TransferenciaEncoladaRepository encoladaRepository,
+                            ICuentaService cuentaService,
+                            IContadorTransferenciaService contadorService,
+                            IMovimientoService movimientoService,
+                            TransferenciaProperties transferenciaProperties,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
         this.bancoRepository = bancoRepository;
+        this.encoladaRepository = encoladaRepository;
         this.cuentaService = cuentaService;
+        this.contadorService = contadorService;
+        this.movimientoService = movimientoService;
+        this.transferenciaProperties = transferenciaProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("transferencias.en_curso", enCurso, AtomicInteger::get)
+                .description("Transferencias en proceso")
+                .register(meterRegistry);
     }
 
+    @Timed(value = METRICA, histogram = true)
     @Transactional(readOnly = true)
     @Override
     public Banco findById(Long id) {
         return bancoRepository.findById(id).orElseThrow();
     }
 
+    @Timed(value = METRICA, histogram = true)
     @Transactional
     @Override
     public void update(Banco banco) {
         bancoRepository.save(banco);
     }
 
+    @Timed(value = METRICA, histogram = true)
     @Transactional(readOnly = true)
     @Override
     public Integer revisarTotalTransferencias(Long bancoId) {
-        Banco banco = bancoRepository.findById(bancoId).orElseThrow();
-        return banco.getTotalTransferencia();
+        return Math.toIntExact(contadorService.total(bancoId));
     }
 
-    @Transactional
+    /**
+     * La transaccion se abre aqui y no con @Transactional porque cada reintento necesita una transaccion nueva.
+     * El monto se redondea a centavos una sola vez, el saldo y los movimientos usan ese mismo valor.
+     */
+    @Timed(value = METRICA, histogram = true)
     @Override
     public void transferir(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal monto) {
 
+        BigDecimal importe = importe(monto);
+        contando(() -> ejecutar(TIPO_TRANSFERENCIA, status -> {
+            aplicarTransferencia(bancoId, numCuentaOrigen, numCuentaDestino, importe);
+            return null;
+        }));
+
+    }
+
+    /**
+     * El UPDATE que marca la fila va primero: bloquea la fila hasta el commit y, si el reclamo ya no es
+     * vigente, no se mueve el dinero. Cada reintento vuelve a revisar el reclamo.
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Override
+    public boolean transferirEncolada(TransferenciaEncolada encolada) {
+
+        BigDecimal importe = importe(encolada.getMonto());
+        return contando(() -> ejecutar(TIPO_TRANSFERENCIA, status -> {
+            if (encoladaRepository.finalizar(encolada.getId(), encolada.getReclamo(), EstadoEncolada.REALIZADA,
+                    EstadoTransaccion.REALIZADA, "Transferencia realizada con éxito!", LocalDateTime.now()) == 0) {
+                return false;
+            }
+            aplicarTransferencia(encolada.getBancoId(), encolada.getCuentaOrigenId(), encolada.getCuentaDestinoId(), importe);
+            return true;
+        }));
+
+    }
+
+    private BigDecimal importe(BigDecimal monto) {
+        BigDecimal importe = Centavos.normalizar(monto);
+        if (importe == null || importe.signum() <= 0) {
+            contarFallida(EstadoTransaccion.INVALIDA);
+            throw new IllegalArgumentException("El monto debe ser mayor a cero");
+        }
+        return importe;
+    }
+
+    private <T> T contando(Supplier<T> transferencia) {
+
+        enCurso.incrementAndGet();
+        try {
+            return transferencia.get();
+        } catch (DineroInsuficienteException e) {
+            contarFallida(EstadoTransaccion.DINERO_INSUFICIENTE);
+            throw e;
+        } catch (NoSuchElementException e) {
+            contarFallida(EstadoTransaccion.NO_ENCONTRADA);
+            throw e;
+        } finally {
+            enCurso.decrementAndGet();
+        }
+
+    }
+
+    private void aplicarTransferencia(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal importe) {
+
+        ModoBloqueo bloqueo = transferenciaProperties.getBloqueo();
+        if (bloqueo == ModoBloqueo.PESIMISTA) {
+            transferirConBloqueo(bancoId, numCuentaOrigen, numCuentaDestino, importe);
+        } else if (bloqueo == ModoBloqueo.CONDICIONAL && !numCuentaOrigen.equals(numCuentaDestino)) {
+            transferirCondicional(bancoId, numCuentaOrigen, numCuentaDestino, importe);
+        } else {
+            transferirSinBloqueo(bancoId, numCuentaOrigen, numCuentaDestino, importe);
+        }
+
+    }
+
+    private void transferirSinBloqueo(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal monto) {
+
         Cuenta cuentaOrigen = cuentaService.findById(numCuentaOrigen);
         cuentaOrigen.debito(monto);
         cuentaService.update(cuentaOrigen);
@@ -50,11 +185,235 @@ public class BancoServiceImpl implements IBancoService{
         cuentaDestino.credito(monto);
         cuentaService.update(cuentaDestino);
 
-        Banco banco = findById(bancoId);
-        int totalTransferencias = banco.getTotalTransferencia();
-        banco.setTotalTransferencia(++totalTransferencias);
-        bancoRepository.save(banco);
+        movimientoService.registrarTransferencia(bancoId, numCuentaOrigen, numCuentaDestino, monto);
+        contadorService.incrementar(bancoId, 1);
+
+    }
+
+    /**
+     * Sin leer las cuentas: un UPDATE para ambas, el insert de los movimientos y el UPDATE del contador.
+     * Una transferencia a la misma cuenta va por transferirSinBloqueo, el UPDATE veria una sola fila.
+     * El contador no va en el mismo batch que las cuentas: hay que ver cuantas filas actualizo el UPDATE
+     * antes de seguir, y el contador ya reparte su UPDATE en slots.
+     */
+    private void transferirCondicional(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal monto) {
+
+        cuentaService.transferirSaldo(numCuentaOrigen, numCuentaDestino, monto);
+        movimientoService.registrarTransferencia(bancoId, numCuentaOrigen, numCuentaDestino, monto);
+        contadorService.incrementar(bancoId, 1);
+
+    }
+
+    /**
+     * Bloquea ambas cuentas con SELECT ... FOR UPDATE antes de modificarlas.
+     * Las cuentas se bloquean siempre en orden ascendente de id y luego el contador del banco,
+     * asi dos transferencias en sentido contrario (A->B y B->A) esperan en lugar de bloquearse entre si.
+     */
+    private void transferirConBloqueo(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal monto) {
+
+        Cuenta cuentaOrigen;
+        Cuenta cuentaDestino;
+        if (numCuentaOrigen.compareTo(numCuentaDestino) <= 0) {
+            cuentaOrigen = cuentaService.findByIdParaActualizar(numCuentaOrigen);
+            cuentaDestino = cuentaService.findByIdParaActualizar(numCuentaDestino);
+        } else {
+            cuentaDestino = cuentaService.findByIdParaActualizar(numCuentaDestino);
+            cuentaOrigen = cuentaService.findByIdParaActualizar(numCuentaOrigen);
+        }
+
+        cuentaOrigen.debito(monto);
+        cuentaService.update(cuentaOrigen);
+
+        cuentaDestino.credito(monto);
+        cuentaService.update(cuentaDestino);
+
+        movimientoService.registrarTransferencia(bancoId, numCuentaOrigen, numCuentaDestino, monto);
+        contadorService.incrementar(bancoId, 1);
+
+    }
+
+    /**
+     * Aplica las transferencias en bloques, cada bloque en su propia transaccion.
+     * Las cuentas y bancos de un bloque se cargan con una sola consulta y los cambios
+     * se escriben al hacer commit, por lo que hibernate puede agrupar los updates (jdbc batch).
+     * Una transferencia fallida no cancela el resto del lote.
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Override
+    public List<ResultadoTransaccionDTO> transferirLote(List<TransaccionDTO> lote) {
+
+        List<TransaccionDTO> transacciones = new ArrayList<>(lote.size());
+        lote.forEach(transaccion -> transacciones.add(transaccion.conMontoNormalizado()));
+        List<ResultadoTransaccionDTO> resultados = new ArrayList<>(transacciones.size());
+        int tamanio = Math.max(1, transferenciaProperties.getLote().getTamanio());
+
+        enCurso.addAndGet(transacciones.size());
+        try {
+            for (int inicio = 0; inicio < transacciones.size(); inicio += tamanio) {
+                List<TransaccionDTO> bloque = transacciones.subList(inicio, Math.min(inicio + tamanio, transacciones.size()));
+                int desplazamiento = inicio;
+                resultados.addAll(Objects.requireNonNull(
+                        ejecutar(TIPO_LOTE, status -> aplicarBloque(bloque, desplazamiento))));
+            }
+        } finally {
+            enCurso.addAndGet(-transacciones.size());
+        }
+
+        resultados.stream()
+                .filter(resultado -> resultado.getEstado() != EstadoTransaccion.REALIZADA)
+                .forEach(resultado -> contarFallida(resultado.getEstado()));
+
+        return resultados;
+    }
+
+    private List<ResultadoTransaccionDTO> aplicarBloque(List<TransaccionDTO> bloque, int desplazamiento) {
+
+        Set<Long> cuentaIds = new HashSet<>();
+        Set<Long> bancoIds = new HashSet<>();
+        for (TransaccionDTO transaccion : bloque) {
+            agregarSiNoEsNulo(cuentaIds, transaccion.getCuentaOrigenId());
+            agregarSiNoEsNulo(cuentaIds, transaccion.getCuentaDestinoId());
+            agregarSiNoEsNulo(bancoIds, transaccion.getBancoDestinoId());
+        }
+
+        boolean bloquear = transferenciaProperties.getBloqueo() == ModoBloqueo.PESIMISTA;
+        List<Cuenta> cuentasBloque = bloquear
+                ? cuentaService.findAllByIdParaActualizar(cuentaIds)
+                : cuentaService.findAllById(cuentaIds);
+        //El contador de cada banco se bloquea al incrementarlo, despues de las cuentas
+        List<Banco> bancosBloque = bancoRepository.findAllById(bancoIds);
+
+        Map<Long, Cuenta> cuentas = cuentasBloque.stream()
+                .collect(Collectors.toMap(Cuenta::getId, Function.identity()));
+        Map<Long, Banco> bancos = bancosBloque.stream()
+                .collect(Collectors.toMap(Banco::getId, Function.identity()));
+
+        List<ResultadoTransaccionDTO> resultados = new ArrayList<>(bloque.size());
+        Map<Long, Integer> realizadasPorBanco = new TreeMap<>();
+        Map<Long, Cuenta> modificadas = new TreeMap<>();
+        List<TransaccionDTO> realizadas = new ArrayList<>(bloque.size());
+        for (int i = 0; i < bloque.size(); i++) {
+            TransaccionDTO transaccion = bloque.get(i);
+            ResultadoTransaccionDTO resultado = aplicar(desplazamiento + i, transaccion, cuentas, bancos);
+            if (resultado.getEstado() == EstadoTransaccion.REALIZADA) {
+                realizadasPorBanco.merge(transaccion.getBancoDestinoId(), 1, Integer::sum);
+                realizadas.add(transaccion);
+                modificadas.put(transaccion.getCuentaOrigenId(), cuentas.get(transaccion.getCuentaOrigenId()));
+                modificadas.put(transaccion.getCuentaDestinoId(), cuentas.get(transaccion.getCuentaDestinoId()));
+            }
+            resultados.add(resultado);
+        }
+
+        //Las cuentas ya estan en el contexto de persistencia, update no las vuelve a leer
+        //pero si invalida sus entradas en la cache
+        modificadas.values().forEach(cuentaService::update);
+
+        //Dos movimientos por transferencia realizada, insertados en el mismo batch al hacer commit
+        if (!realizadas.isEmpty()) {
+            movimientoService.registrarTransferencias(realizadas);
+        }
+
+        //El contador de cada banco se incrementa una sola vez por bloque, en orden ascendente de id
+        realizadasPorBanco.forEach(contadorService::incrementar);
+
+        return resultados;
+    }
+
+    private ResultadoTransaccionDTO aplicar(int indice, TransaccionDTO transaccion,
+                                            Map<Long, Cuenta> cuentas, Map<Long, Banco> bancos) {
+
+        BigDecimal monto = transaccion.getMonto();
+        if (monto == null || monto.signum() <= 0) {
+            return resultado(indice, EstadoTransaccion.INVALIDA, "El monto debe ser mayor a cero");
+        }
+
+        Cuenta cuentaOrigen = cuentas.get(transaccion.getCuentaOrigenId());
+        Cuenta cuentaDestino = cuentas.get(transaccion.getCuentaDestinoId());
+        Banco banco = bancos.get(transaccion.getBancoDestinoId());
+        if (cuentaOrigen == null || cuentaDestino == null || banco == null) {
+            return resultado(indice, EstadoTransaccion.NO_ENCONTRADA, "Cuenta o banco no encontrado");
+        }
+
+        try {
+            cuentaOrigen.debito(monto);
+        } catch (DineroInsuficienteException e) {
+            return resultado(indice, EstadoTransaccion.DINERO_INSUFICIENTE, e.getMessage());
+        }
+        cuentaDestino.credito(monto);
+
+        return resultado(indice, EstadoTransaccion.REALIZADA, "Transferencia realizada con éxito!");
+    }
+
+    /**
+     * Ejecuta la operacion en una transaccion. En todos los modos, si otra transaccion modifico
+     * las mismas filas (@Version de Cuenta) o no se obtuvo un bloqueo a tiempo, se reintenta en una
+     * transaccion nueva con una espera aleatoria (jitter) para que los hilos en conflicto no vuelvan
+     * a chocar al mismo tiempo. Si ya existe una transaccion activa no se reintenta, porque esa
+     * transaccion quedo marcada para rollback.
+     *
+     * @param tipo tag de las metricas, transferencia individual o bloque de un lote
+     */
+    private <T> T ejecutar(String tipo, TransactionCallback<T> operacion) {
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(operacion);
+        }
+
+        int maximo = Math.max(1, transferenciaProperties.getReintentos().getMaximo());
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(operacion);
+            } catch (ConcurrencyFailureException e) {
+                if (intento >= maximo) {
+                    contador("transferencias.abandonadas", tipo).increment();
+                    log.warn("Operacion {} abandonada tras {} intentos", tipo, intento);
+                    throw e;
+                }
+                contador("transferencias.reintentos", tipo).increment();
+                esperar(intento, e);
+            }
+        }
+    }
+
+    private void esperar(int intento, ConcurrencyFailureException causa) {
+
+        TransferenciaProperties.Reintentos reintentos = transferenciaProperties.getReintentos();
+        long base = reintentos.getEsperaBase().toMillis();
+        long tope = Math.min(reintentos.getEsperaMaxima().toMillis(), base << Math.min(intento - 1, 20));
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(tope + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw causa;
+        }
+    }
+
+    private void contarFallida(EstadoTransaccion estado) {
+        Counter.builder("transferencias.fallidas")
+                .tag("motivo", estado.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Counter contador(String nombre, String tipo) {
+        return Counter.builder(nombre)
+                .tag("tipo", tipo)
+                .register(meterRegistry);
+    }
+
+    private static ResultadoTransaccionDTO resultado(int indice, EstadoTransaccion estado, String mensaje) {
+        return ResultadoTransaccionDTO.builder()
+                .indice(indice)
+                .estado(estado)
+                .mensaje(mensaje)
+                .build();
+    }
 
+    private static void agregarSiNoEsNulo(Set<Long> ids, Long id) {
+        if (id != null) {
+            ids.add(id);
+        }
     }
 
 }
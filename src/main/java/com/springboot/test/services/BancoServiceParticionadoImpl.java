@@ -0,0 +1,286 @@
+package com.springboot.test.services;
+
+import com.springboot.test.config.TransferenciaProperties;
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.ResultadoTransaccionDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.ColaTransferenciasLlenaException;
+import com.springboot.test.exceptions.DineroInsuficienteException;
+import com.springboot.test.models.Banco;
+import com.springboot.test.models.Centavos;
+import com.springboot.test.models.TransferenciaEncolada;
+import com.springboot.test.repositories.BancoRepository;
+import com.springboot.test.services.motor.MotorTransferencias;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IBancoService sobre el motor de particiones (app.transferencias.motor=particionado).
+ * Las transferencias se aplican en memoria y se responden antes de escribirse en la base;
+ * el total de transferencias del banco incluye las que aun no se escriben.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.transferencias", name = "motor", havingValue = "particionado")
+public class BancoServiceParticionadoImpl implements IBancoService, DisposableBean {
+
+    private static final String METRICA = "servicio.bancos";
+    private static final Duration ESPERA_AL_DETENER = Duration.ofSeconds(30);
+
+    private final BancoRepository bancoRepository;
+    private final MotorTransferencias motor;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+    public BancoServiceParticionadoImpl(BancoRepository bancoRepository,
+                                        ICuentaService cuentaService,
+                                        IContadorTransferenciaService contadorService,
+                                        IMovimientoService movimientoService,
+                                        ISecuenciaCambiosService secuenciaCambios,
+                                        TransferenciaProperties transferenciaProperties,
+                                        PlatformTransactionManager transactionManager,
+                                        JdbcTemplate jdbcTemplate,
+                                        MeterRegistry meterRegistry) {
+        this.bancoRepository = bancoRepository;
+        this.meterRegistry = meterRegistry;
+        this.motor = new MotorTransferencias(transferenciaProperties.getParticionado(), jdbcTemplate,
+                new TransactionTemplate(transactionManager), movimientoService, contadorService, cuentaService,
+                secuenciaCambios);
+        Gauge.builder("transferencias.en_curso", enCurso, AtomicInteger::get)
+                .description("Transferencias en proceso")
+                .register(meterRegistry);
+        Gauge.builder("transferencias.motor.sin_escribir", motor, MotorTransferencias::sinEscribir)
+                .description("Transferencias aplicadas en memoria que aun no se escriben en la base")
+                .register(meterRegistry);
+        Gauge.builder("transferencias.motor.retenidas", motor, MotorTransferencias::retenidas)
+                .description("Transferencias en el motor, desde que entran hasta que se escriben")
+                .register(meterRegistry);
+    }
+
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(readOnly = true)
+    @Override
+    public Banco findById(Long id) {
+        return bancoRepository.findById(id).orElseThrow();
+    }
+
+    @Timed(value = METRICA, histogram = true)
+    @Transactional
+    @Override
+    public void update(Banco banco) {
+        bancoRepository.save(banco);
+    }
+
+    @Timed(value = METRICA, histogram = true)
+    @Override
+    public Integer revisarTotalTransferencias(Long bancoId) {
+        return Math.toIntExact(motor.totalTransferencias(bancoId));
+    }
+
+    @Timed(value = METRICA, histogram = true)
+    @Override
+    public void transferir(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal monto) {
+
+        enCurso.incrementAndGet();
+        try {
+            bancoRepository.findById(bancoId).orElseThrow();
+            esperar(motor.transferir(bancoId, numCuentaOrigen, numCuentaDestino, Centavos.normalizar(monto)));
+        } catch (DineroInsuficienteException e) {
+            contarFallida(EstadoTransaccion.DINERO_INSUFICIENTE);
+            throw e;
+        } catch (NoSuchElementException e) {
+            contarFallida(EstadoTransaccion.NO_ENCONTRADA);
+            throw e;
+        } catch (ColaTransferenciasLlenaException e) {
+            contarFallida(EstadoTransaccion.RECHAZADA);
+            throw e;
+        } finally {
+            enCurso.decrementAndGet();
+        }
+
+    }
+
+    /**
+     * La fila se marca REALIZADA cuando el escritor escribe la transferencia, en la misma transaccion.
+     * Si el proceso termina antes, ni el dinero ni la fila se escriben y el reclamo vence.
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Override
+    public boolean transferirEncolada(TransferenciaEncolada encolada) {
+
+        BigDecimal monto = Centavos.normalizar(encolada.getMonto());
+        if (monto == null || monto.signum() <= 0) {
+            contarFallida(EstadoTransaccion.INVALIDA);
+            throw new IllegalArgumentException("El monto debe ser mayor a cero");
+        }
+        enCurso.incrementAndGet();
+        try {
+            bancoRepository.findById(encolada.getBancoId()).orElseThrow();
+            CompletableFuture<Void> enviada = motor.transferir(encolada.getBancoId(), encolada.getCuentaOrigenId(),
+                    encolada.getCuentaDestinoId(), monto, encolada.getId());
+            if (enviada == null) {
+                //Ya esta en el motor por un reclamo anterior
+                return false;
+            }
+            esperar(enviada);
+            return true;
+        } catch (DineroInsuficienteException e) {
+            contarFallida(EstadoTransaccion.DINERO_INSUFICIENTE);
+            throw e;
+        } catch (NoSuchElementException e) {
+            contarFallida(EstadoTransaccion.NO_ENCONTRADA);
+            throw e;
+        } catch (ColaTransferenciasLlenaException e) {
+            contarFallida(EstadoTransaccion.RECHAZADA);
+            throw e;
+        } finally {
+            enCurso.decrementAndGet();
+        }
+
+    }
+
+    /**
+     * Se envian todas las transferencias del lote al motor y despues se esperan,
+     * asi las particiones las procesan en paralelo.
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Override
+    public List<ResultadoTransaccionDTO> transferirLote(List<TransaccionDTO> transacciones) {
+
+        Set<Long> bancoIds = new HashSet<>();
+        for (TransaccionDTO transaccion : transacciones) {
+            if (transaccion.getBancoDestinoId() != null) {
+                bancoIds.add(transaccion.getBancoDestinoId());
+            }
+        }
+        Set<Long> bancosExistentes = new HashSet<>();
+        bancoRepository.findAllById(bancoIds).forEach(banco -> bancosExistentes.add(banco.getId()));
+
+        List<ResultadoTransaccionDTO> resultados = new ArrayList<>(transacciones.size());
+        List<CompletableFuture<Void>> enviadas = new ArrayList<>(transacciones.size());
+
+        enCurso.addAndGet(transacciones.size());
+        try {
+            for (int i = 0; i < transacciones.size(); i++) {
+                TransaccionDTO transaccion = transacciones.get(i);
+                BigDecimal monto = Centavos.normalizar(transaccion.getMonto());
+                if (monto == null || monto.signum() <= 0) {
+                    resultados.add(resultado(i, EstadoTransaccion.INVALIDA, "El monto debe ser mayor a cero"));
+                    enviadas.add(null);
+                } else if (transaccion.getCuentaOrigenId() == null || transaccion.getCuentaDestinoId() == null
+                        || !bancosExistentes.contains(transaccion.getBancoDestinoId())) {
+                    resultados.add(resultado(i, EstadoTransaccion.NO_ENCONTRADA, "Cuenta o banco no encontrado"));
+                    enviadas.add(null);
+                } else {
+                    enviadas.add(enviar(i, transaccion, monto, resultados));
+                }
+            }
+
+            for (int i = 0; i < enviadas.size(); i++) {
+                if (enviadas.get(i) != null) {
+                    resultados.set(i, esperarResultado(i, enviadas.get(i)));
+                }
+            }
+        } finally {
+            enCurso.addAndGet(-transacciones.size());
+        }
+
+        resultados.stream()
+                .filter(resultado -> resultado.getEstado() != EstadoTransaccion.REALIZADA)
+                .forEach(resultado -> contarFallida(resultado.getEstado()));
+
+        return resultados;
+    }
+
+    /**
+     * Altas, ediciones, eliminaciones e importaciones de cuentas, despues del commit
+     */
+    @EventListener
+    public void cuentaModificada(CuentaModificadaEvent evento) {
+        motor.cuentaModificada(evento.getCuentaId());
+    }
+
+    /**
+     * Espera a que lo transferido hasta ahora este escrito en la base
+     */
+    public boolean sincronizar(Duration espera) {
+        return motor.sincronizar(espera);
+    }
+
+    @Override
+    public void destroy() {
+        motor.detener(ESPERA_AL_DETENER);
+    }
+
+    /**
+     * Con el motor lleno la transferencia queda RECHAZADA y el resto del lote sigue
+     */
+    private CompletableFuture<Void> enviar(int indice, TransaccionDTO transaccion, BigDecimal monto,
+                                           List<ResultadoTransaccionDTO> resultados) {
+        try {
+            CompletableFuture<Void> enviada = motor.transferir(transaccion.getBancoDestinoId(),
+                    transaccion.getCuentaOrigenId(), transaccion.getCuentaDestinoId(), monto);
+            resultados.add(null);
+            return enviada;
+        } catch (ColaTransferenciasLlenaException e) {
+            resultados.add(resultado(indice, EstadoTransaccion.RECHAZADA, e.getMessage()));
+            return null;
+        }
+    }
+
+    private ResultadoTransaccionDTO esperarResultado(int indice, CompletableFuture<Void> enviada) {
+
+        try {
+            esperar(enviada);
+            return resultado(indice, EstadoTransaccion.REALIZADA, "Transferencia realizada con éxito!");
+        } catch (DineroInsuficienteException e) {
+            return resultado(indice, EstadoTransaccion.DINERO_INSUFICIENTE, e.getMessage());
+        } catch (NoSuchElementException e) {
+            return resultado(indice, EstadoTransaccion.NO_ENCONTRADA, "Cuenta o banco no encontrado");
+        }
+
+    }
+
+    private static void esperar(CompletableFuture<Void> resultado) {
+        try {
+            resultado.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void contarFallida(EstadoTransaccion estado) {
+        Counter.builder("transferencias.fallidas")
+                .tag("motivo", estado.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static ResultadoTransaccionDTO resultado(int indice, EstadoTransaccion estado, String mensaje) {
+        return ResultadoTransaccionDTO.builder()
+                .indice(indice)
+                .estado(estado)
+                .mensaje(mensaje)
+                .build();
+    }
+
+}
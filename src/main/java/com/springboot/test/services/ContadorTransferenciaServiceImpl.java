@@ -0,0 +1,216 @@
+package com.springboot.test.services;
+
+import com.springboot.test.config.TransferenciaProperties;
+import com.springboot.test.config.TransferenciaProperties.ModoContador;
+import com.springboot.test.models.Banco;
+import com.springboot.test.models.ContadorTransferencia;
+import com.springboot.test.repositories.BancoRepository;
+import com.springboot.test.repositories.ContadorTransferenciaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * El total de transferencias de un banco es la suma de sus slots en contadores_transferencias
+ * + lo que aun no se vacia desde memoria. La tabla no esta en la cache de segundo nivel: incrementar
+ * el contador no toca la fila de bancos ni invalida la region de Banco.
+ */
+@Service
+public class ContadorTransferenciaServiceImpl implements IContadorTransferenciaService {
+
+    private static final Logger log = LoggerFactory.getLogger(ContadorTransferenciaServiceImpl.class);
+
+    private final BancoRepository bancoRepository;
+    private final ContadorTransferenciaRepository contadorRepository;
+    private final TransferenciaProperties transferenciaProperties;
+    private final TransactionTemplate transaccionNueva;
+
+    private final Map<Long, LongAdder> pendientes = new ConcurrentHashMap<>();
+    //Las lecturas del total no deben ver un vaciado a medias (ya restado de memoria pero aun sin commit)
+    private final ReadWriteLock vaciado = new ReentrantReadWriteLock();
+
+    public ContadorTransferenciaServiceImpl(BancoRepository bancoRepository,
+                                            ContadorTransferenciaRepository contadorRepository,
+                                            TransferenciaProperties transferenciaProperties,
+                                            PlatformTransactionManager transactionManager) {
+        this.bancoRepository = bancoRepository;
+        this.contadorRepository = contadorRepository;
+        this.transferenciaProperties = transferenciaProperties;
+        this.transaccionNueva = new TransactionTemplate(transactionManager);
+        this.transaccionNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Transactional
+    @Override
+    public void incrementar(Long bancoId, int cantidad) {
+
+        if (transferenciaProperties.getContador().getModo() == ModoContador.MEMORIA) {
+            incrementarEnMemoria(bancoId, cantidad);
+        } else {
+            incrementarSlot(bancoId, cantidad);
+        }
+
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long total(Long bancoId) {
+
+        //El banco sale de la cache, solo se revisa que exista
+        bancoRepository.findById(bancoId).orElseThrow();
+
+        vaciado.readLock().lock();
+        try {
+            LongAdder pendiente = pendientes.get(bancoId);
+            return contadorRepository.sumarPorBanco(bancoId)
+                    + (pendiente == null ? 0 : pendiente.sum());
+        } finally {
+            vaciado.readLock().unlock();
+        }
+
+    }
+
+    /**
+     * Pasa lo acumulado en memoria a los slots, una transaccion por banco.
+     * Si falla, lo acumulado se devuelve a memoria para el siguiente vaciado.
+     */
+    @Scheduled(fixedDelayString = "${app.transferencias.contador.vaciado-ms:1000}")
+    @Override
+    public void vaciar() {
+
+        if (pendientes.isEmpty()) {
+            return;
+        }
+
+        vaciado.writeLock().lock();
+        try {
+            pendientes.forEach((bancoId, pendiente) -> {
+                long cantidad = pendiente.sumThenReset();
+                if (cantidad == 0) {
+                    return;
+                }
+                try {
+                    transaccionNueva.executeWithoutResult(status -> incrementarSlot(bancoId, cantidad));
+                } catch (RuntimeException e) {
+                    pendiente.add(cantidad);
+                    log.error("No se pudo vaciar el contador del banco {}", bancoId, e);
+                }
+            });
+        } finally {
+            vaciado.writeLock().unlock();
+        }
+
+    }
+
+    /**
+     * Crea los slots de los bancos existentes al iniciar, asi las transferencias
+     * no tienen que crearlos mientras compiten entre si.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void crearSlotsIniciales() {
+
+        for (Banco banco : bancoRepository.findAll()) {
+            crearSlots(banco.getId());
+        }
+
+    }
+
+    /**
+     * Un solo UPDATE que hace la base, sin leer el slot ni conflictos de version entre transferencias.
+     * En modo pesimista el UPDATE bloquea la fila del slot hasta el commit, despues de las cuentas.
+     * Si el slot aun no existe se crea y se vuelve a intentar; si sigue sin aparecer (otra transaccion
+     * lo esta creando y aun no hace commit) se lanza un error de concurrencia, que la transferencia
+     * reintenta, en lugar de perder el incremento.
+     */
+    private void incrementarSlot(Long bancoId, long cantidad) {
+
+        int slot = ThreadLocalRandom.current().nextInt(slots());
+        if (contadorRepository.incrementar(bancoId, slot, cantidad) == 0) {
+            crearSlots(bancoId);
+            if (contadorRepository.incrementar(bancoId, slot, cantidad) == 0) {
+                throw new CannotAcquireLockException("El slot " + slot + " del banco " + bancoId + " aun no existe");
+            }
+        }
+
+    }
+
+    /**
+     * El incremento se suma en memoria solo cuando la transferencia hace commit
+     */
+    private void incrementarEnMemoria(Long bancoId, long cantidad) {
+
+        //findById y no existsById: el banco sale de la cache de segundo nivel sin ir a la base
+        if (bancoRepository.findById(bancoId).isEmpty()) {
+            throw new NoSuchElementException("No existe el banco " + bancoId);
+        }
+
+        LongAdder pendiente = pendientes.computeIfAbsent(bancoId, id -> new LongAdder());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pendiente.add(cantidad);
+                }
+            });
+        } else {
+            pendiente.add(cantidad);
+        }
+
+    }
+
+    /**
+     * Se crean en una transaccion aparte para no perder la transferencia si otro hilo
+     * crea los mismos slots al mismo tiempo (la restriccion unica rechaza el duplicado).
+     */
+    private void crearSlots(Long bancoId) {
+
+        try {
+            transaccionNueva.executeWithoutResult(status -> {
+                //findById y no existsById: el banco sale de la cache de segundo nivel
+                if (bancoRepository.findById(bancoId).isEmpty()) {
+                    throw new NoSuchElementException("No existe el banco " + bancoId);
+                }
+                Set<Integer> existentes = new HashSet<>();
+                contadorRepository.findByBancoId(bancoId).forEach(c -> existentes.add(c.getSlot()));
+
+                List<ContadorTransferencia> nuevos = new ArrayList<>();
+                for (int slot = 0; slot < slots(); slot++) {
+                    if (!existentes.contains(slot)) {
+                        nuevos.add(ContadorTransferencia.builder().bancoId(bancoId).slot(slot).total(0).build());
+                    }
+                }
+                contadorRepository.saveAll(nuevos);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Los slots del banco {} ya fueron creados por otra transaccion", bancoId);
+        }
+
+    }
+
+    /**
+     * Con el contador por fila cada banco tiene un solo slot
+     */
+    private int slots() {
+        TransferenciaProperties.Contador contador = transferenciaProperties.getContador();
+        return contador.getModo() == ModoContador.FILA ? 1 : Math.max(1, contador.getSlots());
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.springboot.test.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Se publica despues del commit de cada escritura de una cuenta (alta, edicion, eliminacion,
+ * transferencia o importacion), para quien guarde saldos fuera de la base
+ */
+@Getter
+@AllArgsConstructor
+public class CuentaModificadaEvent {
+
+    private final Long cuentaId;
+
+}
@@ -1,58 +1,364 @@
 package com.springboot.test.services;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.springboot.test.config.CacheCuentasProperties;
+import com.springboot.test.dto.CambioCuentaDTO;
+import com.springboot.test.dto.CambiosCuentasDTO;
+import com.springboot.test.dto.CuentasEncontradasDTO;
+import com.springboot.test.dto.EventoSaldoDTO;
+import com.springboot.test.dto.PaginaDTO;
+import com.springboot.test.dto.VersionCuentaDTO;
+import com.springboot.test.exceptions.DineroInsuficienteException;
 import com.springboot.test.models.Cuenta;
+import com.springboot.test.models.CuentaEliminada;
+import com.springboot.test.repositories.CuentaEliminadaRepository;
 import com.springboot.test.repositories.CuentaRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.math.BigDecimal;
-import java.util.List;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class CuentaServiceImpl implements ICuentaService{
 
+    public static final int LIMITE_MAXIMO = 1000;
+    public static final int LIMITE_IDS = 500;
+    //Ids por consulta IN, con in_clause_parameter_padding hibernate reutiliza pocas formas de la consulta
+    private static final int BLOQUE_IN = 100;
+    private static final String METRICA = "servicio.cuentas";
+    private static final String TRANSFERIR_SALDO =
+            "update cuentas set saldo = case when id = ? then saldo - ? else saldo + ? end, version = version + 1, " +
+                    "modificado = ?, cambio = case when id = ? then ? else ? end " +
+                    "where id in (?, ?) and (id <> ? or saldo >= ?)";
+
     private final CuentaRepository cuentaRepository;
+    private final CuentaEliminadaRepository cuentaEliminadaRepository;
+    private final ISecuenciaCambiosService secuenciaCambios;
+    private final IEventoSaldoService eventoSaldoService;
+    private final ApplicationEventPublisher publicador;
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    //null cuando la cache esta deshabilitada
+    private final AsyncCache<Long, Cuenta> cache;
 
-    public CuentaServiceImpl(CuentaRepository cuentaRepository) {
+    public CuentaServiceImpl(CuentaRepository cuentaRepository,
+                             CuentaEliminadaRepository cuentaEliminadaRepository,
+                             ISecuenciaCambiosService secuenciaCambios,
+                             IEventoSaldoService eventoSaldoService,
+                             ApplicationEventPublisher publicador,
+                             JdbcTemplate jdbcTemplate,
+                             CacheCuentasProperties cacheProperties,
+                             MeterRegistry meterRegistry) {
         this.cuentaRepository = cuentaRepository;
+        this.cuentaEliminadaRepository = cuentaEliminadaRepository;
+        this.secuenciaCambios = secuenciaCambios;
+        this.eventoSaldoService = eventoSaldoService;
+        this.publicador = publicador;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = cacheProperties.isHabilitado() ? crearCache(cacheProperties, meterRegistry) : null;
     }
 
+    /**
+     * La cache solo se usa en lecturas (transaccion de solo lectura), dentro de una transferencia
+     * la cuenta siempre se lee de la base de datos. Se devuelve una copia para que quien la
+     * modifique no altere el valor guardado en la cache.
+     */
+    @Timed(value = METRICA, histogram = true)
     @Transactional(readOnly = true)
     @Override
     public Cuenta findById(Long id) {
-        return cuentaRepository.findById(id).orElseThrow();
+
+        if (!usarCache()) {
+            return cuentaRepository.findById(id).orElseThrow();
+        }
+
+        //La lectura no se hace dentro de la funcion de caffeine: esa funcion corre dentro de un bloque
+        //synchronized del mapa y con hilos virtuales dejaria el hilo portador bloqueado durante el jdbc.
+        //Se reserva la clave con un future y quien la reservo lee la cuenta fuera del bloqueo.
+        CompletableFuture<Cuenta> nueva = new CompletableFuture<>();
+        CompletableFuture<Cuenta> actual = cache.get(id, (clave, executor) -> nueva);
+        if (actual == nueva) {
+            try {
+                nueva.complete(cuentaRepository.findById(id).map(Cuenta::copiar).orElse(null));
+            } catch (RuntimeException e) {
+                nueva.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        Cuenta cuenta;
+        try {
+            cuenta = actual.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        if (cuenta == null) {
+            throw new NoSuchElementException("No value present");
+        }
+        return cuenta.copiar();
+    }
+
+    /**
+     * Solo la version y la fecha de modificacion, sin cargar la entidad ni pasar por la cache
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(readOnly = true)
+    @Override
+    public VersionCuentaDTO findVersion(Long id) {
+        return cuentaRepository.findVersionById(id).orElseThrow();
     }
 
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public Cuenta findByIdParaActualizar(Long id) {
+        return cuentaRepository.findByIdParaActualizar(id).orElseThrow();
+    }
+
+    @Timed(value = METRICA, histogram = true)
     @Transactional(readOnly = true)
     @Override
     public Cuenta findByPerson(String person) {
         return cuentaRepository.findByPersona(person).orElseThrow();
     }
 
+    /**
+     * Busca por prefijo sin distinguir mayusculas ni tildes, ordenado por (persona_normalizada, id)
+     * para que la consulta recorra el indice en orden. despuesDeId es la ultima cuenta de la pagina anterior.
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(readOnly = true)
+    @Override
+    public PaginaDTO<Cuenta> buscarPorPersona(String prefijo, Long despuesDeId, int limite) {
+
+        int tamanio = Math.min(Math.max(limite, 1), LIMITE_MAXIMO);
+        String patron = escaparLike(Cuenta.normalizar(prefijo)) + "%";
+        PageRequest pagina = PageRequest.of(0, tamanio + 1);
+
+        List<Cuenta> cuentas;
+        if (despuesDeId == null) {
+            cuentas = cuentaRepository.buscarPorPrefijo(patron, pagina);
+        } else {
+            Cuenta anterior = cuentaRepository.findById(despuesDeId).orElseThrow();
+            cuentas = cuentaRepository.buscarPorPrefijoDespuesDe(patron, anterior.getPersonaNormalizada(),
+                    anterior.getId(), pagina);
+        }
+        return PaginaDTO.de(cuentas, tamanio, Cuenta::getId);
+    }
+
+    @Timed(value = METRICA, histogram = true)
     @Transactional(readOnly = true)
     @Override
     public List<Cuenta> findAll() {
         return cuentaRepository.findAll();
     }
 
+    /**
+     * Token de la tabla completa para el ETag del listado, sale de la base de datos y no de esta
+     * instancia: el ultimo numero de cambio de cuentas y bajas hasta el horizonte de la secuencia,
+     * mas la cantidad de cuentas para las filas escritas sin numero de cambio (import.sql).
+     * Con el horizonte una escritura que confirma despues de otra con numero mayor tambien cambia el token.
+     * Se lee antes de consultar las cuentas: si una escritura termina entre ambas, el token
+     * queda viejo y el siguiente GET condicional vuelve a traer el listado.
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public String versionCuentas() {
+        long hasta = secuenciaCambios.horizonte();
+        long ultimo = Math.max(
+                Objects.requireNonNullElse(cuentaRepository.findUltimoCambioHasta(hasta), 0L),
+                Objects.requireNonNullElse(cuentaEliminadaRepository.findUltimoCambioHasta(hasta), 0L));
+        return ultimo + "-" + cuentaRepository.count();
+    }
+
+    /**
+     * Altas, modificaciones y bajas con numero de cambio mayor a desde, hasta el horizonte de la secuencia.
+     * Una cuenta modificada varias veces aparece una sola vez, con su ultimo numero de cambio.
+     * Cada consulta recorre idx_cuentas_cambio o idx_cuentas_eliminadas_cambio desde el numero pedido.
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(readOnly = true)
+    @Override
+    public CambiosCuentasDTO findCambios(long desde, int limite) {
+
+        int tamanio = Math.min(Math.max(limite, 1), LIMITE_MAXIMO);
+        //Se lee antes de consultar: lo que llegue al horizonte ya hizo commit
+        long hasta = secuenciaCambios.horizonte();
+        if (hasta <= desde) {
+            return new CambiosCuentasDTO(Collections.emptyList(), desde, false);
+        }
+
+        //tamanio + 1 de cada tabla alcanza para saber si hay mas despues de mezclarlas
+        PageRequest pagina = PageRequest.of(0, tamanio + 1);
+        List<Cuenta> cuentas = cuentaRepository.findCambios(desde, hasta, pagina);
+        List<CuentaEliminada> eliminadas = cuentaEliminadaRepository.findCambios(desde, hasta, pagina);
+
+        List<CambioCuentaDTO> cambios = new ArrayList<>(Math.min(tamanio + 1, cuentas.size() + eliminadas.size()));
+        int c = 0;
+        int e = 0;
+        while (cambios.size() <= tamanio && (c < cuentas.size() || e < eliminadas.size())) {
+            if (e == eliminadas.size()
+                    || (c < cuentas.size() && cuentas.get(c).getCambio() < eliminadas.get(e).getCambio())) {
+                Cuenta cuenta = cuentas.get(c++);
+                cambios.add(new CambioCuentaDTO(cuenta.getCambio(), cuenta.getId(), false, cuenta));
+            } else {
+                CuentaEliminada eliminada = eliminadas.get(e++);
+                cambios.add(new CambioCuentaDTO(eliminada.getCambio(), eliminada.getId(), true, null));
+            }
+        }
+
+        if (cambios.size() <= tamanio) {
+            //No hay mas cambios hasta el horizonte, la proxima consulta sigue desde ahi
+            return new CambiosCuentasDTO(cambios, hasta, false);
+        }
+        cambios.remove(tamanio);
+        return new CambiosCuentasDTO(cambios, cambios.get(tamanio - 1).getCambio(), true);
+    }
+
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(readOnly = true)
+    @Override
+    public PaginaDTO<Cuenta> findPagina(Long despuesDeId, int limite) {
+        int tamanio = Math.min(Math.max(limite, 1), LIMITE_MAXIMO);
+        //Se pide una fila de mas para saber si existe una pagina siguiente
+        List<Cuenta> cuentas = cuentaRepository.findSiguientes(despuesDeId == null ? 0L : despuesDeId,
+                PageRequest.of(0, tamanio + 1));
+        return PaginaDTO.de(cuentas, tamanio, Cuenta::getId);
+    }
+
+    /**
+     * Recorre todas las cuentas sin cargarlas en una lista, cada cuenta se separa del
+     * contexto de persistencia despues de procesarla para que la memoria no crezca con la tabla
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(readOnly = true)
+    @Override
+    public void recorrer(Consumer<Cuenta> consumidor) {
+        try (Stream<Cuenta> cuentas = cuentaRepository.streamAll()) {
+            cuentas.forEach(cuenta -> {
+                consumidor.accept(cuenta);
+                entityManager.detach(cuenta);
+            });
+        }
+    }
+
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(readOnly = true)
+    @Override
+    public List<Cuenta> findAllById(Collection<Long> ids) {
+        return cuentaRepository.findAllById(ids);
+    }
+
+    /**
+     * Resuelve hasta LIMITE_IDS cuentas con consultas IN de a BLOQUE_IN ids, en vez de una consulta por cuenta.
+     * Los ids repetidos se devuelven una sola vez; con la cache habilitada solo se consultan los que no estan en ella.
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(readOnly = true)
+    @Override
+    public CuentasEncontradasDTO findVarias(List<Long> ids) {
+
+        Set<Long> pedidos = new LinkedHashSet<>(ids);
+        pedidos.remove(null);
+        if (pedidos.size() > LIMITE_IDS) {
+            throw new IllegalArgumentException("Se pueden pedir hasta " + LIMITE_IDS + " cuentas");
+        }
+
+        Map<Long, Cuenta> encontradas = new HashMap<>(pedidos.size() * 2);
+        List<Long> porConsultar = new ArrayList<>(pedidos.size());
+        for (Long id : pedidos) {
+            Cuenta enCache = usarCache() ? desdeCache(id) : null;
+            if (enCache != null) {
+                encontradas.put(id, enCache);
+            } else {
+                porConsultar.add(id);
+            }
+        }
+
+        for (int inicio = 0; inicio < porConsultar.size(); inicio += BLOQUE_IN) {
+            List<Long> bloque = porConsultar.subList(inicio, Math.min(inicio + BLOQUE_IN, porConsultar.size()));
+            cuentaRepository.findAllById(bloque).forEach(cuenta -> encontradas.put(cuenta.getId(), cuenta));
+        }
+
+        List<Cuenta> cuentas = new ArrayList<>(encontradas.size());
+        List<Long> noEncontradas = new ArrayList<>();
+        for (Long id : pedidos) {
+            Cuenta cuenta = encontradas.get(id);
+            if (cuenta != null) {
+                cuentas.add(cuenta);
+            } else {
+                noEncontradas.add(id);
+            }
+        }
+        return new CuentasEncontradasDTO(cuentas, noEncontradas);
+    }
+
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public List<Cuenta> findAllByIdParaActualizar(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return cuentaRepository.findAllByIdParaActualizar(ids);
+    }
+
+    @Timed(value = METRICA, histogram = true)
     @Transactional
     @Override
     public Cuenta guardar(Cuenta cuenta) {
-        return cuentaRepository.save(cuenta);
+        cuenta.setCambio(secuenciaCambios.siguiente());
+        Cuenta guardada = cuentaRepository.save(cuenta);
+        invalidarTrasCommit(guardada.getId(), evento(guardada));
+        return guardada;
     }
 
+    @Timed(value = METRICA, histogram = true)
     @Transactional
     @Override
     public void deleteByid(Long id) {
         cuentaRepository.deleteById(id);
+        //persist y no save: con el id asignado save haria un select antes del insert
+        entityManager.persist(CuentaEliminada.builder()
+                .id(id)
+                .cambio(secuenciaCambios.siguiente())
+                .eliminada(Instant.now())
+                .build());
+        invalidarTrasCommit(id, null);
     }
 
+    @Timed(value = METRICA, histogram = true)
     @Transactional
     @Override
     public void update(Cuenta cuenta) {
+        cuenta.setCambio(secuenciaCambios.siguiente());
         cuentaRepository.save(cuenta);
+        invalidarTrasCommit(cuenta.getId(), evento(cuenta));
     }
 
+    @Timed(value = METRICA, histogram = true)
     @Transactional(readOnly = true)
     @Override
     public BigDecimal revisarSaldo(Long cuentaId) {
@@ -60,4 +366,116 @@ public class CuentaServiceImpl implements ICuentaService{
         return cuenta.getSaldo();
     }
 
+    /**
+     * Una sola sentencia UPDATE para ambas cuentas, sin leerlas. La base revisa el saldo: si no alcanza
+     * el origen no cumple el where y solo se actualiza el destino, por eso la transferencia se aplico
+     * solo si se actualizaron 2 filas. Si no, se revisa que existan ambas cuentas para saber el motivo
+     * (el saldo ya no sirve: con el destino inexistente el debito se aplico) y la excepcion deshace lo aplicado.
+     * Va por JdbcTemplate y no por una consulta nativa de hibernate: esa vaciaria todas las regiones de
+     * la cache de segundo nivel (bancos) porque hibernate no sabe que tablas toca.
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public void transferirSaldo(Long origenId, Long destinoId, BigDecimal monto) {
+
+        //Mismo reloj que Cuenta.antesDeGuardar, no el current_timestamp de la base
+        Timestamp ahora = Timestamp.from(Instant.now());
+        int filas = jdbcTemplate.update(TRANSFERIR_SALDO, origenId, monto, monto, ahora,
+                origenId, secuenciaCambios.siguiente(), secuenciaCambios.siguiente(),
+                origenId, destinoId, origenId, monto);
+        if (filas != 2) {
+            for (Long id : List.of(origenId, destinoId)) {
+                if (!cuentaRepository.existsById(id)) {
+                    throw new NoSuchElementException("No existe la cuenta " + id);
+                }
+            }
+            throw new DineroInsuficienteException("Dinero insuficiente en la cuenta");
+        }
+        //El saldo no se leyo, el evento lo lee solo si alguien esta suscrito
+        invalidarTrasCommit(origenId, null);
+        invalidarTrasCommit(destinoId, null);
+
+    }
+
+    /**
+     * Para las cuentas modificadas sin pasar por este servicio (escritura diferida del motor particionado,
+     * importacion masiva)
+     */
+    @Timed(value = METRICA, histogram = true)
+    @Override
+    public void invalidar(Collection<Long> ids) {
+        ids.forEach(id -> invalidarTrasCommit(id, null));
+    }
+
+    private boolean usarCache() {
+        return cache != null && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * Solo una carga ya terminada, no se espera a una que este en curso
+     */
+    private Cuenta desdeCache(Long id) {
+        CompletableFuture<Cuenta> enCache = cache.getIfPresent(id);
+        if (enCache == null || !enCache.isDone() || enCache.isCompletedExceptionally()) {
+            return null;
+        }
+        Cuenta cuenta = enCache.join();
+        return cuenta == null ? null : cuenta.copiar();
+    }
+
+    /**
+     * Se invalida despues del commit: antes, otra lectura podria volver a cargar el saldo anterior.
+     * Si una carga de la misma cuenta esta en curso se descarta su future, las lecturas siguientes
+     * vuelven a la base de datos. El evento de saldo y CuentaModificadaEvent tambien se publican recien con el commit.
+     */
+    private void invalidarTrasCommit(Long id, EventoSaldoDTO evento) {
+
+        if (id == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidarAhora(id, evento);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidarAhora(id, evento);
+            }
+        });
+
+    }
+
+    private void invalidarAhora(Long id, EventoSaldoDTO evento) {
+        if (cache != null) {
+            cache.synchronous().invalidate(id);
+        }
+        eventoSaldoService.publicar(id, evento);
+        publicador.publishEvent(new CuentaModificadaEvent(id));
+    }
+
+    /**
+     * Se toma al escribir: el saldo y el numero de cambio son los que confirma el commit
+     */
+    private static EventoSaldoDTO evento(Cuenta cuenta) {
+        return new EventoSaldoDTO(cuenta.getId(), cuenta.getSaldo(), cuenta.getCambio());
+    }
+
+    private static AsyncCache<Long, Cuenta> crearCache(CacheCuentasProperties properties, MeterRegistry meterRegistry) {
+        AsyncCache<Long, Cuenta> cache = Caffeine.newBuilder()
+                .maximumSize(properties.getTamanioMaximo())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "cuentas");
+        return cache;
+    }
+
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
 }
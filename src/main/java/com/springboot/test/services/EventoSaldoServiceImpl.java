@@ -0,0 +1,379 @@
+package com.springboot.test.services;
+
+import com.springboot.test.config.EventosSaldoProperties;
+import com.springboot.test.dto.EventoSaldoDTO;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.repositories.CuentaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Eventos de saldo por suscripcion. CuentaServiceImpl publica despues de cada commit; si nadie
+ * esta suscrito a la cuenta publicar solo es una busqueda en un mapa. Como se escriben los eventos
+ * (Server-Sent Events) lo decide el Receptor que entrega el controlador.
+ * La cola de cada suscripcion guarda a lo sumo un evento pendiente por cuenta: si llega otro antes de
+ * enviarlo se queda el de mayor numero de cambio (coalesce), asi un cliente lento recibe menos eventos
+ * pero siempre el ultimo saldo, y su cola no pasa de app.eventos.saldos.maximo-cuentas.
+ * Los envios usan app.eventos.saldos.hilos-envio hilos fijos. Una conexion abierta sin nada que
+ * enviar no ocupa ningun hilo y cada suscripcion tiene a lo sumo un envio esperando en la cola
+ * compartida (app.eventos.saldos.cola-envios). Si la cola esta llena la suscripcion que no cabe se
+ * cierra: el cliente se vuelve a conectar y recibe los saldos actuales, en vez de crear un hilo por
+ * conexion. Un cliente que no termina de recibir un envio en app.eventos.saldos.espera-maxima tambien
+ * se cierra; su hilo se libera cuando la escritura falla o vence.
+ */
+@Service
+public class EventoSaldoServiceImpl implements IEventoSaldoService, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EventoSaldoServiceImpl.class);
+    private static final int BLOQUE_IN = 100;
+
+    private final CuentaRepository cuentaRepository;
+    private final EventosSaldoProperties properties;
+
+    private final Map<Long, Set<Suscripcion>> porCuenta = new ConcurrentHashMap<>();
+    private final Set<Suscripcion> suscripciones = ConcurrentHashMap.newKeySet();
+    //Cuentas modificadas sin saldo conocido (escrituras masivas), se leen juntas en un solo envio
+    private final Set<Long> porLeer = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean lecturaProgramada = new AtomicBoolean();
+
+    private final ExecutorService envios;
+    private final ScheduledExecutorService latidos;
+    private final Counter coalescidos;
+    private final Counter desconectados;
+
+    public EventoSaldoServiceImpl(CuentaRepository cuentaRepository,
+                                  EventosSaldoProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.cuentaRepository = cuentaRepository;
+        this.properties = properties;
+        int hilos = Math.max(1, properties.getHilosEnvio());
+        this.envios = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getColaEnvios())),
+                new CustomizableThreadFactory("eventos-saldo-"));
+        this.latidos = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("eventos-latido-"));
+
+        long latido = Math.max(1, properties.getLatido().toMillis());
+        latidos.scheduleWithFixedDelay(this::latir, latido, latido, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("eventos.saldos.suscripciones", suscripciones, Set::size)
+                .description("Conexiones SSE abiertas")
+                .register(meterRegistry);
+        this.coalescidos = Counter.builder("eventos.saldos.coalescidos")
+                .description("Eventos reemplazados por uno mas nuevo de la misma cuenta antes de enviarse")
+                .register(meterRegistry);
+        this.desconectados = Counter.builder("eventos.saldos.desconectados")
+                .description("Clientes desconectados por no recibir los eventos a tiempo o con la cola de envios llena")
+                .register(meterRegistry);
+    }
+
+    /**
+     * El primer evento de cada cuenta es su saldo actual. Se lee despues de registrar la suscripcion:
+     * un commit intermedio llega como evento y el numero de cambio decide cual es el vigente.
+     *
+     * @throws IllegalArgumentException sin cuentas o con mas de app.eventos.saldos.maximo-cuentas
+     * @throws NoSuchElementException si no existe ninguna de las cuentas
+     */
+    @Override
+    public Runnable suscribir(Collection<Long> cuentaIds, Receptor receptor) {
+
+        Set<Long> cuentas = new LinkedHashSet<>(cuentaIds);
+        cuentas.remove(null);
+        if (cuentas.isEmpty() || cuentas.size() > properties.getMaximoCuentas()) {
+            throw new IllegalArgumentException("Se puede suscribir entre 1 y " + properties.getMaximoCuentas() + " cuentas");
+        }
+
+        Suscripcion suscripcion = new Suscripcion(receptor, cuentas);
+        suscripciones.add(suscripcion);
+        for (Long id : cuentas) {
+            porCuenta.compute(id, (clave, actuales) -> {
+                Set<Suscripcion> suscritas = actuales != null ? actuales : ConcurrentHashMap.newKeySet();
+                suscritas.add(suscripcion);
+                return suscritas;
+            });
+        }
+
+        boolean existe = false;
+        try {
+            for (Cuenta cuenta : leer(cuentas)) {
+                existe = true;
+                encolar(suscripcion, evento(cuenta));
+            }
+        } catch (RuntimeException e) {
+            quitar(suscripcion);
+            throw e;
+        }
+        if (!existe) {
+            quitar(suscripcion);
+            throw new NoSuchElementException("No existe ninguna de las cuentas " + cuentas);
+        }
+
+        return () -> quitar(suscripcion);
+    }
+
+    /**
+     * Se llama despues del commit. Sin evento (saldo desconocido) la cuenta se lee antes de enviarla.
+     */
+    @Override
+    public void publicar(Long cuentaId, EventoSaldoDTO evento) {
+
+        Set<Suscripcion> suscritas = porCuenta.get(cuentaId);
+        if (suscritas == null) {
+            return;
+        }
+        if (evento == null) {
+            porLeer.add(cuentaId);
+            if (lecturaProgramada.compareAndSet(false, true)) {
+                //La lectura no espera detras de los envios
+                try {
+                    latidos.execute(this::leerPendientes);
+                } catch (RejectedExecutionException e) {
+                    //La aplicacion se esta deteniendo
+                }
+            }
+            return;
+        }
+        suscritas.forEach(suscripcion -> encolar(suscripcion, evento));
+
+    }
+
+    @Override
+    public int suscripciones() {
+        return suscripciones.size();
+    }
+
+    @Override
+    public void destroy() {
+        latidos.shutdownNow();
+        envios.shutdown();
+        suscripciones.forEach(suscripcion -> suscripcion.receptor.cerrar());
+    }
+
+    private void encolar(Suscripcion suscripcion, EventoSaldoDTO evento) {
+        if (suscripcion.agregar(evento)) {
+            ejecutar(suscripcion, () -> enviar(suscripcion));
+        }
+    }
+
+    /**
+     * Solo un hilo envia a la vez a cada suscripcion; lo que llega mientras tanto se envia en la siguiente vuelta
+     */
+    private void enviar(Suscripcion suscripcion) {
+
+        List<EventoSaldoDTO> lote;
+        while ((lote = suscripcion.tomarPendientes()) != null) {
+            try {
+                for (EventoSaldoDTO evento : lote) {
+                    suscripcion.receptor.enviar(evento);
+                }
+            } catch (IOException | RuntimeException e) {
+                //El cliente cerro la conexion o el receptor ya termino
+                cerrar(suscripcion);
+                return;
+            } finally {
+                suscripcion.terminarEnvio();
+            }
+        }
+
+    }
+
+    /**
+     * Un latido a las conexiones sin envios en curso, para descubrir las que el cliente cerro;
+     * las que llevan demasiado tiempo en un mismo envio se desconectan. Cerrar no corta la
+     * escritura en curso, pero la suscripcion deja de recibir eventos y su hilo se libera cuando
+     * la escritura falla o vence.
+     */
+    private void latir() {
+
+        long limite = properties.getEsperaMaxima().toNanos();
+        long ahora = System.nanoTime();
+        for (Suscripcion suscripcion : suscripciones) {
+            if (suscripcion.enviandoHace(ahora) > limite) {
+                desconectados.increment();
+                cerrar(suscripcion);
+            } else if (suscripcion.iniciarLatido()) {
+                ejecutar(suscripcion, () -> enviarLatido(suscripcion));
+            }
+        }
+
+    }
+
+    private void enviarLatido(Suscripcion suscripcion) {
+
+        try {
+            suscripcion.receptor.latido();
+        } catch (IOException | RuntimeException e) {
+            cerrar(suscripcion);
+            return;
+        } finally {
+            suscripcion.terminarEnvio();
+        }
+        //Eventos que llegaron durante el latido
+        enviar(suscripcion);
+
+    }
+
+    private void leerPendientes() {
+
+        lecturaProgramada.set(false);
+        List<Long> ids = new ArrayList<>();
+        for (Iterator<Long> iterador = porLeer.iterator(); iterador.hasNext(); ) {
+            ids.add(iterador.next());
+            iterador.remove();
+        }
+        try {
+            for (Cuenta cuenta : leer(ids)) {
+                publicar(cuenta.getId(), evento(cuenta));
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron leer los saldos de {} cuentas para sus eventos", ids.size(), e);
+        }
+
+    }
+
+    private List<Cuenta> leer(Collection<Long> ids) {
+        List<Long> lista = new ArrayList<>(ids);
+        List<Cuenta> cuentas = new ArrayList<>(lista.size());
+        for (int inicio = 0; inicio < lista.size(); inicio += BLOQUE_IN) {
+            cuentas.addAll(cuentaRepository.findAllById(lista.subList(inicio, Math.min(inicio + BLOQUE_IN, lista.size()))));
+        }
+        return cuentas;
+    }
+
+    private void cerrar(Suscripcion suscripcion) {
+        suscripcion.cerrar();
+        quitar(suscripcion);
+        suscripcion.receptor.cerrar();
+    }
+
+    private void quitar(Suscripcion suscripcion) {
+        if (!suscripciones.remove(suscripcion)) {
+            return;
+        }
+        suscripcion.cerrar();
+        for (Long id : suscripcion.cuentas) {
+            porCuenta.computeIfPresent(id, (clave, suscritas) -> {
+                suscritas.remove(suscripcion);
+                return suscritas.isEmpty() ? null : suscritas;
+            });
+        }
+    }
+
+    /**
+     * Si la cola de envios esta llena (o la aplicacion se esta deteniendo) la suscripcion se cierra
+     */
+    private void ejecutar(Suscripcion suscripcion, Runnable tarea) {
+        try {
+            envios.execute(tarea);
+        } catch (RejectedExecutionException e) {
+            if (!envios.isShutdown()) {
+                desconectados.increment();
+            }
+            cerrar(suscripcion);
+        }
+    }
+
+    private static EventoSaldoDTO evento(Cuenta cuenta) {
+        return new EventoSaldoDTO(cuenta.getId(), cuenta.getSaldo(), cuenta.getCambio());
+    }
+
+    /**
+     * Estado de una conexion. Los metodos sincronizados son cortos, ninguno escribe en la conexion.
+     */
+    private final class Suscripcion {
+
+        private final Receptor receptor;
+        private final Set<Long> cuentas;
+        //Ultimo evento sin enviar de cada cuenta, a lo sumo uno por cuenta
+        private final Map<Long, EventoSaldoDTO> pendientes = new LinkedHashMap<>();
+        //Numero de cambio del ultimo evento enviado de cada cuenta
+        private final Map<Long, Long> enviados = new HashMap<>();
+        private boolean programada;
+        private boolean cerrada;
+        private long enviandoDesde;
+
+        Suscripcion(Receptor receptor, Set<Long> cuentas) {
+            this.receptor = receptor;
+            this.cuentas = cuentas;
+        }
+
+        /**
+         * @return true si hay que programar un envio
+         */
+        synchronized boolean agregar(EventoSaldoDTO evento) {
+
+            if (cerrada || !esMasNuevo(evento, enviados.get(evento.getCuentaId()))) {
+                return false;
+            }
+            EventoSaldoDTO anterior = pendientes.get(evento.getCuentaId());
+            if (anterior != null) {
+                coalescidos.increment();
+                if (!esMasNuevo(evento, anterior.getCambio())) {
+                    return false;
+                }
+            }
+            pendientes.put(evento.getCuentaId(), evento);
+            if (programada) {
+                return false;
+            }
+            programada = true;
+            return true;
+
+        }
+
+        /**
+         * @return los eventos a enviar, null si no hay (y el envio deja de estar programado)
+         */
+        synchronized List<EventoSaldoDTO> tomarPendientes() {
+
+            if (cerrada || pendientes.isEmpty()) {
+                programada = false;
+                return null;
+            }
+            List<EventoSaldoDTO> lote = new ArrayList<>(pendientes.values());
+            pendientes.clear();
+            lote.forEach(evento -> enviados.put(evento.getCuentaId(), evento.getCambio()));
+            enviandoDesde = System.nanoTime();
+            return lote;
+
+        }
+
+        synchronized boolean iniciarLatido() {
+            if (cerrada || programada) {
+                return false;
+            }
+            programada = true;
+            enviandoDesde = System.nanoTime();
+            return true;
+        }
+
+        synchronized void terminarEnvio() {
+            enviandoDesde = 0;
+        }
+
+        synchronized long enviandoHace(long ahora) {
+            return enviandoDesde == 0 ? 0 : ahora - enviandoDesde;
+        }
+
+        synchronized void cerrar() {
+            cerrada = true;
+            pendientes.clear();
+        }
+
+        private boolean esMasNuevo(EventoSaldoDTO evento, Long cambio) {
+            return cambio == null || evento.getCambio() == null || evento.getCambio() > cambio;
+        }
+
+    }
+
+}
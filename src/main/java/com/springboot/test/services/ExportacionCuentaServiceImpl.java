@@ -0,0 +1,225 @@
+package com.springboot.test.services;
+
+import com.springboot.test.config.ExportacionProperties;
+import com.springboot.test.models.Centavos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exporta las cuentas directo desde el ResultSet (forward-only, de solo lectura) a la salida,
+ * sin crear entidades ni listas: la memoria usada no depende del tamanio de la tabla.
+ *
+ * Formato binario (todos los enteros como varint, ids y saldos en zigzag para admitir negativos):
+ * "CTA1", luego grupos de hasta filasPorGrupo filas con
+ * [filas] [id - id anterior]*filas [saldo en centavos]*filas [largo utf-8, bytes de persona]*filas,
+ * y un grupo de 0 filas al final. Cada columna queda contigua y los ids, ordenados, ocupan 1 byte.
+ */
+@Service
+public class ExportacionCuentaServiceImpl implements IExportacionCuentaService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportacionCuentaServiceImpl.class);
+    private static final int BUFFER_ESCRITURA = 64 * 1024;
+    private static final byte[] MAGICO = {'C', 'T', 'A', '1'};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExportacionProperties exportacionProperties;
+
+    public ExportacionCuentaServiceImpl(DataSource dataSource, ExportacionProperties exportacionProperties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(exportacionProperties.getFetchSize());
+        this.exportacionProperties = exportacionProperties;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long exportarCsv(OutputStream salida, BigDecimal saldoMinimo, BigDecimal saldoMaximo) {
+
+        ContadorBytes contador = new ContadorBytes(salida);
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(contador, StandardCharsets.UTF_8), BUFFER_ESCRITURA);
+        long[] filas = {0};
+        long inicio = System.nanoTime();
+
+        try {
+            escritor.write("id,persona,saldo\n");
+            consultar(saldoMinimo, saldoMaximo, rs -> {
+                try {
+                    escritor.write(Long.toString(rs.getLong(1)));
+                    escritor.write(',');
+                    escritor.write(campoCsv(rs.getString(2)));
+                    escritor.write(',');
+                    escritor.write(rs.getBigDecimal(3).toPlainString());
+                    escritor.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                filas[0]++;
+            });
+            escritor.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        registrar("csv", filas[0], contador.bytes, inicio);
+        return filas[0];
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long exportarBinario(OutputStream salida, BigDecimal saldoMinimo, BigDecimal saldoMaximo) {
+
+        ContadorBytes contador = new ContadorBytes(salida);
+        DataOutputStream datos = new DataOutputStream(new BufferedOutputStream(contador, BUFFER_ESCRITURA));
+        GrupoBinario grupo = new GrupoBinario(Math.max(1, exportacionProperties.getFilasPorGrupo()), datos);
+        long inicio = System.nanoTime();
+
+        try {
+            datos.write(MAGICO);
+            consultar(saldoMinimo, saldoMaximo, rs ->
+                    grupo.agregar(rs.getLong(1), rs.getString(2), Centavos.de(rs.getBigDecimal(3))));
+            grupo.escribir();
+            escribirVarint(datos, 0);
+            datos.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        registrar("binario", grupo.total, contador.bytes, inicio);
+        return grupo.total;
+    }
+
+    private void consultar(BigDecimal saldoMinimo, BigDecimal saldoMaximo, RowCallbackHandler fila) {
+
+        StringBuilder sql = new StringBuilder("select id, persona, saldo from cuentas where 1 = 1");
+        List<Object> parametros = new ArrayList<>(2);
+        if (saldoMinimo != null) {
+            sql.append(" and saldo >= ?");
+            parametros.add(saldoMinimo);
+        }
+        if (saldoMaximo != null) {
+            sql.append(" and saldo <= ?");
+            parametros.add(saldoMaximo);
+        }
+        sql.append(" order by id");
+
+        jdbcTemplate.query(sql.toString(), fila, parametros.toArray());
+    }
+
+    private static void registrar(String formato, long filas, long bytes, long inicio) {
+        double segundos = Math.max(1, System.nanoTime() - inicio) / 1e9;
+        log.info("Exportacion {}: {} filas, {} bytes en {} s ({} MB/s)", formato, filas, bytes,
+                String.format("%.2f", segundos), String.format("%.2f", bytes / 1e6 / segundos));
+    }
+
+    private static String campoCsv(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            return texto;
+        }
+        return '"' + texto.replace("\"", "\"\"") + '"';
+    }
+
+    static void escribirVarint(DataOutput salida, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            salida.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        salida.writeByte((int) valor);
+    }
+
+    static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    /**
+     * Columnas del grupo actual, se reutilizan entre grupos
+     */
+    private static final class GrupoBinario {
+
+        private final long[] ids;
+        private final long[] saldos;
+        private final byte[][] personas;
+        private final DataOutputStream salida;
+        private int filas;
+        private long total;
+
+        GrupoBinario(int tamanio, DataOutputStream salida) {
+            this.ids = new long[tamanio];
+            this.saldos = new long[tamanio];
+            this.personas = new byte[tamanio][];
+            this.salida = salida;
+        }
+
+        void agregar(long id, String persona, long saldo) {
+            ids[filas] = id;
+            saldos[filas] = saldo;
+            personas[filas] = persona == null ? new byte[0] : persona.getBytes(StandardCharsets.UTF_8);
+            filas++;
+            total++;
+            if (filas == ids.length) {
+                try {
+                    escribir();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void escribir() throws IOException {
+            if (filas == 0) {
+                return;
+            }
+            escribirVarint(salida, filas);
+            long anterior = 0;
+            for (int i = 0; i < filas; i++) {
+                escribirVarint(salida, zigzag(ids[i] - anterior));
+                anterior = ids[i];
+            }
+            for (int i = 0; i < filas; i++) {
+                escribirVarint(salida, zigzag(saldos[i]));
+            }
+            for (int i = 0; i < filas; i++) {
+                escribirVarint(salida, personas[i].length);
+                salida.write(personas[i]);
+                personas[i] = null;
+            }
+            filas = 0;
+        }
+
+    }
+
+    private static final class ContadorBytes extends FilterOutputStream {
+
+        private long bytes;
+
+        ContadorBytes(OutputStream salida) {
+            super(salida);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes += len;
+        }
+
+    }
+
+}
@@ -1,8 +1,12 @@
 package com.springboot.test.services;
 
+import com.springboot.test.dto.ResultadoTransaccionDTO;
+import com.springboot.test.dto.TransaccionDTO;
 import com.springboot.test.models.Banco;
+import com.springboot.test.models.TransferenciaEncolada;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 public interface IBancoService {
 
@@ -10,5 +14,14 @@ public interface IBancoService {
     void update(Banco banco);
     Integer revisarTotalTransferencias(Long bancoId);
     void transferir(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal monto);
+    List<ResultadoTransaccionDTO> transferirLote(List<TransaccionDTO> transacciones);
+
+    /**
+     * Transferencia de la cola: la fila se marca REALIZADA en la misma unidad de trabajo que mueve el dinero,
+     * solo si sigue reclamada con encolada.getReclamo(). Repetirla no vuelve a mover el dinero.
+     *
+     * @return false si la fila ya no tenia ese reclamo (la termino otro trabajador), no se hizo nada
+     */
+    boolean transferirEncolada(TransferenciaEncolada encolada);
 
 }
@@ -0,0 +1,9 @@
+package com.springboot.test.services;
+
+public interface IContadorTransferenciaService {
+
+    void incrementar(Long bancoId, int cantidad);
+    long total(Long bancoId);
+    void vaciar();
+
+}
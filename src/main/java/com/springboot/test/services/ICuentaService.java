@@ -1,19 +1,37 @@
 package com.springboot.test.services;
 
+import com.springboot.test.dto.CambiosCuentasDTO;
+import com.springboot.test.dto.CuentasEncontradasDTO;
+import com.springboot.test.dto.PaginaDTO;
+import com.springboot.test.dto.VersionCuentaDTO;
 import com.springboot.test.models.Cuenta;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ICuentaService {
 
     Cuenta findById(Long id);
+    VersionCuentaDTO findVersion(Long id);
+    Cuenta findByIdParaActualizar(Long id);
 
     Cuenta findByPerson(String person);
+    PaginaDTO<Cuenta> buscarPorPersona(String prefijo, Long despuesDeId, int limite);
     List<Cuenta> findAll();
+    String versionCuentas();
+    PaginaDTO<Cuenta> findPagina(Long despuesDeId, int limite);
+    CambiosCuentasDTO findCambios(long desde, int limite);
+    void recorrer(Consumer<Cuenta> consumidor);
+    List<Cuenta> findAllById(Collection<Long> ids);
+    CuentasEncontradasDTO findVarias(List<Long> ids);
+    List<Cuenta> findAllByIdParaActualizar(Collection<Long> ids);
     Cuenta guardar(Cuenta cuenta);
     void deleteByid(Long id);
     void update(Cuenta cuenta);
     BigDecimal revisarSaldo(Long cuentaId);
+    void transferirSaldo(Long origenId, Long destinoId, BigDecimal monto);
+    void invalidar(Collection<Long> ids);
 
 }
@@ -0,0 +1,31 @@
+package com.springboot.test.services;
+
+import com.springboot.test.dto.EventoSaldoDTO;
+
+import java.io.IOException;
+import java.util.Collection;
+
+public interface IEventoSaldoService {
+
+    /**
+     * @return cancela la suscripcion, se llama cuando la conexion termina
+     */
+    Runnable suscribir(Collection<Long> cuentaIds, Receptor receptor);
+    void publicar(Long cuentaId, EventoSaldoDTO evento);
+    int suscripciones();
+
+    /**
+     * Escribe los eventos de una suscripcion en la conexion. El servicio lo llama desde sus hilos de
+     * envio, nunca dos veces a la vez para la misma suscripcion.
+     */
+    interface Receptor {
+
+        void enviar(EventoSaldoDTO evento) throws IOException;
+        //Un mensaje vacio para descubrir si el cliente cerro la conexion
+        void latido() throws IOException;
+        //El servicio dejo de enviar: el cliente es lento o no hay lugar en la cola de envios
+        void cerrar();
+
+    }
+
+}
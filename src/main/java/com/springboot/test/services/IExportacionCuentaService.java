@@ -0,0 +1,11 @@
+package com.springboot.test.services;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+public interface IExportacionCuentaService {
+
+    long exportarCsv(OutputStream salida, BigDecimal saldoMinimo, BigDecimal saldoMaximo);
+    long exportarBinario(OutputStream salida, BigDecimal saldoMinimo, BigDecimal saldoMaximo);
+
+}
@@ -0,0 +1,25 @@
+package com.springboot.test.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public interface IIdempotenciaService {
+
+    /**
+     * Ejecuta la operacion una sola vez por clave durante app.idempotencia.ttl desde la primera peticion.
+     * Un reintento con la misma clave y la misma peticion recibe la respuesta guardada, aunque la atienda
+     * otra instancia o el proceso se haya reiniciado; con otra peticion falla con 422.
+     *
+     * @param peticion cuerpo de la peticion, se guarda su huella
+     * @param tipo     clase de la respuesta, para leer la respuesta guardada
+     */
+    <T> T ejecutar(String clave, Object peticion, Class<T> tipo, Supplier<T> operacion);
+
+    /**
+     * Igual que ejecutar, pero un duplicado de una peticion en curso en este proceso recibe su resultado
+     * como un futuro (que falla con IdempotenciaEnCursoException despues de app.idempotencia.espera-maxima)
+     * en lugar de bloquear al hilo que llama. La peticion original se ejecuta en el hilo que llama.
+     */
+    <T> CompletableFuture<T> ejecutarAsync(String clave, Object peticion, Class<T> tipo, Supplier<T> operacion);
+
+}
@@ -0,0 +1,12 @@
+package com.springboot.test.services;
+
+import com.springboot.test.dto.ResultadoImportacionDTO;
+
+import java.io.Reader;
+
+public interface IImportacionCuentaService {
+
+    ResultadoImportacionDTO importarCsv(Reader lector);
+    ResultadoImportacionDTO importarNdjson(Reader lector);
+
+}
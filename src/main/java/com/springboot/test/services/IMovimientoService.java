@@ -0,0 +1,16 @@
+package com.springboot.test.services;
+
+import com.springboot.test.dto.PaginaDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.Movimiento;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface IMovimientoService {
+
+    void registrarTransferencia(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal monto);
+    void registrarTransferencias(List<TransaccionDTO> transacciones);
+    PaginaDTO<Movimiento> findPagina(Long cuentaId, Long despuesDeId, int limite);
+
+}
@@ -0,0 +1,8 @@
+package com.springboot.test.services;
+
+public interface ISecuenciaCambiosService {
+
+    long siguiente();
+    long horizonte();
+
+}
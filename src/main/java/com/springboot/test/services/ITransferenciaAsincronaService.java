@@ -0,0 +1,12 @@
+package com.springboot.test.services;
+
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.TransferenciaEncolada;
+
+public interface ITransferenciaAsincronaService {
+
+    TransferenciaEncolada encolar(TransaccionDTO transaccion);
+    TransferenciaEncolada findById(Long id);
+    int procesarPendientes();
+
+}
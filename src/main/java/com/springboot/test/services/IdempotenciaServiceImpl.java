@@ -0,0 +1,252 @@
+package com.springboot.test.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.springboot.test.config.IdempotenciaProperties;
+import com.springboot.test.exceptions.ClaveIdempotenciaReutilizadaException;
+import com.springboot.test.exceptions.IdempotenciaEnCursoException;
+import com.springboot.test.models.ClaveIdempotencia;
+import com.springboot.test.repositories.ClaveIdempotenciaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Guarda el resultado de cada operacion por su clave de idempotencia en la tabla claves_idempotencia.
+ * La primera peticion inserta la clave (en curso) y ejecuta la operacion; los duplicados concurrentes
+ * de este proceso esperan su resultado, los de otra instancia reciben 409 mientras siga en curso.
+ * Los reintentos posteriores reciben la respuesta guardada sin volver a ejecutarla.
+ * Solo se guardan los resultados exitosos, si la operacion falla la clave se libera.
+ * Una clave en curso no se borra hasta que vence: si el proceso termina a mitad de la operacion
+ * no se sabe si se hizo, y los reintentos reciben 409 en lugar de repetirla.
+ */
+@Service
+public class IdempotenciaServiceImpl implements IIdempotenciaService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaServiceImpl.class);
+
+    private final ClaveIdempotenciaRepository claveRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaccionNueva;
+    private final Duration ttl;
+    private final Duration esperaMaxima;
+
+    //Operaciones en curso en este proceso, solo se quitan al terminar
+    private final Map<String, EnCurso> enCurso = new ConcurrentHashMap<>();
+
+    public IdempotenciaServiceImpl(ClaveIdempotenciaRepository claveRepository,
+                                   IdempotenciaProperties properties,
+                                   ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager) {
+        this.claveRepository = claveRepository;
+        this.objectMapper = objectMapper;
+        this.transaccionNueva = new TransactionTemplate(transactionManager);
+        this.transaccionNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = properties.getTtl();
+        this.esperaMaxima = properties.getEsperaMaxima();
+    }
+
+    @Override
+    public <T> T ejecutar(String clave, Object peticion, Class<T> tipo, Supplier<T> operacion) {
+        try {
+            return ejecutarAsync(clave, peticion, tipo, operacion).join();
+        } catch (CompletionException e) {
+            throw causa(e);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> ejecutarAsync(String clave, Object peticion, Class<T> tipo, Supplier<T> operacion) {
+
+        String huella = huella(peticion);
+        EnCurso nueva = new EnCurso(huella);
+        EnCurso existente = enCurso.putIfAbsent(clave, nueva);
+        if (existente != null) {
+            revisarHuella(clave, existente.huella, huella);
+            return esperar(clave, existente.resultado).thenApply(tipo::cast);
+        }
+
+        try {
+            LocalDateTime creada = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+            ClaveIdempotencia guardada = reservar(clave, huella, creada);
+            T resultado = guardada == null
+                    ? ejecutarReservada(clave, creada, operacion)
+                    : leer(guardada.getRespuesta(), tipo);
+            nueva.resultado.complete(resultado);
+            return CompletableFuture.completedFuture(resultado);
+        } catch (RuntimeException e) {
+            nueva.resultado.completeExceptionally(e);
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            enCurso.remove(clave, nueva);
+        }
+    }
+
+    /**
+     * Borra las claves vencidas, las que siguen en curso tambien
+     */
+    @Scheduled(fixedDelayString = "${app.idempotencia.limpieza-ms:3600000}")
+    public void limpiar() {
+        int borradas = Objects.requireNonNull(transaccionNueva.execute(status ->
+                claveRepository.borrarVencidas(LocalDateTime.now())));
+        log.debug("Se borraron {} claves de idempotencia vencidas", borradas);
+    }
+
+    /**
+     * @return null si la clave quedo reservada para esta peticion, si no la clave ya completada
+     */
+    private ClaveIdempotencia reservar(String clave, String huella, LocalDateTime creada) {
+
+        try {
+            transaccionNueva.executeWithoutResult(status ->
+                    claveRepository.insertar(clave, huella, creada, creada.plus(ttl)));
+            return null;
+        } catch (DataIntegrityViolationException e) {
+            //La clave ya existe
+        }
+
+        return transaccionNueva.execute(status -> {
+            if (claveRepository.renovar(clave, huella, creada, creada.plus(ttl)) == 1) {
+                return null;
+            }
+            ClaveIdempotencia guardada = claveRepository.findById(clave)
+                    //Se libero entre el insert y la lectura: la peticion original fallo, se puede reintentar
+                    .orElseThrow(() -> new IdempotenciaEnCursoException("La operacion con clave " + clave
+                            + " acaba de fallar, reintente"));
+            revisarHuella(clave, guardada.getHuella(), huella);
+            if (guardada.getRespuesta() == null) {
+                throw new IdempotenciaEnCursoException("La operacion con clave " + clave + " aun esta en curso");
+            }
+            return guardada;
+        });
+
+    }
+
+    private <T> T ejecutarReservada(String clave, LocalDateTime creada, Supplier<T> operacion) {
+
+        T resultado;
+        try {
+            resultado = operacion.get();
+        } catch (RuntimeException e) {
+            transaccionNueva.executeWithoutResult(status -> claveRepository.liberar(clave, creada));
+            throw e;
+        }
+
+        try {
+            String respuesta = objectMapper.writeValueAsString(resultado);
+            transaccionNueva.executeWithoutResult(status -> claveRepository.completar(clave, creada, respuesta));
+        } catch (JsonProcessingException | RuntimeException e) {
+            //La operacion ya se hizo: la clave queda en curso hasta vencer y los reintentos reciben 409
+            log.error("No se pudo guardar la respuesta de la clave de idempotencia {}", clave, e);
+        }
+        return resultado;
+
+    }
+
+    private <T> T leer(String respuesta, Class<T> tipo) {
+        try {
+            return objectMapper.readValue(respuesta, tipo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Respuesta guardada invalida", e);
+        }
+    }
+
+    private String huella(Object peticion) {
+        try {
+            JsonNode normalizada = normalizar(objectMapper.valueToTree(peticion));
+            byte[] resumen = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(normalizada));
+            return String.format("%064x", new BigInteger(1, resumen));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Peticion invalida", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Los numeros sin ceros a la derecha: el mismo monto con otra escala (100 y 100.00) es la misma peticion
+     */
+    private static JsonNode normalizar(JsonNode nodo) {
+        if (nodo.isNumber()) {
+            return DecimalNode.valueOf(nodo.decimalValue().stripTrailingZeros());
+        }
+        if (nodo.isObject()) {
+            ObjectNode objeto = (ObjectNode) nodo;
+            objeto.fields().forEachRemaining(campo -> campo.setValue(normalizar(campo.getValue())));
+        } else if (nodo.isArray()) {
+            ArrayNode arreglo = (ArrayNode) nodo;
+            for (int i = 0; i < arreglo.size(); i++) {
+                arreglo.set(i, normalizar(arreglo.get(i)));
+            }
+        }
+        return nodo;
+    }
+
+    private static void revisarHuella(String clave, String guardada, String huella) {
+        if (!guardada.equals(huella)) {
+            throw new ClaveIdempotenciaReutilizadaException("La clave " + clave + " ya se uso con otra peticion");
+        }
+    }
+
+    /**
+     * Una copia del resultado de la peticion original, el tiempo de espera no debe afectar a los demas duplicados
+     */
+    private CompletableFuture<Object> esperar(String clave, CompletableFuture<Object> existente) {
+        return existente.thenApply(resultado -> resultado)
+                .orTimeout(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((resultado, error) -> {
+                    if (error == null) {
+                        return resultado;
+                    }
+                    if (desenvolver(error) instanceof TimeoutException) {
+                        throw new IdempotenciaEnCursoException("La operacion con clave " + clave + " aun esta en curso");
+                    }
+                    throw causa(error);
+                });
+    }
+
+    private static RuntimeException causa(Throwable error) {
+        Throwable causa = desenvolver(error);
+        return causa instanceof RuntimeException ? (RuntimeException) causa : new IllegalStateException(causa);
+    }
+
+    private static Throwable desenvolver(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static final class EnCurso {
+
+        private final String huella;
+        private final CompletableFuture<Object> resultado = new CompletableFuture<>();
+
+        private EnCurso(String huella) {
+            this.huella = huella;
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.springboot.test.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.test.config.ImportacionProperties;
+import com.springboot.test.dto.ResultadoImportacionDTO;
+import com.springboot.test.exceptions.ImportacionInvalidaException;
+import com.springboot.test.models.Cuenta;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lee el archivo linea por linea y guarda las cuentas en lotes, cada lote en su propia transaccion:
+ * persist de todas las filas, flush en jdbc batch y clear del contexto de persistencia.
+ * La memoria usada depende del tamanio del lote y no del archivo.
+ * Si una linea es invalida se detiene la importacion, los lotes anteriores ya quedaron guardados.
+ */
+@Service
+public class ImportacionCuentaServiceImpl implements IImportacionCuentaService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionCuentaServiceImpl.class);
+    private static final int BUFFER_LECTURA = 64 * 1024;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ImportacionProperties importacionProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ICuentaService cuentaService;
+    private final ISecuenciaCambiosService secuenciaCambios;
+
+    public ImportacionCuentaServiceImpl(ImportacionProperties importacionProperties,
+                                        PlatformTransactionManager transactionManager,
+                                        ObjectMapper objectMapper,
+                                        ICuentaService cuentaService,
+                                        ISecuenciaCambiosService secuenciaCambios) {
+        this.importacionProperties = importacionProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.cuentaService = cuentaService;
+        this.secuenciaCambios = secuenciaCambios;
+    }
+
+    /**
+     * Formato persona,saldo. El encabezado es opcional y la persona puede ir entre comillas
+     */
+    @Override
+    public ResultadoImportacionDTO importarCsv(Reader lector) {
+        return importar(lector, true, this::leerCsv);
+    }
+
+    /**
+     * Un objeto {"persona": ..., "saldo": ...} por linea, el id se ignora
+     */
+    @Override
+    public ResultadoImportacionDTO importarNdjson(Reader lector) {
+        return importar(lector, false, this::leerJson);
+    }
+
+    private ResultadoImportacionDTO importar(Reader lector, boolean puedeTenerEncabezado, LectorLinea lectorLinea) {
+
+        int tamanio = Math.max(1, importacionProperties.getLote());
+        List<Cuenta> lote = new ArrayList<>(tamanio);
+        long filas = 0;
+        long nroLinea = 0;
+        long inicio = System.nanoTime();
+
+        try (BufferedReader buffer = new BufferedReader(lector, BUFFER_LECTURA)) {
+            String linea;
+            while ((linea = buffer.readLine()) != null) {
+                nroLinea++;
+                if (linea.isBlank() || (nroLinea == 1 && puedeTenerEncabezado && esEncabezado(linea))) {
+                    continue;
+                }
+                try {
+                    lote.add(validar(lectorLinea.leer(linea)));
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    throw new ImportacionInvalidaException(String.format(
+                            "Linea %d invalida (%s), se importaron %d cuentas", nroLinea, e.getMessage(), filas));
+                }
+                if (lote.size() == tamanio) {
+                    filas += guardar(lote, tamanio);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        filas += guardar(lote, tamanio);
+
+        long milisegundos = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        ResultadoImportacionDTO resultado = ResultadoImportacionDTO.builder()
+                .filas(filas)
+                .milisegundos(milisegundos)
+                .filasPorSegundo(filas * 1000 / milisegundos)
+                .build();
+        log.info("Importacion de cuentas: {} filas en {} ms ({} filas/s)", filas, milisegundos, resultado.getFilasPorSegundo());
+        return resultado;
+    }
+
+    private int guardar(List<Cuenta> lote, int tamanio) {
+
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(tamanio);
+            lote.forEach(cuenta -> {
+                cuenta.setCambio(secuenciaCambios.siguiente());
+                entityManager.persist(cuenta);
+            });
+            entityManager.flush();
+            entityManager.clear();
+            //La cache puede guardar como inexistente un id que se acaba de crear; tambien cambia el ETag del listado
+            List<Long> ids = new ArrayList<>(lote.size());
+            lote.forEach(cuenta -> ids.add(cuenta.getId()));
+            cuentaService.invalidar(ids);
+        });
+        int guardadas = lote.size();
+        lote.clear();
+        return guardadas;
+    }
+
+    private Cuenta leerCsv(String linea) {
+
+        int coma = linea.lastIndexOf(',');
+        if (coma < 0) {
+            throw new IllegalArgumentException("se esperaba persona,saldo");
+        }
+        String persona = linea.substring(0, coma).trim();
+        if (persona.length() >= 2 && persona.startsWith("\"") && persona.endsWith("\"")) {
+            persona = persona.substring(1, persona.length() - 1).replace("\"\"", "\"");
+        }
+        //NumberFormatException extiende IllegalArgumentException
+        BigDecimal saldo = new BigDecimal(linea.substring(coma + 1).trim());
+
+        return Cuenta.builder().persona(persona).saldo(saldo).build();
+    }
+
+    private Cuenta leerJson(String linea) throws JsonProcessingException {
+        Cuenta leida = objectMapper.readValue(linea, Cuenta.class);
+        return Cuenta.builder().persona(leida.getPersona()).saldo(leida.getSaldo()).build();
+    }
+
+    private static Cuenta validar(Cuenta cuenta) {
+        if (cuenta.getPersona() == null || cuenta.getPersona().isBlank()) {
+            throw new IllegalArgumentException("falta la persona");
+        }
+        if (cuenta.getSaldo() == null || cuenta.getSaldo().signum() < 0) {
+            throw new IllegalArgumentException("el saldo debe ser mayor o igual a cero");
+        }
+        return cuenta;
+    }
+
+    private static boolean esEncabezado(String linea) {
+        return linea.replace(" ", "").equalsIgnoreCase("persona,saldo");
+    }
+
+    @FunctionalInterface
+    private interface LectorLinea {
+        Cuenta leer(String linea) throws JsonProcessingException;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.springboot.test.services;
+
+import com.springboot.test.dto.PaginaDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.Movimiento;
+import com.springboot.test.models.TipoMovimiento;
+import com.springboot.test.repositories.MovimientoRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Service
+public class MovimientoServiceImpl implements IMovimientoService {
+
+    public static final int LIMITE_MAXIMO = 1000;
+
+    private final MovimientoRepository movimientoRepository;
+
+    public MovimientoServiceImpl(MovimientoRepository movimientoRepository) {
+        this.movimientoRepository = movimientoRepository;
+    }
+
+    /**
+     * Se registra en la misma transaccion que la transferencia
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public void registrarTransferencia(Long bancoId, Long numCuentaOrigen, Long numCuentaDestino, BigDecimal monto) {
+        registrarTransferencias(Collections.singletonList(TransaccionDTO.builder()
+                .bancoDestinoId(bancoId)
+                .cuentaOrigenId(numCuentaOrigen)
+                .cuentaDestinoId(numCuentaDestino)
+                .monto(monto)
+                .build()));
+    }
+
+    /**
+     * Un debito y un credito por transferencia, se insertan al hacer flush en un solo jdbc batch
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public void registrarTransferencias(List<TransaccionDTO> transacciones) {
+
+        LocalDateTime fecha = LocalDateTime.now();
+        List<Movimiento> movimientos = new ArrayList<>(transacciones.size() * 2);
+        for (TransaccionDTO transaccion : transacciones) {
+            movimientos.add(movimiento(transaccion, TipoMovimiento.DEBITO, fecha));
+            movimientos.add(movimiento(transaccion, TipoMovimiento.CREDITO, fecha));
+        }
+        movimientoRepository.saveAll(movimientos);
+
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public PaginaDTO<Movimiento> findPagina(Long cuentaId, Long despuesDeId, int limite) {
+        int tamanio = Math.min(Math.max(limite, 1), LIMITE_MAXIMO);
+        List<Movimiento> movimientos = movimientoRepository.findSiguientes(cuentaId,
+                despuesDeId == null ? 0L : despuesDeId, PageRequest.of(0, tamanio + 1));
+        return PaginaDTO.de(movimientos, tamanio, Movimiento::getId);
+    }
+
+    private static Movimiento movimiento(TransaccionDTO transaccion, TipoMovimiento tipo, LocalDateTime fecha) {
+        boolean debito = tipo == TipoMovimiento.DEBITO;
+        return Movimiento.builder()
+                .cuentaId(debito ? transaccion.getCuentaOrigenId() : transaccion.getCuentaDestinoId())
+                .cuentaContraparteId(debito ? transaccion.getCuentaDestinoId() : transaccion.getCuentaOrigenId())
+                .bancoId(transaccion.getBancoDestinoId())
+                .tipo(tipo)
+                .monto(transaccion.getMonto())
+                .fecha(fecha)
+                .build();
+    }
+
+}
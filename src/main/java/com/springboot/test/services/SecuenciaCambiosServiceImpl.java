@@ -0,0 +1,170 @@
+package com.springboot.test.services;
+
+import com.springboot.test.models.InstanciaCambios;
+import com.springboot.test.repositories.InstanciaCambiosRepository;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numeros de cambio de las cuentas: cada escritura (alta, modificacion o baja) toma uno nuevo dentro
+ * de la transaccion que escribe. Cada instancia reserva bloques de BLOQUE numeros de la secuencia
+ * cambios_cuentas_seq (pooled-lo: el valor de la secuencia es el primero del bloque) y los entrega en
+ * memoria, asi una escritura no va a la base por su numero. Son unicos entre todas las instancias y
+ * crecientes dentro de cada una, pero no consecutivos.
+ * Un numero se asigna antes del commit, asi una transaccion puede hacer commit con un numero menor
+ * que otra que ya termino. Para que un cliente no se salte cambios, la consulta de cambios solo llega
+ * hasta el horizonte: el numero anterior al menor que puede tener una transaccion aun en curso, en esta
+ * instancia o en otra (cambios_instancias, se informa cada segundo). Con otras instancias, cada reporte
+ * deja el resto del bloque y reserva otro, para no retener el horizonte de las demas con un bloque viejo.
+ * Se supone que los relojes de las instancias difieren en mucho menos que la vigencia de un reporte.
+ */
+@Service
+public class SecuenciaCambiosServiceImpl implements ISecuenciaCambiosService, DisposableBean {
+
+    private static final String SECUENCIA = "cambios_cuentas_seq";
+    //Numeros por valor de la secuencia, igual a su INCREMENT BY en import.sql
+    private static final long BLOQUE = 50;
+    private static final long REPORTE_MS = 1000;
+    private static final Duration VIGENCIA = Duration.ofSeconds(30);
+
+    private final InstanciaCambiosRepository instanciaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccionNueva;
+    private final String siguienteValor;
+    private final String instancia = UUID.randomUUID().toString();
+
+    //Clave del recurso de la transaccion que ya tiene un numero en curso
+    private final Object recurso = new Object();
+    //Mayor numero entregado o descartado por esta instancia, los que entregue despues son mayores
+    private final AtomicLong ultimoVisto = new AtomicLong();
+    //Proximo numero a entregar y ultimo del bloque reservado
+    private long proximo;
+    private long limite = -1;
+    //Por cada transaccion en curso, un numero menor o igual al primero que tomo
+    private final Map<Object, Long> enCurso = new ConcurrentHashMap<>();
+    private volatile boolean hayOtras;
+
+    public SecuenciaCambiosServiceImpl(InstanciaCambiosRepository instanciaRepository,
+                                       JdbcTemplate jdbcTemplate,
+                                       EntityManagerFactory entityManagerFactory,
+                                       PlatformTransactionManager transactionManager) {
+        this.instanciaRepository = instanciaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccionNueva = new TransactionTemplate(transactionManager);
+        this.transaccionNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.siguienteValor = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceNextValString(SECUENCIA);
+        reservar();
+        //Se informa antes de la primera escritura, las demas instancias no deben avanzar mas alla de ella
+        reportar();
+    }
+
+    /**
+     * Solo dentro de una transaccion. La transaccion queda en curso desde antes de pedir su primer
+     * numero hasta que termina, los siguientes son mayores y ya quedan cubiertos.
+     */
+    @Override
+    public long siguiente() {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("El numero de cambio se asigna dentro de una transaccion");
+        }
+
+        if (!TransactionSynchronizationManager.hasResource(recurso)) {
+            Object transaccion = new Object();
+            //Antes de tomar el numero: cualquier numero que se entregue despues es mayor que el ultimo visto
+            enCurso.put(transaccion, ultimoVisto.get() + 1);
+            TransactionSynchronizationManager.bindResource(recurso, transaccion);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(recurso);
+                    enCurso.remove(transaccion);
+                }
+            });
+        }
+        return entregar();
+
+    }
+
+    /**
+     * Todos los numeros hasta el horizonte pertenecen a transacciones que ya terminaron
+     */
+    @Override
+    public long horizonte() {
+        Long otras = instanciaRepository.findHorizonteOtras(instancia, LocalDateTime.now());
+        hayOtras = otras != null;
+        return otras == null ? horizonteLocal() : Math.min(horizonteLocal(), otras);
+    }
+
+    /**
+     * Con otras instancias se reserva un bloque nuevo aunque esta no escriba, asi su horizonte avanza
+     */
+    @Scheduled(fixedDelay = REPORTE_MS)
+    public void reportar() {
+        transaccionNueva.executeWithoutResult(status -> {
+            if (hayOtras) {
+                reservar();
+            }
+            LocalDateTime ahora = LocalDateTime.now();
+            instanciaRepository.save(new InstanciaCambios(instancia, horizonteLocal(), ahora.plus(VIGENCIA)));
+            instanciaRepository.borrarVencidas(ahora.minus(VIGENCIA));
+            hayOtras = instanciaRepository.findHorizonteOtras(instancia, ahora) != null;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        transaccionNueva.executeWithoutResult(status ->
+                instanciaRepository.findById(instancia).ifPresent(instanciaRepository::delete));
+    }
+
+    /**
+     * El ultimo visto se lee antes que las transacciones en curso: una que se registre despues
+     * obtiene un numero mayor
+     */
+    private long horizonteLocal() {
+        long horizonte = ultimoVisto.get();
+        for (Long piso : enCurso.values()) {
+            horizonte = Math.min(horizonte, piso - 1);
+        }
+        return horizonte;
+    }
+
+    private synchronized long entregar() {
+        if (proximo > limite) {
+            reservar();
+        }
+        long numero = proximo++;
+        ultimoVisto.accumulateAndGet(numero, Math::max);
+        return numero;
+    }
+
+    /**
+     * Descarta lo que queda del bloque actual: los numeros del nuevo son mayores que todos los entregados
+     */
+    private synchronized void reservar() {
+        long inicio = Objects.requireNonNull(jdbcTemplate.queryForObject(siguienteValor, Long.class));
+        proximo = inicio;
+        limite = inicio + BLOQUE - 1;
+        ultimoVisto.accumulateAndGet(inicio - 1, Math::max);
+    }
+
+}
@@ -0,0 +1,326 @@
+package com.springboot.test.services;
+
+import com.springboot.test.config.TransferenciaProperties;
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.ColaTransferenciasLlenaException;
+import com.springboot.test.exceptions.DineroInsuficienteException;
+import com.springboot.test.models.Centavos;
+import com.springboot.test.models.EstadoEncolada;
+import com.springboot.test.models.TransferenciaEncolada;
+import com.springboot.test.repositories.TransferenciaEncoladaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cola de transferencias sobre la tabla transferencias_encoladas.
+ * Al encolar se despierta a un trabajador (segun el id, solo para repartir la carga); ademas un barrido
+ * periodico despierta a todos si quedan pendientes (filas de antes de un reinicio o que fallaron).
+ * Un trabajador reclama un lote de filas con un UPDATE condicional (la columna reclamo; H2 no tiene
+ * SKIP LOCKED) y transfiere cada fila en su propia transaccion, que tambien la marca REALIZADA solo
+ * si el reclamo sigue siendo suyo: repetir una fila ya hecha no mueve el dinero.
+ * Una fila cuyo trabajador no termina vuelve a estar disponible cuando vence el reclamo; despues de
+ * app.transferencias.cola.intentos reclamos queda FALLIDA.
+ * La capacidad es de la tabla, no de cada instancia: cada barrido cuenta las filas sin terminar de todas
+ * las instancias y entre barridos cada instancia suma en memoria las que encola ella. Con varias
+ * instancias la cola puede pasar la capacidad por lo que encolen las demas durante un barrido.
+ */
+@Service
+public class TransferenciaAsincronaServiceImpl implements ITransferenciaAsincronaService, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferenciaAsincronaServiceImpl.class);
+    private static final Duration PRIMERA_ESPERA = Duration.ofSeconds(1);
+    private static final List<EstadoEncolada> SIN_TERMINAR = List.of(EstadoEncolada.PENDIENTE, EstadoEncolada.EN_PROCESO);
+
+    private final TransferenciaEncoladaRepository encoladaRepository;
+    private final IBancoService bancoService;
+    private final TransferenciaProperties.Cola cola;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter rechazadas;
+
+    //Filas sin terminar en la tabla, se cuenta en cada barrido y no en cada POST
+    private final AtomicLong pendientes = new AtomicLong();
+    private final AtomicBoolean[] solicitado;
+    private final AtomicBoolean[] enEjecucion;
+    private final ScheduledExecutorService executor;
+    private volatile boolean activo = true;
+
+    public TransferenciaAsincronaServiceImpl(TransferenciaEncoladaRepository encoladaRepository,
+                                             IBancoService bancoService,
+                                             TransferenciaProperties transferenciaProperties,
+                                             PlatformTransactionManager transactionManager,
+                                             MeterRegistry meterRegistry) {
+        this.encoladaRepository = encoladaRepository;
+        this.bancoService = bancoService;
+        this.cola = transferenciaProperties.getCola();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        int trabajadores = trabajadores();
+        this.solicitado = new AtomicBoolean[trabajadores];
+        this.enEjecucion = new AtomicBoolean[trabajadores];
+        for (int i = 0; i < trabajadores; i++) {
+            solicitado[i] = new AtomicBoolean();
+            enEjecucion[i] = new AtomicBoolean();
+        }
+        //Un hilo mas para el barrido
+        this.executor = Executors.newScheduledThreadPool(trabajadores + 1,
+                new CustomizableThreadFactory("cola-transferencias-"));
+
+        Gauge.builder("transferencias.cola.pendientes", pendientes, AtomicLong::get)
+                .description("Transferencias encoladas aun sin procesar")
+                .register(meterRegistry);
+        this.rechazadas = Counter.builder("transferencias.cola.rechazadas")
+                .description("Transferencias rechazadas con la cola llena")
+                .register(meterRegistry);
+    }
+
+    /**
+     * El cupo se reserva antes de insertar y se devuelve si la transaccion no hace commit
+     */
+    @Transactional
+    @Override
+    public TransferenciaEncolada encolar(TransaccionDTO transaccion) {
+
+        if (pendientes.incrementAndGet() > cola.getCapacidad()) {
+            pendientes.decrementAndGet();
+            rechazadas.increment();
+            throw new ColaTransferenciasLlenaException("La cola de transferencias esta llena");
+        }
+
+        TransferenciaEncolada encolada;
+        try {
+            encolada = encoladaRepository.save(TransferenciaEncolada.builder()
+                    .cuentaOrigenId(transaccion.getCuentaOrigenId())
+                    .cuentaDestinoId(transaccion.getCuentaDestinoId())
+                    .bancoId(transaccion.getBancoDestinoId())
+                    .monto(Centavos.normalizar(transaccion.getMonto()))
+                    .estado(EstadoEncolada.PENDIENTE)
+                    .creada(LocalDateTime.now())
+                    .build());
+        } catch (RuntimeException e) {
+            pendientes.decrementAndGet();
+            throw e;
+        }
+
+        int trabajador = trabajadorDe(encolada.getId());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    despertar(trabajador);
+                } else {
+                    pendientes.decrementAndGet();
+                }
+            }
+        });
+
+        return encolada;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public TransferenciaEncolada findById(Long id) {
+        return encoladaRepository.findById(id).orElseThrow();
+    }
+
+    /**
+     * Reclama un lote de filas y las procesa una por una.
+     *
+     * @return nro de filas reclamadas, si es igual al lote puede haber mas pendientes
+     */
+    @Override
+    public int procesarPendientes() {
+
+        String reclamo = UUID.randomUUID().toString();
+        List<TransferenciaEncolada> lote = Objects.requireNonNull(transactionTemplate.execute(status -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            List<Long> ids = encoladaRepository.findReclamables(EstadoEncolada.PENDIENTE, EstadoEncolada.EN_PROCESO,
+                    ahora, PageRequest.of(0, Math.max(1, cola.getLote())));
+            if (ids.isEmpty()) {
+                return List.<TransferenciaEncolada>of();
+            }
+            encoladaRepository.reclamar(ids, EstadoEncolada.EN_PROCESO, reclamo, ahora.plus(cola.getReclamo()),
+                    EstadoEncolada.PENDIENTE, ahora);
+            return encoladaRepository.findByReclamoOrderById(reclamo);
+        }));
+
+        for (int i = 0; i < lote.size(); i++) {
+            if (!activo) {
+                //Las que quedan se liberan para el proximo arranque o para otra instancia
+                lote.subList(i, lote.size()).forEach(encolada -> posponer(encolada, LocalDateTime.now()));
+                break;
+            }
+            procesar(lote.get(i));
+        }
+        return lote.size();
+    }
+
+    /**
+     * Los errores de negocio dejan la fila FALLIDA; cualquier otro error la pospone hasta agotar los intentos
+     */
+    private void procesar(TransferenciaEncolada encolada) {
+
+        if (encolada.getIntentos() > Math.max(1, cola.getIntentos())) {
+            finalizarFallida(encolada, EstadoTransaccion.RECHAZADA, "Se agotaron los intentos");
+            return;
+        }
+
+        try {
+            if (bancoService.transferirEncolada(encolada)) {
+                terminada();
+            }
+        } catch (DineroInsuficienteException e) {
+            finalizarFallida(encolada, EstadoTransaccion.DINERO_INSUFICIENTE, e.getMessage());
+        } catch (NoSuchElementException e) {
+            finalizarFallida(encolada, EstadoTransaccion.NO_ENCONTRADA, "Cuenta o banco no encontrado");
+        } catch (IllegalArgumentException e) {
+            finalizarFallida(encolada, EstadoTransaccion.INVALIDA, e.getMessage());
+        } catch (RuntimeException e) {
+            if (encolada.getIntentos() >= Math.max(1, cola.getIntentos())) {
+                log.error("Se agotaron los intentos de la transferencia encolada {}", encolada.getId(), e);
+                finalizarFallida(encolada, EstadoTransaccion.RECHAZADA, "Se agotaron los intentos");
+            } else {
+                log.warn("Error al procesar la transferencia encolada {}, intento {}", encolada.getId(),
+                        encolada.getIntentos(), e);
+                posponer(encolada, LocalDateTime.now().plus(espera(encolada.getIntentos())));
+            }
+        }
+
+    }
+
+    private void finalizarFallida(TransferenciaEncolada encolada, EstadoTransaccion resultado, String mensaje) {
+        Integer filas = transactionTemplate.execute(status -> encoladaRepository.finalizar(encolada.getId(),
+                encolada.getReclamo(), EstadoEncolada.FALLIDA, resultado, mensaje, LocalDateTime.now()));
+        if (filas != null && filas == 1) {
+            terminada();
+        }
+    }
+
+    /**
+     * Sin bajar de cero: con el motor particionado una fila puede terminar dos veces, la transferencia
+     * y despues FALLIDA si su escritura tarda mas que los reintentos
+     */
+    private void terminada() {
+        pendientes.updateAndGet(actual -> actual > 0 ? actual - 1 : 0);
+    }
+
+    private void posponer(TransferenciaEncolada encolada, LocalDateTime hasta) {
+        transactionTemplate.execute(status -> encoladaRepository.posponer(encolada.getId(), encolada.getReclamo(), hasta));
+    }
+
+    /**
+     * 1s, 2s, 4s... sin pasar del tiempo de reclamo
+     */
+    private Duration espera(int intentos) {
+        Duration espera = PRIMERA_ESPERA.multipliedBy(1L << Math.min(20, Math.max(0, intentos - 1)));
+        return espera.compareTo(cola.getReclamo()) > 0 ? cola.getReclamo() : espera;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+
+        pendientes.set(encoladaRepository.countByEstadoIn(SIN_TERMINAR));
+        long barrido = Math.max(1, cola.getBarrido().toMillis());
+        executor.scheduleWithFixedDelay(this::barrer, 0, barrido, TimeUnit.MILLISECONDS);
+
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        activo = false;
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("La cola de transferencias se detuvo con un lote en proceso");
+        }
+    }
+
+    /**
+     * Tambien corrige el conteo en memoria con el de la tabla, que incluye las filas de otras instancias
+     */
+    private void barrer() {
+        try {
+            pendientes.set(encoladaRepository.countByEstadoIn(SIN_TERMINAR));
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron contar las transferencias encoladas", e);
+        }
+        if (pendientes.get() <= 0) {
+            return;
+        }
+        for (int trabajador = 0; trabajador < solicitado.length; trabajador++) {
+            despertar(trabajador);
+        }
+    }
+
+    /**
+     * Si el trabajador ya esta procesando, la solicitud hace que de otra vuelta al terminar
+     */
+    private void despertar(int trabajador) {
+
+        if (!activo) {
+            return;
+        }
+        solicitado[trabajador].set(true);
+        if (enEjecucion[trabajador].compareAndSet(false, true)) {
+            executor.execute(() -> drenar(trabajador));
+        }
+
+    }
+
+    private void drenar(int trabajador) {
+
+        try {
+            while (activo && solicitado[trabajador].getAndSet(false)) {
+                int lote = Math.max(1, cola.getLote());
+                while (activo && procesarPendientes() >= lote) {
+                    //Lote completo, puede haber mas pendientes
+                }
+            }
+        } catch (RuntimeException e) {
+            //Las filas reclamadas vuelven a estar disponibles al vencer el reclamo
+            log.error("Error al procesar la cola de transferencias del trabajador {}", trabajador, e);
+        } finally {
+            enEjecucion[trabajador].set(false);
+        }
+
+        //Una solicitud que llego justo despues de salir del ciclo
+        if (activo && solicitado[trabajador].get()) {
+            despertar(trabajador);
+        }
+
+    }
+
+    private int trabajadorDe(Long id) {
+        return (int) (id % trabajadores());
+    }
+
+    private int trabajadores() {
+        return Math.max(1, cola.getTrabajadores());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.springboot.test.services.motor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cola acotada sin bloqueos para varios productores y un solo consumidor.
+ * Cada casilla guarda un nro de secuencia: el productor reserva una posicion avanzando la cola con CAS
+ * y publica el elemento escribiendo la secuencia de su casilla; el consumidor solo toma las casillas
+ * publicadas y al liberarlas las deja listas para la siguiente vuelta del anillo.
+ */
+final class AnilloMpsc<E> {
+
+    private final AtomicReferenceArray<E> elementos;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    private final AtomicLong cola = new AtomicLong();
+    //Solo la usa el hilo consumidor
+    private long cabeza;
+
+    AnilloMpsc(int capacidad) {
+        int tamanio = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(2, capacidad) - 1));
+        this.elementos = new AtomicReferenceArray<>(tamanio);
+        this.secuencias = new AtomicLongArray(tamanio);
+        for (int i = 0; i < tamanio; i++) {
+            secuencias.set(i, i);
+        }
+        this.mascara = tamanio - 1;
+    }
+
+    /**
+     * @return false si el anillo esta lleno
+     */
+    boolean ofrecer(E elemento) {
+
+        long posicion = cola.get();
+        int casilla;
+        while (true) {
+            casilla = (int) posicion & mascara;
+            long diferencia = secuencias.getAcquire(casilla) - posicion;
+            if (diferencia == 0) {
+                if (cola.compareAndSet(posicion, posicion + 1)) {
+                    break;
+                }
+                posicion = cola.get();
+            } else if (diferencia < 0) {
+                //El consumidor aun no libera la casilla de la vuelta anterior
+                return false;
+            } else {
+                posicion = cola.get();
+            }
+        }
+
+        elementos.setPlain(casilla, elemento);
+        secuencias.setRelease(casilla, posicion + 1);
+        return true;
+
+    }
+
+    /**
+     * Solo desde el hilo consumidor.
+     *
+     * @return null si no hay elementos publicados
+     */
+    E sacar() {
+
+        int casilla = (int) cabeza & mascara;
+        if (secuencias.getAcquire(casilla) != cabeza + 1) {
+            return null;
+        }
+        E elemento = elementos.getPlain(casilla);
+        elementos.setPlain(casilla, null);
+        secuencias.setRelease(casilla, cabeza + mascara + 1);
+        cabeza++;
+        return elemento;
+
+    }
+
+    /**
+     * Solo desde el hilo consumidor.
+     */
+    boolean vacio() {
+        return secuencias.getAcquire((int) cabeza & mascara) != cabeza + 1;
+    }
+
+}
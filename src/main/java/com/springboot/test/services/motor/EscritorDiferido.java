@@ -0,0 +1,99 @@
+package com.springboot.test.services.motor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hilo que junta las transferencias ya aplicadas en memoria y las escribe por lotes,
+ * un lote por transaccion, cuando se llena o cuando pasa el intervalo de escritura.
+ * Si la escritura falla el lote se conserva y se reintenta con una espera que se duplica
+ * en cada falla seguida (de 10 ms hasta 5 s), asi una base caida no recibe un reintento por vuelta.
+ */
+final class EscritorDiferido implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(EscritorDiferido.class);
+    private static final long ESPERA_INICIAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long ESPERA_MAXIMA_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final MotorTransferencias motor;
+    private final AnilloMpsc<Transferencia> entrada;
+    private final int tamanioLote;
+    private final long intervaloNanos;
+    private final List<Transferencia> lote;
+    //Solo la usa el hilo del escritor, 0 despues de una escritura correcta
+    private long esperaReintento;
+    private volatile boolean activo = true;
+    private volatile Thread hilo;
+
+    EscritorDiferido(MotorTransferencias motor, int capacidad, int tamanioLote, long intervaloNanos) {
+        this.motor = motor;
+        this.entrada = new AnilloMpsc<>(capacidad);
+        this.tamanioLote = Math.max(1, tamanioLote);
+        this.intervaloNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), intervaloNanos);
+        this.lote = new ArrayList<>(this.tamanioLote);
+    }
+
+    boolean ofrecer(Transferencia transferencia) {
+        return entrada.ofrecer(transferencia);
+    }
+
+    void detener() {
+        activo = false;
+        LockSupport.unpark(hilo);
+    }
+
+    @Override
+    public void run() {
+
+        hilo = Thread.currentThread();
+        long ultimaEscritura = System.nanoTime();
+        while (activo || !entrada.vacio() || !lote.isEmpty()) {
+
+            Transferencia transferencia;
+            while (lote.size() < tamanioLote && (transferencia = entrada.sacar()) != null) {
+                lote.add(transferencia);
+            }
+
+            boolean vencido = System.nanoTime() - ultimaEscritura >= intervaloNanos;
+            if (!lote.isEmpty() && (lote.size() >= tamanioLote || vencido || !activo)) {
+                ultimaEscritura = System.nanoTime();
+                if (escribir()) {
+                    esperaReintento = 0;
+                } else if (!activo) {
+                    log.error("Se detuvo el motor con {} transferencias sin escribir", lote.size());
+                    return;
+                } else {
+                    //detener() interrumpe la espera con unpark
+                    LockSupport.parkNanos(esperaReintento);
+                }
+            } else if (entrada.vacio()) {
+                LockSupport.parkNanos(Math.min(intervaloNanos, TimeUnit.MILLISECONDS.toNanos(5)));
+            }
+
+        }
+
+    }
+
+    private boolean escribir() {
+
+        try {
+            motor.persistir(lote);
+            lote.clear();
+            return true;
+        } catch (RuntimeException e) {
+            esperaReintento = esperaReintento == 0
+                    ? ESPERA_INICIAL_NANOS
+                    : Math.min(2 * esperaReintento, ESPERA_MAXIMA_NANOS);
+            log.error("No se pudo escribir un lote de {} transferencias, se reintenta en {} ms",
+                    lote.size(), TimeUnit.NANOSECONDS.toMillis(esperaReintento), e);
+            return false;
+        }
+
+    }
+
+}
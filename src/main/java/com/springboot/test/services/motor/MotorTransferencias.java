@@ -0,0 +1,487 @@
+package com.springboot.test.services.motor;
+
+import com.springboot.test.config.TransferenciaProperties;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.ColaTransferenciasLlenaException;
+import com.springboot.test.models.Centavos;
+import com.springboot.test.services.IContadorTransferenciaService;
+import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.IMovimientoService;
+import com.springboot.test.services.ISecuenciaCambiosService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Motor de transferencias por particiones de un solo escritor.
+ * Cada cuenta pertenece a una particion segun el hash de su id y solo el hilo de esa particion
+ * modifica su saldo. Una transferencia reserva el monto en la particion de origen, se acredita
+ * en la de destino y vuelve al origen para confirmar la reserva (o liberarla si el destino no existe).
+ * Las transferencias hechas se escriben despues, por lotes, como diferencias de saldo
+ * (saldo = saldo + ?) junto con sus movimientos y el contador del banco.
+ *
+ * El motor retiene a lo sumo maximoRetenidas transferencias (en los anillos, en las colas locales
+ * de las particiones o sin escribir); si la base no da abasto los que llaman esperan y despues
+ * de esperaAdmision se rechaza la transferencia.
+ *
+ * El saldo en memoria de una cuenta es el de la base mas lo aplicado y aun no escrito (pendientesPorCuenta).
+ * Cuando la cuenta se modifica por fuera del motor (alta, edicion, eliminacion, importacion) su particion
+ * lo vuelve a calcular asi la proxima vez que la usa. Si al escribir una cuenta ya no existe, las transferencias
+ * que la tocan se descartan y su monto vuelve a la otra cuenta.
+ * Una transferencia de la cola (encoladaId) marca su fila REALIZADA en la misma transaccion que la escribe;
+ * si la fila ya no esta EN_PROCESO la transferencia se descarta igual que con una cuenta eliminada.
+ * Lo que aun no se escribe se pierde si el proceso termina de forma abrupta.
+ */
+public class MotorTransferencias {
+
+    private static final Logger log = LoggerFactory.getLogger(MotorTransferencias.class);
+    private static final String ACTUALIZAR_SALDO =
+            "update cuentas set saldo = saldo + ?, version = version + 1, modificado = ?, cambio = ? " +
+                    "where id = ?";
+    private static final String LEER_SALDO = "select saldo from cuentas where id = ?";
+    private static final String MARCAR_ENCOLADA =
+            "update transferencias_encoladas set estado = 'REALIZADA', resultado = 'REALIZADA', mensaje = ?, " +
+                    "procesada = ?, reclamo = null, reclamada_hasta = null where id = ? and estado = 'EN_PROCESO'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IMovimientoService movimientoService;
+    private final IContadorTransferenciaService contadorService;
+    private final ICuentaService cuentaService;
+    private final ISecuenciaCambiosService secuenciaCambios;
+
+    private final Particion[] particiones;
+    private final EscritorDiferido escritor;
+    private final List<Thread> hilos = new ArrayList<>();
+
+    private volatile boolean aceptando = true;
+    //Transferencias recibidas que aun no terminan su recorrido por las particiones
+    private final AtomicInteger enVuelo = new AtomicInteger();
+    private final AtomicLong aplicadas = new AtomicLong();
+    private final AtomicLong escritas = new AtomicLong();
+    //Transferencias admitidas que aun no terminan su recorrido o no se escriben
+    private final AtomicLong retenidas = new AtomicLong();
+    private final long maximoRetenidas;
+    private final long esperaAdmisionNanos;
+    //Transferencias hechas en memoria y aun no escritas, por banco
+    private final Map<Long, LongAdder> pendientes = new ConcurrentHashMap<>();
+    //Centavos reservados o aplicados en memoria y aun no escritos, por cuenta (sin las que quedan en cero)
+    private final Map<Long, Long> pendientesPorCuenta = new ConcurrentHashMap<>();
+    //Filas de la cola con una transferencia en el motor, para no aplicarlas dos veces si se vuelven a reclamar
+    private final Set<Long> encoladasEnVuelo = ConcurrentHashMap.newKeySet();
+    //Ni el total ni la carga de un saldo deben ver un lote ya escrito y aun contado como pendiente
+    private final ReentrantReadWriteLock escritura = new ReentrantReadWriteLock();
+
+    public MotorTransferencias(TransferenciaProperties.Particionado configuracion,
+                               JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               IMovimientoService movimientoService,
+                               IContadorTransferenciaService contadorService,
+                               ICuentaService cuentaService,
+                               ISecuenciaCambiosService secuenciaCambios) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.movimientoService = movimientoService;
+        this.contadorService = contadorService;
+        this.cuentaService = cuentaService;
+        this.secuenciaCambios = secuenciaCambios;
+        this.maximoRetenidas = Math.max(1, configuracion.getMaximoRetenidas());
+        this.esperaAdmisionNanos = configuracion.getEsperaAdmision().toNanos();
+
+        this.particiones = new Particion[Math.max(1, configuracion.getParticiones())];
+        for (int i = 0; i < particiones.length; i++) {
+            particiones[i] = new Particion(this, configuracion.getCapacidad());
+        }
+        this.escritor = new EscritorDiferido(this, configuracion.getCapacidad(),
+                configuracion.getLoteEscritura(), configuracion.getIntervaloEscritura().toNanos());
+
+        //Los hilos se inician con todo el motor ya construido
+        for (int i = 0; i < particiones.length; i++) {
+            iniciar(particiones[i], "motor-particion-" + i);
+        }
+        iniciar(escritor, "motor-escritor");
+    }
+
+    /**
+     * Se completa cuando la transferencia esta hecha en memoria, antes de escribirse.
+     * Si la particion de origen tiene el anillo lleno el hilo que llama espera.
+     *
+     * @throws ColaTransferenciasLlenaException si el motor sigue lleno despues de esperaAdmision
+     */
+    public CompletableFuture<Void> transferir(Long bancoId, Long origen, Long destino, BigDecimal monto) {
+        return transferir(bancoId, origen, destino, monto, null);
+    }
+
+    /**
+     * Transferencia de la fila encoladaId de la cola, que queda REALIZADA cuando se escribe.
+     *
+     * @return null si esa fila ya tiene una transferencia en el motor
+     */
+    public CompletableFuture<Void> transferir(Long bancoId, Long origen, Long destino, BigDecimal monto, Long encoladaId) {
+
+        if (!aceptando) {
+            throw new IllegalStateException("El motor de transferencias esta detenido");
+        }
+        if (monto == null || monto.signum() <= 0) {
+            throw new IllegalArgumentException("El monto debe ser mayor a cero");
+        }
+        if (encoladaId != null && !encoladasEnVuelo.add(encoladaId)) {
+            return null;
+        }
+        Transferencia transferencia = new Transferencia(bancoId, origen, destino, monto, Centavos.de(monto), encoladaId);
+
+        try {
+            admitir();
+        } catch (RuntimeException e) {
+            if (encoladaId != null) {
+                encoladasEnVuelo.remove(encoladaId);
+            }
+            throw e;
+        }
+        enVuelo.incrementAndGet();
+        Particion particion = particionDe(origen);
+        while (!particion.ofrecer(transferencia)) {
+            if (!aceptando) {
+                terminar(transferencia);
+                throw new IllegalStateException("El motor de transferencias esta detenido");
+            }
+            LockSupport.parkNanos(10_000);
+        }
+        return transferencia.resultado;
+
+    }
+
+    /**
+     * Transferencias aplicadas en memoria que aun no se escriben en la base
+     */
+    public long sinEscribir() {
+        return aplicadas.get() - escritas.get();
+    }
+
+    public long retenidas() {
+        return retenidas.get();
+    }
+
+    /**
+     * La cuenta se modifico por fuera del motor: su particion vuelve a leer el saldo la proxima vez que la use.
+     * Las escrituras del propio motor tambien avisan (desde el escritor, con el bloqueo de escritura) y se ignoran.
+     */
+    public void cuentaModificada(Long cuentaId) {
+        if (cuentaId != null && !escritura.isWriteLockedByCurrentThread()) {
+            particionDe(cuentaId).recargar(cuentaId);
+        }
+    }
+
+    /**
+     * Lo escrito en la base mas lo aplicado en memoria que aun no se escribe
+     */
+    public long totalTransferencias(Long bancoId) {
+
+        escritura.readLock().lock();
+        try {
+            LongAdder pendiente = pendientes.get(bancoId);
+            return contadorService.total(bancoId) + (pendiente == null ? 0 : pendiente.sum());
+        } finally {
+            escritura.readLock().unlock();
+        }
+
+    }
+
+    /**
+     * Espera a que las transferencias hechas hasta ahora esten escritas en la base.
+     *
+     * @return false si no se escribieron dentro del tiempo de espera
+     */
+    public boolean sincronizar(Duration espera) {
+
+        long objetivo = aplicadas.get();
+        long limite = System.nanoTime() + espera.toNanos();
+        while (escritas.get() < objetivo) {
+            if (System.nanoTime() - limite > 0) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+
+    }
+
+    /**
+     * Deja de aceptar transferencias, espera las que estan en curso y escribe lo pendiente
+     */
+    public void detener(Duration espera) {
+
+        aceptando = false;
+        long limite = System.nanoTime() + espera.toNanos();
+        while (enVuelo.get() > 0 && System.nanoTime() - limite < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        for (Particion particion : particiones) {
+            particion.detener();
+        }
+        unir(hilos.subList(0, particiones.length), limite);
+        escritor.detener();
+        unir(hilos.subList(particiones.length, hilos.size()), limite);
+
+    }
+
+    Particion particionDe(Long cuentaId) {
+        //Se mezclan los bits del id para que ids consecutivos no caigan en la misma particion por rachas
+        long mezcla = (cuentaId == null ? 0 : cuentaId) * 0x9E3779B97F4A7C15L;
+        return particiones[(int) Math.floorMod(mezcla >>> 32, (long) particiones.length)];
+    }
+
+    EscritorDiferido escritor() {
+        return escritor;
+    }
+
+    /**
+     * Saldo de la base mas lo pendiente de la cuenta. Con el bloqueo de lectura el escritor no puede
+     * hacer commit entre las dos lecturas; lo pendiente solo lo cambia, ademas del escritor,
+     * la particion dueña de la cuenta, que es la que llama.
+     */
+    Long cargarSaldo(Long cuentaId) {
+        if (cuentaId == null) {
+            return null;
+        }
+        escritura.readLock().lock();
+        try {
+            List<BigDecimal> saldos = jdbcTemplate.queryForList(LEER_SALDO, BigDecimal.class, cuentaId);
+            return saldos.isEmpty()
+                    ? null
+                    : Centavos.sumar(Centavos.de(saldos.get(0)), pendientesPorCuenta.getOrDefault(cuentaId, 0L));
+        } finally {
+            escritura.readLock().unlock();
+        }
+    }
+
+    void cambiarPendiente(Long cuentaId, long centavos) {
+        pendientesPorCuenta.merge(cuentaId, centavos, (actual, cambio) -> {
+            long suma = Centavos.sumar(actual, cambio);
+            return suma == 0 ? null : suma;
+        });
+    }
+
+    void aplicada(Transferencia transferencia) {
+        transferencia.etapas.incrementAndGet();
+        pendientes.computeIfAbsent(transferencia.bancoId, id -> new LongAdder()).increment();
+        aplicadas.incrementAndGet();
+    }
+
+    void terminar(Transferencia transferencia) {
+        enVuelo.decrementAndGet();
+        cerrarEtapa(transferencia);
+    }
+
+    /**
+     * Una transaccion por lote: las diferencias de saldo por cuenta en orden ascendente de id
+     * (igual que el modo pesimista, para no bloquearse con otras transacciones), los movimientos
+     * y un incremento del contador por banco.
+     * Cada UPDATE debe modificar una fila; si una cuenta se elimino por fuera del motor o una fila de la cola
+     * ya no esta EN_PROCESO la transaccion se deshace, se descartan esas transferencias y se escribe el resto.
+     */
+    void persistir(List<Transferencia> lote) {
+
+        escritura.writeLock().lock();
+        try {
+            List<Transferencia> porEscribir = new ArrayList<>(lote.size());
+            for (Transferencia transferencia : lote) {
+                if (!transferencia.descartada) {
+                    porEscribir.add(transferencia);
+                }
+            }
+            Set<Transferencia> rechazadas;
+            while (!(rechazadas = escribir(porEscribir)).isEmpty()) {
+                List<Transferencia> validas = new ArrayList<>(porEscribir.size());
+                for (Transferencia transferencia : porEscribir) {
+                    if (rechazadas.contains(transferencia)) {
+                        descartar(transferencia);
+                    } else {
+                        validas.add(transferencia);
+                    }
+                }
+                porEscribir = validas;
+            }
+            for (Transferencia transferencia : porEscribir) {
+                cambiarPendiente(transferencia.origen, transferencia.centavos);
+                cambiarPendiente(transferencia.destino, -transferencia.centavos);
+                pendientes.get(transferencia.bancoId).decrement();
+            }
+        } finally {
+            escritura.writeLock().unlock();
+        }
+        escritas.addAndGet(lote.size());
+        lote.forEach(this::cerrarEtapa);
+
+    }
+
+    /**
+     * @return las transferencias que no se pueden escribir, si hay alguna la transaccion se deshizo
+     */
+    private Set<Transferencia> escribir(List<Transferencia> lote) {
+
+        if (lote.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Map<Long, Long> diferencias = new TreeMap<>();
+        Map<Long, Integer> porBanco = new TreeMap<>();
+        List<TransaccionDTO> movimientos = new ArrayList<>(lote.size());
+        List<Transferencia> encoladas = new ArrayList<>();
+        for (Transferencia transferencia : lote) {
+            if (transferencia.encoladaId != null) {
+                encoladas.add(transferencia);
+            }
+            diferencias.merge(transferencia.origen, -transferencia.centavos, Centavos::sumar);
+            diferencias.merge(transferencia.destino, transferencia.centavos, Centavos::sumar);
+            porBanco.merge(transferencia.bancoId, 1, Integer::sum);
+            movimientos.add(TransaccionDTO.builder()
+                    .bancoDestinoId(transferencia.bancoId)
+                    .cuentaOrigenId(transferencia.origen)
+                    .cuentaDestinoId(transferencia.destino)
+                    .monto(transferencia.monto)
+                    .build());
+        }
+
+        return Objects.requireNonNull(transactionTemplate.execute(status -> {
+            //El numero de cambio se toma dentro de la transaccion que escribe la fila
+            List<Long> cuentas = new ArrayList<>(diferencias.size());
+            List<Object[]> actualizaciones = new ArrayList<>(diferencias.size());
+            //modificado con el reloj de la aplicacion, igual que Cuenta.antesDeGuardar
+            Timestamp modificado = Timestamp.from(Instant.now());
+            diferencias.forEach((cuentaId, centavos) -> {
+                if (centavos != 0) {
+                    cuentas.add(cuentaId);
+                    actualizaciones.add(new Object[]{BigDecimal.valueOf(centavos, Centavos.ESCALA),
+                            modificado, secuenciaCambios.siguiente(), cuentaId});
+                }
+            });
+            Set<Long> inexistentes = new HashSet<>();
+            if (!actualizaciones.isEmpty()) {
+                int[] filas = jdbcTemplate.batchUpdate(ACTUALIZAR_SALDO, actualizaciones);
+                for (int i = 0; i < filas.length; i++) {
+                    if (!unaFila(filas[i])) {
+                        inexistentes.add(cuentas.get(i));
+                    }
+                }
+            }
+            Set<Transferencia> rechazadas = new HashSet<>();
+            for (Transferencia transferencia : lote) {
+                if (inexistentes.contains(transferencia.origen) || inexistentes.contains(transferencia.destino)) {
+                    rechazadas.add(transferencia);
+                }
+            }
+            if (!encoladas.isEmpty()) {
+                Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+                List<Object[]> marcas = new ArrayList<>(encoladas.size());
+                for (Transferencia transferencia : encoladas) {
+                    marcas.add(new Object[]{"Transferencia realizada con éxito!", ahora, transferencia.encoladaId});
+                }
+                int[] filas = jdbcTemplate.batchUpdate(MARCAR_ENCOLADA, marcas);
+                for (int i = 0; i < filas.length; i++) {
+                    if (!unaFila(filas[i])) {
+                        rechazadas.add(encoladas.get(i));
+                    }
+                }
+            }
+            if (!rechazadas.isEmpty()) {
+                status.setRollbackOnly();
+                return rechazadas;
+            }
+            movimientoService.registrarTransferencias(movimientos);
+            porBanco.forEach(contadorService::incrementar);
+            cuentaService.invalidar(diferencias.keySet());
+            return rechazadas;
+        }));
+
+    }
+
+    /**
+     * SUCCESS_NO_INFO: el driver no informa la cantidad, no hay como revisarla
+     */
+    private static boolean unaFila(int filas) {
+        return filas == 1 || filas == Statement.SUCCESS_NO_INFO;
+    }
+
+    /**
+     * La transferencia ya se respondio como hecha pero no se puede escribir: el monto deja de estar
+     * pendiente y ambas cuentas se recargan, la que existe vuelve a tener su saldo de la base
+     */
+    private void descartar(Transferencia transferencia) {
+
+        log.error("Se descarta la transferencia de {} centavos de la cuenta {} a la {}: una de las cuentas "
+                        + "se elimino o la fila {} de la cola ya no estaba EN_PROCESO antes de escribirla",
+                transferencia.centavos, transferencia.origen, transferencia.destino, transferencia.encoladaId);
+        transferencia.descartada = true;
+        cambiarPendiente(transferencia.origen, transferencia.centavos);
+        cambiarPendiente(transferencia.destino, -transferencia.centavos);
+        pendientes.get(transferencia.bancoId).decrement();
+        particionDe(transferencia.origen).recargar(transferencia.origen);
+        particionDe(transferencia.destino).recargar(transferencia.destino);
+
+    }
+
+    /**
+     * Reserva un lugar entre las transferencias retenidas, esperando a que el escritor libere alguno
+     */
+    private void admitir() {
+
+        long limite = System.nanoTime() + esperaAdmisionNanos;
+        while (retenidas.incrementAndGet() > maximoRetenidas) {
+            retenidas.decrementAndGet();
+            if (!aceptando) {
+                throw new IllegalStateException("El motor de transferencias esta detenido");
+            }
+            if (System.nanoTime() - limite >= 0) {
+                throw new ColaTransferenciasLlenaException("El motor de transferencias esta lleno");
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+    }
+
+    private void cerrarEtapa(Transferencia transferencia) {
+        if (transferencia.etapas.decrementAndGet() == 0) {
+            if (transferencia.encoladaId != null) {
+                encoladasEnVuelo.remove(transferencia.encoladaId);
+            }
+            retenidas.decrementAndGet();
+        }
+    }
+
+    private void iniciar(Runnable tarea, String nombre) {
+        Thread hilo = new Thread(tarea, nombre);
+        hilo.setDaemon(true);
+        hilo.start();
+        hilos.add(hilo);
+    }
+
+    private static void unir(List<Thread> hilos, long limite) {
+        for (Thread hilo : hilos) {
+            try {
+                hilo.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
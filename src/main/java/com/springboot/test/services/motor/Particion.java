@@ -0,0 +1,302 @@
+package com.springboot.test.services.motor;
+
+import com.springboot.test.exceptions.DineroInsuficienteException;
+import com.springboot.test.models.Centavos;
+import com.springboot.test.services.motor.Transferencia.Paso;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Un hilo que es el unico dueño de los saldos de sus cuentas: los lee de la base la primera vez
+ * (y de nuevo si la cuenta se modifico por fuera del motor) y aplica debitos y creditos en el orden
+ * en que llegan, sin bloqueos.
+ * Los mensajes para otras particiones o para el escritor que no caben en su anillo esperan
+ * en una cola local; la particion nunca se bloquea esperando a otra, asi dos particiones
+ * con los anillos llenos no se quedan esperando una a la otra. Las colas locales estan acotadas
+ * porque el motor no admite mas de maximoRetenidas transferencias a la vez.
+ */
+final class Particion implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(Particion.class);
+    private static final long PAUSA_NANOS = 1_000_000;
+
+    private final MotorTransferencias motor;
+    private final AnilloMpsc<Transferencia> entrada;
+    private final Map<Long, Saldo> saldos = new HashMap<>();
+    private final ArrayDeque<Transferencia> porEnviar = new ArrayDeque<>();
+    private final ArrayDeque<Transferencia> porEscribir = new ArrayDeque<>();
+    //Cuentas modificadas por fuera del motor, las agregan otros hilos
+    private final ConcurrentLinkedQueue<Long> porRecargar = new ConcurrentLinkedQueue<>();
+    private volatile boolean activa = true;
+    private volatile boolean durmiendo;
+    private volatile Thread hilo;
+
+    Particion(MotorTransferencias motor, int capacidad) {
+        this.motor = motor;
+        this.entrada = new AnilloMpsc<>(capacidad);
+    }
+
+    boolean ofrecer(Transferencia transferencia) {
+
+        if (!entrada.ofrecer(transferencia)) {
+            return false;
+        }
+        if (durmiendo) {
+            LockSupport.unpark(hilo);
+        }
+        return true;
+
+    }
+
+    void detener() {
+        activa = false;
+        LockSupport.unpark(hilo);
+    }
+
+    /**
+     * Desde cualquier hilo: el saldo de la cuenta se vuelve a leer la proxima vez que se use
+     */
+    void recargar(Long cuentaId) {
+        porRecargar.add(cuentaId);
+    }
+
+    @Override
+    public void run() {
+
+        hilo = Thread.currentThread();
+        int vueltasVacias = 0;
+        while (activa || !entrada.vacio() || !porEnviar.isEmpty() || !porEscribir.isEmpty()) {
+            reintentarEnvios();
+            Transferencia transferencia = entrada.sacar();
+            if (transferencia == null) {
+                esperar(++vueltasVacias);
+                continue;
+            }
+            vueltasVacias = 0;
+            //Despues de sacar el mensaje: una cuenta marcada antes de enviarlo ya esta en la cola
+            marcarVencidos();
+            try {
+                procesar(transferencia);
+            } catch (RuntimeException e) {
+                log.error("Error al procesar la transferencia de la cuenta {}", transferencia.origen, e);
+                fallarPaso(transferencia, e);
+            }
+        }
+
+    }
+
+    private void procesar(Transferencia transferencia) {
+
+        switch (transferencia.paso) {
+            case RESERVAR:
+                reservar(transferencia);
+                break;
+            case ACREDITAR:
+                acreditar(transferencia);
+                break;
+            case CONFIRMAR:
+                confirmar(transferencia);
+                break;
+            default:
+                liberar(transferencia);
+        }
+
+    }
+
+    private void reservar(Transferencia transferencia) {
+
+        Saldo origen = saldo(transferencia.origen);
+        if (origen == null) {
+            fallar(transferencia, new NoSuchElementException("No existe la cuenta " + transferencia.origen));
+            return;
+        }
+        if (transferencia.centavos > origen.disponible) {
+            fallar(transferencia, new DineroInsuficienteException("Dinero insuficiente en la cuenta"));
+            return;
+        }
+
+        origen.disponible = Centavos.restar(origen.disponible, transferencia.centavos);
+        origen.reservado += transferencia.centavos;
+        motor.cambiarPendiente(transferencia.origen, -transferencia.centavos);
+        transferencia.paso = Paso.ACREDITAR;
+        enviar(transferencia);
+
+    }
+
+    private void acreditar(Transferencia transferencia) {
+
+        Saldo destino = saldo(transferencia.destino);
+        if (destino == null) {
+            transferencia.paso = Paso.LIBERAR;
+            enviar(transferencia);
+            return;
+        }
+
+        destino.disponible = Centavos.sumar(destino.disponible, transferencia.centavos);
+        motor.cambiarPendiente(transferencia.destino, transferencia.centavos);
+        //La transferencia ya esta hecha en memoria: se encola para escribirla y se responde.
+        //Se cuenta como aplicada antes de encolarla, el escritor podria escribirla en el acto.
+        motor.aplicada(transferencia);
+        escribir(transferencia);
+        transferencia.resultado.complete(null);
+
+        transferencia.paso = Paso.CONFIRMAR;
+        enviar(transferencia);
+
+    }
+
+    private void confirmar(Transferencia transferencia) {
+
+        Saldo origen = saldos.get(transferencia.origen);
+        //null si la cuenta se elimino mientras tanto
+        if (origen != null) {
+            origen.reservado -= transferencia.centavos;
+        }
+        motor.terminar(transferencia);
+
+    }
+
+    private void liberar(Transferencia transferencia) {
+
+        //Si el saldo se recarga aqui, lo pendiente aun incluye la reserva y se devuelve en ambos
+        Saldo origen = saldo(transferencia.origen);
+        if (origen != null) {
+            origen.reservado -= transferencia.centavos;
+            origen.disponible = Centavos.sumar(origen.disponible, transferencia.centavos);
+        }
+        motor.cambiarPendiente(transferencia.origen, transferencia.centavos);
+        fallar(transferencia, transferencia.causa != null
+                ? transferencia.causa
+                : new NoSuchElementException("No existe la cuenta " + transferencia.destino));
+
+    }
+
+    /**
+     * Si fallo el credito el origen tiene el monto reservado y hay que devolverlo
+     */
+    private void fallarPaso(Transferencia transferencia, RuntimeException causa) {
+
+        if (transferencia.paso == Paso.ACREDITAR) {
+            transferencia.causa = causa;
+            transferencia.paso = Paso.LIBERAR;
+            enviar(transferencia);
+        } else if (transferencia.paso == Paso.RESERVAR) {
+            fallar(transferencia, causa);
+        }
+
+    }
+
+    private void fallar(Transferencia transferencia, RuntimeException causa) {
+        motor.terminar(transferencia);
+        transferencia.resultado.completeExceptionally(causa);
+    }
+
+    /**
+     * Los pasos de cuentas de esta misma particion se procesan en el acto
+     */
+    private void enviar(Transferencia transferencia) {
+
+        Particion siguiente = motor.particionDe(transferencia.cuentaDelPaso());
+        if (siguiente == this) {
+            procesar(transferencia);
+        } else if (!porEnviar.isEmpty() || !siguiente.ofrecer(transferencia)) {
+            porEnviar.addLast(transferencia);
+        }
+
+    }
+
+    private void escribir(Transferencia transferencia) {
+        if (!porEscribir.isEmpty() || !motor.escritor().ofrecer(transferencia)) {
+            porEscribir.addLast(transferencia);
+        }
+    }
+
+    private void reintentarEnvios() {
+
+        while (!porEnviar.isEmpty()
+                && motor.particionDe(porEnviar.peekFirst().cuentaDelPaso()).ofrecer(porEnviar.peekFirst())) {
+            porEnviar.removeFirst();
+        }
+        while (!porEscribir.isEmpty() && motor.escritor().ofrecer(porEscribir.peekFirst())) {
+            porEscribir.removeFirst();
+        }
+
+    }
+
+    private void marcarVencidos() {
+
+        Long cuentaId;
+        while ((cuentaId = porRecargar.poll()) != null) {
+            Saldo saldo = saldos.get(cuentaId);
+            if (saldo != null) {
+                saldo.vencido = true;
+            }
+        }
+
+    }
+
+    /**
+     * La primera vez que la particion ve una cuenta, o si se modifico por fuera del motor, lee su saldo
+     * de la base (mas lo pendiente de escribir). Las cuentas que no existen no se recuerdan, podrian crearse despues.
+     */
+    private Saldo saldo(Long cuentaId) {
+
+        Saldo saldo = saldos.get(cuentaId);
+        if (saldo != null && !saldo.vencido) {
+            return saldo;
+        }
+        Long centavos = motor.cargarSaldo(cuentaId);
+        if (centavos == null) {
+            saldos.remove(cuentaId);
+            return null;
+        }
+        if (saldo == null) {
+            saldo = new Saldo(centavos);
+            saldos.put(cuentaId, saldo);
+        } else {
+            saldo.disponible = centavos;
+            saldo.vencido = false;
+        }
+        return saldo;
+
+    }
+
+    private void esperar(int vueltasVacias) {
+
+        if (vueltasVacias < 100) {
+            Thread.onSpinWait();
+        } else if (vueltasVacias < 200) {
+            Thread.yield();
+        } else {
+            durmiendo = true;
+            if (entrada.vacio() && porEnviar.isEmpty() && porEscribir.isEmpty()) {
+                LockSupport.parkNanos(PAUSA_NANOS);
+            }
+            durmiendo = false;
+        }
+
+    }
+
+    private static final class Saldo {
+
+        //Centavos que se pueden transferir
+        long disponible;
+        //Centavos descontados de transferencias a otra particion que aun no se confirman
+        long reservado;
+        //La cuenta se modifico por fuera del motor, disponible se vuelve a leer antes de usarlo
+        boolean vencido;
+
+        Saldo(long disponible) {
+            this.disponible = disponible;
+        }
+
+    }
+
+}
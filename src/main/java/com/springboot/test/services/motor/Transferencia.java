@@ -0,0 +1,59 @@
+package com.springboot.test.services.motor;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mensaje que recorre las particiones. Solo una particion lo tiene a la vez, el anillo
+ * publica sus cambios (paso) a la siguiente.
+ */
+final class Transferencia {
+
+    enum Paso {
+
+        //En la particion de origen: se descuenta el monto y queda reservado
+        RESERVAR,
+        //En la particion de destino: se acredita, la transferencia queda hecha
+        ACREDITAR,
+        //En la particion de origen: se cierra la reserva
+        CONFIRMAR,
+        //En la particion de origen: el destino no existe, se devuelve lo reservado
+        LIBERAR
+
+    }
+
+    final Long bancoId;
+    final Long origen;
+    final Long destino;
+    final BigDecimal monto;
+    final long centavos;
+    //Fila de transferencias_encoladas que se marca REALIZADA al escribir, null si no viene de la cola
+    final Long encoladaId;
+    final CompletableFuture<Void> resultado = new CompletableFuture<>();
+    //El recorrido por las particiones y, si se aplico, la escritura; el motor la retiene hasta cerrar ambas
+    final AtomicInteger etapas = new AtomicInteger(1);
+    Paso paso = Paso.RESERVAR;
+    //Error al acreditar, se informa despues de liberar la reserva
+    RuntimeException causa;
+    //Solo la usa el escritor: no se pudo escribir (una de las cuentas ya no existia o la fila de la cola
+    //ya no estaba EN_PROCESO) y se devolvio el monto
+    boolean descartada;
+
+    Transferencia(Long bancoId, Long origen, Long destino, BigDecimal monto, long centavos, Long encoladaId) {
+        this.bancoId = bancoId;
+        this.origen = origen;
+        this.destino = destino;
+        this.monto = monto;
+        this.centavos = centavos;
+        this.encoladaId = encoladaId;
+    }
+
+    /**
+     * La cuenta que debe procesar el paso actual
+     */
+    Long cuentaDelPaso() {
+        return paso == Paso.ACREDITAR ? destino : origen;
+    }
+
+}
@@ -1,3 +1,6 @@
-INSERT INTO cuentas (persona, saldo) VALUES ('Andrés', 1000);
-INSERT INTO cuentas (persona, saldo) VALUES ('John', 2000);
-INSERT INTO bancos (nombre, total_transferencias) VALUES ('El banco financiero', 0);
\ No newline at end of file
+INSERT INTO cuentas (id, persona, persona_normalizada, saldo, version, cambio) VALUES (1, 'Andrés', 'andres', 1000, 0, 1);
+INSERT INTO cuentas (id, persona, persona_normalizada, saldo, version, cambio) VALUES (2, 'John', 'john', 2000, 0, 2);
+INSERT INTO bancos (id, nombre, version) VALUES (1, 'El banco financiero', 0);
+ALTER SEQUENCE cuentas_seq RESTART WITH 3;
+ALTER SEQUENCE bancos_seq RESTART WITH 2;
+CREATE SEQUENCE IF NOT EXISTS cambios_cuentas_seq START WITH 3 INCREMENT BY 50;
@@ -0,0 +1,80 @@
+package com.springboot.test;
+
+import com.springboot.test.repositories.BancoRepository;
+import com.springboot.test.services.IBancoService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.cache.bancos.estadisticas=true",
+        "spring.datasource.url=jdbc:h2:mem:cache-bancos;DB_CLOSE_DELAY=-1"
+})
+class CacheBancosTest {
+
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    BancoRepository bancoRepository;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testTransferirNoInvalidaElBancoCacheado() {
+
+        //Given
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        CacheRegionStatistics region = estadisticas.getDomainDataRegionStatistics("bancos");
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+        long aciertosIniciales = region.getHitCount();
+
+        //When
+        int totalRepetido = bancoService.revisarTotalTransferencias(1L);
+        long fallosAntes = region.getMissCount();
+        long escriturasAntes = region.getPutCount();
+        bancoService.transferir(1L, 1L, 2L, BigDecimal.TEN);
+        int totalDespues = bancoService.revisarTotalTransferencias(1L);
+
+        //Then
+        assertEquals(totalInicial, totalRepetido);
+        assertTrue(region.getHitCount() > aciertosIniciales);
+        //El contador esta en contadores_transferencias: la transferencia no reemplaza ni invalida la entrada
+        assertEquals(fallosAntes, region.getMissCount());
+        assertEquals(escriturasAntes, region.getPutCount());
+        assertEquals(totalInicial + 1, totalDespues);
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "bancos").tag("result", "hit")
+                .functionCounter().count() > 0);
+
+    }
+
+    @Test
+    void testConsultaDeBancosCacheada() {
+
+        //Given
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        bancoRepository.findAll();
+        long aciertosIniciales = estadisticas.getQueryCacheHitCount();
+
+        //When
+        int bancos = bancoRepository.findAll().size();
+
+        //Then
+        assertEquals(1, bancos);
+        assertEquals(aciertosIniciales + 1, estadisticas.getQueryCacheHitCount());
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "consultas").tag("result", "hit")
+                .functionCounter().count() > 0);
+
+    }
+
+}
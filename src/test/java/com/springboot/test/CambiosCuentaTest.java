@@ -0,0 +1,194 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.CambioCuentaDTO;
+import com.springboot.test.dto.CambiosCuentasDTO;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.repositories.InstanciaCambiosRepository;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.ISecuenciaCambiosService;
+import com.springboot.test.services.SecuenciaCambiosServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:cambios;DB_CLOSE_DELAY=-1")
+class CambiosCuentaTest {
+
+    @Autowired
+    ICuentaService cuentaService;
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    ISecuenciaCambiosService secuenciaCambios;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    InstanciaCambiosRepository instanciaRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testAltasModificacionesYBajas() {
+
+        //Given
+        long desde = secuenciaCambios.horizonte();
+        Long origen = crearCuenta("1000");
+        Long destino = crearCuenta("0");
+
+        //When
+        bancoService.transferir(1L, origen, destino, new BigDecimal("100"));
+        cuentaService.deleteByid(destino);
+        CambiosCuentasDTO resultado = cuentaService.findCambios(desde, 100);
+
+        //Then
+        //Cada cuenta aparece una vez con su ultimo cambio, la eliminada sin datos
+        assertEquals(2, resultado.getCambios().size());
+        CambioCuentaDTO modificada = resultado.getCambios().get(0);
+        assertEquals(origen, modificada.getCuentaId());
+        assertFalse(modificada.isEliminada());
+        assertEquals(0, new BigDecimal("900").compareTo(modificada.getCuenta().getSaldo()));
+        CambioCuentaDTO eliminada = resultado.getCambios().get(1);
+        assertEquals(destino, eliminada.getCuentaId());
+        assertTrue(eliminada.isEliminada());
+        assertNull(eliminada.getCuenta());
+        assertTrue(modificada.getCambio() < eliminada.getCambio());
+        assertFalse(resultado.isHayMas());
+        assertEquals(eliminada.getCambio().longValue(), resultado.getSiguiente());
+
+        //Sin escrituras nuevas no hay cambios
+        assertTrue(cuentaService.findCambios(resultado.getSiguiente(), 100).getCambios().isEmpty());
+
+    }
+
+    @Test
+    void testRecorrerPorPaginas() {
+
+        //Given
+        long desde = secuenciaCambios.horizonte();
+        List<Long> creadas = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            creadas.add(crearCuenta("10"));
+        }
+
+        //When
+        List<Long> recibidas = new ArrayList<>();
+        CambiosCuentasDTO pagina;
+        int paginas = 0;
+        do {
+            pagina = cuentaService.findCambios(desde, 2);
+            pagina.getCambios().forEach(cambio -> recibidas.add(cambio.getCuentaId()));
+            desde = pagina.getSiguiente();
+            paginas++;
+        } while (pagina.isHayMas());
+
+        //Then
+        assertEquals(creadas, recibidas);
+        assertEquals(3, paginas);
+
+    }
+
+    @Test
+    void testNoAvanzaMasAllaDeUnaTransaccionEnCurso() throws Exception {
+
+        //Given
+        long desde = secuenciaCambios.horizonte();
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        CountDownLatch guardada = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        //When
+        //La primera cuenta toma el numero menor pero hace commit despues que la segunda
+        Future<Long> lenta = executor.submit(() -> transaccion.execute(status -> {
+            Long id = crearCuenta("1");
+            guardada.countDown();
+            try {
+                terminar.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return id;
+        }));
+        assertTrue(guardada.await(10, TimeUnit.SECONDS));
+        Long rapida = crearCuenta("2");
+        CambiosCuentasDTO durante = cuentaService.findCambios(desde, 100);
+
+        terminar.countDown();
+        Long primera = lenta.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        CambiosCuentasDTO despues = cuentaService.findCambios(desde, 100);
+
+        //Then
+        //La segunda ya hizo commit, pero entregarla permitiria saltarse la primera
+        assertTrue(durante.getCambios().isEmpty());
+        assertEquals(desde, durante.getSiguiente());
+        assertEquals(List.of(primera, rapida), despues.getCambios().stream()
+                .map(CambioCuentaDTO::getCuentaId)
+                .collect(Collectors.toList()));
+
+    }
+
+    @Test
+    void testNoAvanzaMasAllaDeOtraInstancia() throws Exception {
+
+        //Given
+        SecuenciaCambiosServiceImpl otraInstancia = new SecuenciaCambiosServiceImpl(instanciaRepository, jdbcTemplate,
+                entityManagerFactory, transactionManager);
+        //Al ver la otra instancia esta deja su bloque y reserva uno posterior al de la otra
+        secuenciaCambios.horizonte();
+        ((SecuenciaCambiosServiceImpl) secuenciaCambios).reportar();
+        long desde = secuenciaCambios.horizonte();
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        //When
+        //La otra instancia toma un numero y su transaccion sigue en curso mientras esta escribe
+        CambiosCuentasDTO durante = transaccion.execute(status -> {
+            long numero = otraInstancia.siguiente();
+            otraInstancia.reportar();
+            try {
+                Long cuenta = executor.submit(() -> crearCuenta("3")).get(10, TimeUnit.SECONDS);
+                assertTrue(cuentaService.findById(cuenta).getCambio() > numero);
+                return executor.submit(() -> cuentaService.findCambios(desde, 100)).get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        otraInstancia.reportar();
+        CambiosCuentasDTO despues = cuentaService.findCambios(desde, 100);
+        otraInstancia.destroy();
+        executor.shutdown();
+
+        //Then
+        assertNotNull(durante);
+        assertTrue(durante.getCambios().isEmpty());
+        assertEquals(1, despues.getCambios().size());
+        //Al detenerse la otra instancia borra su reporte
+        assertEquals(1, instanciaRepository.count());
+        ((SecuenciaCambiosServiceImpl) secuenciaCambios).reportar();
+
+    }
+
+    private Long crearCuenta(String saldo) {
+        return cuentaService.guardar(Cuenta.builder()
+                .persona("Cambios")
+                .saldo(new BigDecimal(saldo))
+                .build()).getId();
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.springboot.test;
+
+import com.springboot.test.exceptions.DineroInsuficienteException;
+import com.springboot.test.models.Centavos;
+import com.springboot.test.models.Cuenta;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CentavosTest {
+
+    @Test
+    void testRedondeoBancario() {
+        assertEquals(12L, Centavos.de(new BigDecimal("0.125")));
+        assertEquals(14L, Centavos.de(new BigDecimal("0.135")));
+        assertEquals(13L, Centavos.de(new BigDecimal("0.1251")));
+        assertEquals(-12L, Centavos.de(new BigDecimal("-0.125")));
+        assertEquals(100000L, Centavos.de(new BigDecimal("1000")));
+        assertEquals(100050L, Centavos.de(new BigDecimal("1000.5")));
+    }
+
+    @Test
+    void testEscalaConservada() {
+        assertEquals("900", Centavos.aBigDecimal(90000L, 0).toPlainString());
+        assertEquals("900.0", Centavos.aBigDecimal(90000L, 1).toPlainString());
+        assertEquals("900.50", Centavos.aBigDecimal(90050L, 0).toPlainString());
+        assertEquals("0.12", Centavos.aBigDecimal(12L, 5).toPlainString());
+    }
+
+    @Test
+    void testDesbordamiento() {
+        assertThrows(ArithmeticException.class, () -> Centavos.de(BigDecimal.valueOf(Long.MAX_VALUE)));
+        assertThrows(ArithmeticException.class, () -> Centavos.sumar(Long.MAX_VALUE, 1L));
+        assertThrows(ArithmeticException.class, () -> Centavos.restar(Long.MIN_VALUE, 1L));
+    }
+
+    @Test
+    void testDebitoYCreditoConMasDecimalesQueLaMoneda() {
+
+        Cuenta cuenta = Cuenta.builder().persona("Andrés").saldo(new BigDecimal("1000")).build();
+
+        cuenta.debito(new BigDecimal("100.125"));
+        assertEquals("899.88", cuenta.getSaldo().toPlainString());
+
+        cuenta.credito(new BigDecimal("0.005"));
+        assertEquals("899.88", cuenta.getSaldo().toPlainString());
+
+        cuenta.credito(new BigDecimal("0.12"));
+        assertEquals("900.00", cuenta.getSaldo().toPlainString());
+
+        //900.004 se redondea a 900.00, alcanza justo
+        cuenta.debito(new BigDecimal("900.004"));
+        assertEquals(0, BigDecimal.ZERO.compareTo(cuenta.getSaldo()));
+
+        assertThrows(DineroInsuficienteException.class, () -> cuenta.debito(new BigDecimal("0.01")));
+    }
+
+}
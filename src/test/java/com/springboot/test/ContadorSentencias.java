@@ -0,0 +1,164 @@
+package com.springboot.test;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envuelve el DataSource y cuenta todo lo que llega a la base de datos: las sentencias de hibernate
+ * y tambien las de JdbcTemplate (secuencias, escrituras sin entidades), que las estadisticas de
+ * hibernate no ven. Un executeBatch es un solo viaje a la base aunque lleve varias sentencias.
+ * Solo cuenta en el hilo que llamo a reiniciar, asi las tareas programadas no alteran la medicion.
+ * Se registra en una prueba con @Import(ContadorSentencias.class).
+ */
+public class ContadorSentencias implements BeanPostProcessor {
+
+    private final AtomicLong viajes = new AtomicLong();
+    private final AtomicLong sentencias = new AtomicLong();
+    private final AtomicLong consultas = new AtomicLong();
+    private final AtomicLong secuencias = new AtomicLong();
+    private volatile Thread hilo;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource) {
+            return envolver(DataSource.class, bean, (metodo, resultado, args) ->
+                    resultado instanceof Connection ? envolver(Connection.class, resultado, this::conexion) : resultado);
+        }
+        return bean;
+    }
+
+    public void reiniciar() {
+        hilo = Thread.currentThread();
+        viajes.set(0);
+        sentencias.set(0);
+        consultas.set(0);
+        secuencias.set(0);
+    }
+
+    public Medicion medicion() {
+        return new Medicion(viajes.get(), sentencias.get(), consultas.get(), secuencias.get());
+    }
+
+    private Object conexion(String metodo, Object resultado, Object[] args) {
+        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+        if (resultado instanceof CallableStatement) {
+            return envolver(CallableStatement.class, resultado, sentencia(sql));
+        }
+        if (resultado instanceof PreparedStatement) {
+            return envolver(PreparedStatement.class, resultado, sentencia(sql));
+        }
+        if (resultado instanceof Statement) {
+            return envolver(Statement.class, resultado, sentencia(null));
+        }
+        return resultado;
+    }
+
+    private Interceptor sentencia(String sqlPreparado) {
+        AtomicInteger enBatch = new AtomicInteger();
+        return (metodo, resultado, args) -> {
+            if (Thread.currentThread() != hilo) {
+                return resultado;
+            }
+            switch (metodo) {
+                case "addBatch":
+                    enBatch.incrementAndGet();
+                    break;
+                case "executeBatch":
+                case "executeLargeBatch":
+                    viajes.incrementAndGet();
+                    sentencias.addAndGet(enBatch.getAndSet(0));
+                    break;
+                case "execute":
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    viajes.incrementAndGet();
+                    sentencias.incrementAndGet();
+                    String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sqlPreparado;
+                    String texto = sql == null ? "" : sql.trim().toLowerCase(Locale.ROOT);
+                    if (texto.contains("next value for") || texto.contains("nextval")) {
+                        secuencias.incrementAndGet();
+                    } else if (texto.startsWith("select")) {
+                        consultas.incrementAndGet();
+                    }
+                    break;
+                default:
+            }
+            return resultado;
+        };
+    }
+
+    /**
+     * Llama al metodo real y deja que el interceptor reemplace o registre el resultado
+     */
+    private static <T> T envolver(Class<T> tipo, Object objetivo, Interceptor interceptor) {
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            Object resultado;
+            try {
+                resultado = metodo.invoke(objetivo, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            return interceptor.despues(metodo.getName(), resultado, args);
+        };
+        return tipo.cast(Proxy.newProxyInstance(ContadorSentencias.class.getClassLoader(), new Class<?>[]{tipo}, manejador));
+    }
+
+    private interface Interceptor {
+        Object despues(String metodo, Object resultado, Object[] args);
+    }
+
+    /**
+     * Viajes a la base, sentencias ejecutadas (cada una de un batch cuenta), y de ellas cuantas son
+     * SELECT y cuantas piden un valor de una secuencia
+     */
+    public static final class Medicion {
+
+        private final long viajes;
+        private final long sentencias;
+        private final long consultas;
+        private final long secuencias;
+
+        Medicion(long viajes, long sentencias, long consultas, long secuencias) {
+            this.viajes = viajes;
+            this.sentencias = sentencias;
+            this.consultas = consultas;
+            this.secuencias = secuencias;
+        }
+
+        public long getViajes() {
+            return viajes;
+        }
+
+        public long getSentencias() {
+            return sentencias;
+        }
+
+        public long getConsultas() {
+            return consultas;
+        }
+
+        public long getSecuencias() {
+            return secuencias;
+        }
+
+        @Override
+        public String toString() {
+            return viajes + " viajes, " + sentencias + " sentencias, " + consultas + " consultas, "
+                    + secuencias + " secuencias";
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.springboot.test;
+
+import com.springboot.test.repositories.ContadorTransferenciaRepository;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.IContadorTransferenciaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * vaciado-ms muy alto para que el vaciado solo ocurra cuando lo llama la prueba
+ */
+@SpringBootTest(properties = {
+        "app.transferencias.contador.modo=memoria",
+        "app.transferencias.contador.vaciado-ms=3600000",
+        "spring.datasource.url=jdbc:h2:mem:contador;DB_CLOSE_DELAY=-1"
+})
+class ContadorTransferenciaTest {
+
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    IContadorTransferenciaService contadorService;
+    @Autowired
+    ContadorTransferenciaRepository contadorRepository;
+
+    @Test
+    void testTotalExactoAntesYDespuesDelVaciado() {
+
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+
+        bancoService.transferir(1L, 1L, 2L, BigDecimal.TEN);
+        bancoService.transferir(1L, 2L, 1L, BigDecimal.TEN);
+        bancoService.transferir(1L, 1L, 2L, BigDecimal.TEN);
+
+        //Las transferencias aun estan en memoria
+        assertEquals(0L, contadorRepository.sumarPorBanco(1L));
+        assertEquals(totalInicial + 3, bancoService.revisarTotalTransferencias(1L));
+
+        contadorService.vaciar();
+
+        //Despues del vaciado estan en los slots y el total no cambia
+        assertEquals(3L, contadorRepository.sumarPorBanco(1L));
+        assertEquals(totalInicial + 3, bancoService.revisarTotalTransferencias(1L));
+
+    }
+
+}
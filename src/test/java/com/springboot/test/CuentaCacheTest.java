@@ -0,0 +1,85 @@
+package com.springboot.test;
+
+import com.springboot.test.repositories.CuentaRepository;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.cache.cuentas.habilitado=true",
+        "app.cache.cuentas.ttl=1h",
+        "spring.datasource.url=jdbc:h2:mem:cache;DB_CLOSE_DELAY=-1"
+})
+class CuentaCacheTest {
+
+    @Autowired
+    ICuentaService cuentaService;
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    CuentaRepository cuentaRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testSaldoActualizadoDespuesDeTransferir() {
+
+        BigDecimal saldoOrigen = cuentaService.revisarSaldo(1L);
+        BigDecimal saldoDestino = cuentaService.revisarSaldo(2L);
+
+        //La segunda lectura se obtiene de la cache
+        assertEquals(saldoOrigen, cuentaService.revisarSaldo(1L));
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "cuentas").tag("result", "hit")
+                .functionCounter().count() >= 1);
+
+        bancoService.transferir(1L, 1L, 2L, BigDecimal.TEN);
+
+        assertEquals(0, saldoOrigen.subtract(BigDecimal.TEN).compareTo(cuentaService.revisarSaldo(1L)));
+        assertEquals(0, saldoDestino.add(BigDecimal.TEN).compareTo(cuentaService.revisarSaldo(2L)));
+
+    }
+
+    @Test
+    void testLecturasConcurrentesNoDejanSaldosViejos() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean transfiriendo = new AtomicBoolean(true);
+        List<Future<?>> lectores = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            lectores.add(executor.submit(() -> {
+                while (transfiriendo.get()) {
+                    cuentaService.revisarSaldo(1L);
+                    cuentaService.revisarSaldo(2L);
+                }
+            }));
+        }
+
+        for (int i = 0; i < 50; i++) {
+            bancoService.transferir(1L, i % 2 == 0 ? 1L : 2L, i % 2 == 0 ? 2L : 1L, BigDecimal.ONE);
+        }
+        transfiriendo.set(false);
+        for (Future<?> lector : lectores) {
+            lector.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //Lo que devuelve la cache debe coincidir con lo que tiene la base de datos
+        assertEquals(0, cuentaRepository.findById(1L).orElseThrow().getSaldo().compareTo(cuentaService.revisarSaldo(1L)));
+        assertEquals(0, cuentaRepository.findById(2L).orElseThrow().getSaldo().compareTo(cuentaService.revisarSaldo(2L)));
+
+    }
+
+}
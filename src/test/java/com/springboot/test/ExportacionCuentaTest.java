@@ -0,0 +1,111 @@
+package com.springboot.test;
+
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.IExportacionCuentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Grupos de 2 filas para que el formato binario escriba mas de un grupo
+ */
+@SpringBootTest(properties = {
+        "app.exportacion.filas-por-grupo=2",
+        "spring.datasource.url=jdbc:h2:mem:exportacion;DB_CLOSE_DELAY=-1"
+})
+class ExportacionCuentaTest {
+
+    @Autowired
+    IExportacionCuentaService exportacionService;
+    @Autowired
+    ICuentaService cuentaService;
+
+    @Test
+    void testExportarCsvYBinario() throws IOException {
+
+        Cuenta perez = cuentaService.guardar(Cuenta.builder().persona("Pérez, \"Ana\"").saldo(new BigDecimal("1500.25")).build());
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(3, exportacionService.exportarCsv(csv, null, null));
+        assertEquals("id,persona,saldo\n" +
+                "1,Andrés,1000.00\n" +
+                "2,John,2000.00\n" +
+                perez.getId() + ",\"Pérez, \"\"Ana\"\"\",1500.25\n", csv.toString(StandardCharsets.UTF_8));
+
+        //Filtro por rango de saldo
+        ByteArrayOutputStream filtrado = new ByteArrayOutputStream();
+        assertEquals(1, exportacionService.exportarCsv(filtrado, new BigDecimal("1200"), new BigDecimal("1800")));
+        assertTrue(filtrado.toString(StandardCharsets.UTF_8).endsWith(",1500.25\n"));
+
+        ByteArrayOutputStream binario = new ByteArrayOutputStream();
+        assertEquals(3, exportacionService.exportarBinario(binario, null, null));
+        List<String> filas = leerBinario(binario.toByteArray());
+        assertEquals(List.of("1|Andrés|100000", "2|John|200000", perez.getId() + "|Pérez, \"Ana\"|150025"), filas);
+
+    }
+
+    /**
+     * Lector del formato descrito en ExportacionCuentaServiceImpl
+     */
+    private static List<String> leerBinario(byte[] contenido) throws IOException {
+
+        DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(contenido));
+        byte[] magico = new byte[4];
+        entrada.readFully(magico);
+        assertEquals("CTA1", new String(magico, StandardCharsets.US_ASCII));
+
+        List<String> filas = new ArrayList<>();
+        int grupos = 0;
+        int cantidad;
+        while ((cantidad = (int) leerVarint(entrada)) > 0) {
+            grupos++;
+            long[] ids = new long[cantidad];
+            long anterior = 0;
+            for (int i = 0; i < cantidad; i++) {
+                ids[i] = anterior + deshacerZigzag(leerVarint(entrada));
+                anterior = ids[i];
+            }
+            long[] saldos = new long[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                saldos[i] = deshacerZigzag(leerVarint(entrada));
+            }
+            for (int i = 0; i < cantidad; i++) {
+                byte[] persona = new byte[(int) leerVarint(entrada)];
+                entrada.readFully(persona);
+                filas.add(ids[i] + "|" + new String(persona, StandardCharsets.UTF_8) + "|" + saldos[i]);
+            }
+        }
+        assertEquals(2, grupos);
+        assertEquals(-1, entrada.read());
+        return filas;
+    }
+
+    private static long leerVarint(DataInputStream entrada) throws IOException {
+        long valor = 0;
+        int desplazamiento = 0;
+        byte b;
+        do {
+            b = entrada.readByte();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            desplazamiento += 7;
+        } while ((b & 0x80) != 0);
+        return valor;
+    }
+
+    private static long deshacerZigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+}
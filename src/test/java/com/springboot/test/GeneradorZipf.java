@@ -0,0 +1,33 @@
+package com.springboot.test;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Devuelve posiciones entre 0 y n-1 con distribucion de Zipf: la posicion k sale con probabilidad
+ * proporcional a 1 / (k + 1)^exponente. Con exponente 0 todas son igual de probables,
+ * con exponente 1 o mas unas pocas cuentas concentran la mayoria de las transferencias.
+ */
+class GeneradorZipf {
+
+    private final double[] acumulada;
+
+    GeneradorZipf(int n, double exponente) {
+        acumulada = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1 / Math.pow(k + 1, exponente);
+            acumulada[k] = total;
+        }
+        for (int k = 0; k < n; k++) {
+            acumulada[k] /= total;
+        }
+    }
+
+    int siguiente() {
+        int posicion = Arrays.binarySearch(acumulada, ThreadLocalRandom.current().nextDouble());
+        //binarySearch devuelve -(punto de insercion) - 1 cuando el valor no esta
+        return Math.min(posicion >= 0 ? posicion : -posicion - 1, acumulada.length - 1);
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.springboot.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.test.config.IdempotenciaProperties;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.ClaveIdempotenciaReutilizadaException;
+import com.springboot.test.exceptions.IdempotenciaEnCursoException;
+import com.springboot.test.models.ClaveIdempotencia;
+import com.springboot.test.repositories.ClaveIdempotenciaRepository;
+import com.springboot.test.services.IIdempotenciaService;
+import com.springboot.test.services.IdempotenciaServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:idempotencia;DB_CLOSE_DELAY=-1")
+class IdempotenciaServiceTest {
+
+    @Autowired
+    IIdempotenciaService idempotenciaService;
+    @Autowired
+    ClaveIdempotenciaRepository claveRepository;
+    @Autowired
+    IdempotenciaProperties properties;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void testReintentoDevuelveElMismoResultado() {
+
+        //Given
+        String clave = nuevaClave();
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        //When
+        String primero = idempotenciaService.ejecutar(clave, "peticion", String.class,
+                () -> "resultado-" + ejecuciones.incrementAndGet());
+        String reintento = idempotenciaService.ejecutar(clave, "peticion", String.class,
+                () -> "resultado-" + ejecuciones.incrementAndGet());
+
+        //Then
+        assertEquals("resultado-1", primero);
+        assertEquals("resultado-1", reintento);
+        assertEquals(1, ejecuciones.get());
+
+    }
+
+    @Test
+    void testReintentoEnOtraInstancia() {
+
+        //Given
+        String clave = nuevaClave();
+        AtomicInteger ejecuciones = new AtomicInteger();
+        idempotenciaService.ejecutar(clave, "peticion", String.class, () -> "resultado-" + ejecuciones.incrementAndGet());
+        //Otra instancia o el mismo proceso despues de reiniciarse, sin nada en memoria
+        IIdempotenciaService otraInstancia = new IdempotenciaServiceImpl(claveRepository, properties, objectMapper,
+                transactionManager);
+
+        //When
+        String reintento = otraInstancia.ejecutar(clave, "peticion", String.class,
+                () -> "resultado-" + ejecuciones.incrementAndGet());
+
+        //Then
+        assertEquals("resultado-1", reintento);
+        assertEquals(1, ejecuciones.get());
+
+    }
+
+    @Test
+    void testDuplicadoConcurrenteEsperaAlOriginal() throws Exception {
+
+        //Given
+        String clave = nuevaClave();
+        AtomicInteger ejecuciones = new AtomicInteger();
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        //When
+        Future<String> original = executor.submit(() -> idempotenciaService.ejecutar(clave, "peticion", String.class, () -> {
+            ejecuciones.incrementAndGet();
+            enCurso.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "resultado";
+        }));
+
+        enCurso.await();
+        Future<String> duplicado = executor.submit(() -> idempotenciaService.ejecutar(clave, "peticion", String.class, () -> {
+            ejecuciones.incrementAndGet();
+            return "otro resultado";
+        }));
+        liberar.countDown();
+
+        //Then
+        assertEquals("resultado", original.get(5, TimeUnit.SECONDS));
+        assertEquals("resultado", duplicado.get(5, TimeUnit.SECONDS));
+        assertEquals(1, ejecuciones.get());
+        executor.shutdown();
+
+    }
+
+    @Test
+    void testDuplicadoAsincronoNoBloquea() throws Exception {
+
+        //Given
+        String clave = nuevaClave();
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> original = executor.submit(() -> idempotenciaService.ejecutar(clave, "peticion", String.class, () -> {
+            enCurso.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "resultado";
+        }));
+        enCurso.await();
+
+        //When
+        CompletableFuture<String> duplicado = idempotenciaService.ejecutarAsync(clave, "peticion", String.class,
+                () -> "otro resultado");
+
+        //Then
+        //Vuelve sin esperar a la peticion original
+        assertFalse(duplicado.isDone());
+        liberar.countDown();
+        assertEquals("resultado", duplicado.get(5, TimeUnit.SECONDS));
+        assertEquals("resultado", original.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+    }
+
+    @Test
+    void testDuplicadoAsincronoVenceLaEspera() throws Exception {
+
+        //Given
+        IdempotenciaProperties esperaCorta = new IdempotenciaProperties();
+        esperaCorta.setEsperaMaxima(Duration.ofMillis(50));
+        IIdempotenciaService servicio = new IdempotenciaServiceImpl(claveRepository, esperaCorta, objectMapper,
+                transactionManager);
+        String clave = nuevaClave();
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> servicio.ejecutar(clave, "peticion", String.class, () -> {
+            enCurso.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "resultado";
+        }));
+        enCurso.await();
+
+        //When
+        CompletableFuture<String> duplicado = servicio.ejecutarAsync(clave, "peticion", String.class, () -> "otro resultado");
+
+        //Then
+        ExecutionException error = assertThrows(ExecutionException.class, () -> duplicado.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof IdempotenciaEnCursoException, error.getCause().toString());
+        liberar.countDown();
+        executor.shutdown();
+
+    }
+
+    @Test
+    void testFalloLiberaLaClave() {
+
+        //Given
+        String clave = nuevaClave();
+
+        //When
+        assertThrows(IllegalStateException.class, () -> idempotenciaService.ejecutar(clave, "peticion", String.class, () -> {
+            throw new IllegalStateException("fallo");
+        }));
+
+        //Then
+        //El siguiente intento con la misma clave se ejecuta
+        assertEquals("resultado", idempotenciaService.ejecutar(clave, "peticion", String.class, () -> "resultado"));
+
+    }
+
+    @Test
+    void testMismaClaveConOtraPeticion() {
+
+        //Given
+        String clave = nuevaClave();
+        idempotenciaService.ejecutar(clave, "peticion", String.class, () -> "resultado");
+
+        //When
+        //Then
+        assertThrows(ClaveIdempotenciaReutilizadaException.class,
+                () -> idempotenciaService.ejecutar(clave, "otra peticion", String.class, () -> "otro resultado"));
+
+    }
+
+    @Test
+    void testElMismoMontoConOtraEscalaEsLaMismaPeticion() {
+
+        //Given
+        String clave = nuevaClave();
+        AtomicInteger ejecuciones = new AtomicInteger();
+        idempotenciaService.ejecutar(clave, transaccion("100"), String.class,
+                () -> "resultado-" + ejecuciones.incrementAndGet());
+
+        //When
+        String reintento = idempotenciaService.ejecutar(clave, transaccion("100.00"), String.class,
+                () -> "resultado-" + ejecuciones.incrementAndGet());
+
+        //Then
+        assertEquals("resultado-1", reintento);
+        assertEquals(1, ejecuciones.get());
+        assertThrows(ClaveIdempotenciaReutilizadaException.class,
+                () -> idempotenciaService.ejecutar(clave, transaccion("100.01"), String.class, () -> "otro resultado"));
+
+    }
+
+    @Test
+    void testEnCursoEnOtraInstancia() {
+
+        //Given
+        String clave = nuevaClave();
+        AtomicInteger ejecuciones = new AtomicInteger();
+        idempotenciaService.ejecutar(clave, "peticion", String.class, () -> "resultado");
+        //Sin respuesta: otra instancia aun la procesa, o termino de forma abrupta
+        ClaveIdempotencia guardada = claveRepository.findById(clave).orElseThrow();
+        guardada.setRespuesta(null);
+        claveRepository.save(guardada);
+
+        //When
+        //Then
+        assertThrows(IdempotenciaEnCursoException.class, () -> idempotenciaService.ejecutar(clave, "peticion",
+                String.class, () -> "resultado-" + ejecuciones.incrementAndGet()));
+        assertEquals(0, ejecuciones.get());
+
+    }
+
+    @Test
+    void testClaveVencidaSeTrataComoNueva() {
+
+        //Given
+        String clave = nuevaClave();
+        idempotenciaService.ejecutar(clave, "peticion", String.class, () -> "resultado");
+        ClaveIdempotencia guardada = claveRepository.findById(clave).orElseThrow();
+        guardada.setExpira(LocalDateTime.now().minusMinutes(1));
+        claveRepository.save(guardada);
+
+        //When
+        String resultado = idempotenciaService.ejecutar(clave, "otra peticion", String.class, () -> "nuevo resultado");
+
+        //Then
+        assertEquals("nuevo resultado", resultado);
+
+    }
+
+    private static TransaccionDTO transaccion(String monto) {
+        return TransaccionDTO.builder()
+                .cuentaOrigenId(1L)
+                .cuentaDestinoId(2L)
+                .bancoDestinoId(1L)
+                .monto(new BigDecimal(monto))
+                .build();
+    }
+
+    private static String nuevaClave() {
+        return UUID.randomUUID().toString();
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.ResultadoImportacionDTO;
+import com.springboot.test.exceptions.ImportacionInvalidaException;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.repositories.CuentaRepository;
+import com.springboot.test.services.IImportacionCuentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lotes de 500 filas para que la importacion use varias transacciones
+ */
+@SpringBootTest(properties = {
+        "app.importacion.lote=500",
+        "spring.datasource.url=jdbc:h2:mem:importacion;DB_CLOSE_DELAY=-1"
+})
+class ImportacionCuentaTest {
+
+    @Autowired
+    IImportacionCuentaService importacionService;
+    @Autowired
+    CuentaRepository cuentaRepository;
+
+    @Test
+    void testImportarCsvEnVariosLotes() {
+
+        long antes = cuentaRepository.count();
+        StringBuilder csv = new StringBuilder("persona,saldo\n");
+        for (int i = 0; i < 1200; i++) {
+            csv.append("Csv ").append(i).append(",100.50\n");
+        }
+        csv.append("\"Pérez, Ana\",300\n");
+
+        ResultadoImportacionDTO resultado = importacionService.importarCsv(new StringReader(csv.toString()));
+
+        assertEquals(1201, resultado.getFilas());
+        assertEquals(antes + 1201, cuentaRepository.count());
+        Cuenta ana = cuentaRepository.findByPersona("Pérez, Ana").orElseThrow();
+        assertEquals("perez, ana", ana.getPersonaNormalizada());
+        assertEquals("300.00", ana.getSaldo().toPlainString());
+
+    }
+
+    @Test
+    void testImportarNdjson() {
+
+        String ndjson = "{\"id\":1,\"persona\":\"Ndjson 1\",\"saldo\":10}\n\n{\"persona\":\"Ndjson 2\",\"saldo\":20}\n";
+
+        ResultadoImportacionDTO resultado = importacionService.importarNdjson(new StringReader(ndjson));
+
+        //El id del archivo se ignora, no se sobrescribe la cuenta 1
+        assertEquals(2, resultado.getFilas());
+        assertEquals("Andrés", cuentaRepository.findById(1L).orElseThrow().getPersona());
+        assertTrue(cuentaRepository.findByPersona("Ndjson 2").isPresent());
+
+    }
+
+    @Test
+    void testLineaInvalida() {
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            csv.append("Invalida ").append(i).append(",1\n");
+        }
+        csv.append("Sin saldo,abc\n");
+
+        ImportacionInvalidaException e = assertThrows(ImportacionInvalidaException.class,
+                () -> importacionService.importarCsv(new StringReader(csv.toString())));
+
+        //El primer lote completo ya se habia guardado
+        assertTrue(e.getMessage().startsWith("Linea 501 invalida"));
+        assertTrue(e.getMessage().endsWith("se importaron 500 cuentas"));
+        assertTrue(cuentaRepository.findByPersona("Invalida 499").isPresent());
+
+    }
+
+}
@@ -5,6 +5,7 @@ import com.springboot.test.repositories.CuentaRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
@@ -65,6 +66,45 @@ class IntegracionJpaTest {
 
     }
 
+    @Test
+    void testFindByPersonWithDuplicates(){
+
+        cuentaRepository.save(Cuenta.builder()
+                .persona("Andrés")
+                .saldo(BigDecimal.valueOf(500))
+                .build());
+
+        //Con varias cuentas de la misma persona se devuelve la de menor id
+        Cuenta cuenta = cuentaRepository.findByPersona("Andrés").orElseThrow();
+        assertEquals(1L, cuenta.getId());
+
+    }
+
+    @Test
+    void testBuscarPorPrefijo(){
+
+        Cuenta andre = cuentaRepository.save(Cuenta.builder()
+                .persona("ANDRE")
+                .saldo(BigDecimal.valueOf(500))
+                .build());
+
+        //Se busca sin mayusculas ni tildes
+        List<Cuenta> cuentas = cuentaRepository.buscarPorPrefijo("andr%", PageRequest.of(0, 10));
+        assertEquals(2, cuentas.size());
+        assertEquals("ANDRE", cuentas.get(0).getPersona());
+        assertEquals("Andrés", cuentas.get(1).getPersona());
+
+        //Pagina siguiente a partir de la primera cuenta
+        List<Cuenta> siguientes = cuentaRepository.buscarPorPrefijoDespuesDe("andr%",
+                andre.getPersonaNormalizada(), andre.getId(), PageRequest.of(0, 10));
+        assertEquals(1, siguientes.size());
+        assertEquals("Andrés", siguientes.get(0).getPersona());
+
+        assertTrue(cuentaRepository.buscarPorPrefijo("jo%", PageRequest.of(0, 10)).stream()
+                .allMatch(c -> c.getPersona().equals("John")));
+
+    }
+
     @Test
     void testSave(){
 
@@ -0,0 +1,49 @@
+package com.springboot.test;
+
+import com.springboot.test.exceptions.DineroInsuficienteException;
+import com.springboot.test.services.IBancoService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metricas;DB_CLOSE_DELAY=-1")
+class MetricasTest {
+
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testMetricasDeTransferir() {
+
+        bancoService.transferir(1L, 1L, 2L, BigDecimal.TEN);
+        assertThrows(DineroInsuficienteException.class,
+                () -> bancoService.transferir(1L, 1L, 2L, new BigDecimal("1000000")));
+
+        //Cada llamada queda en el timer del service, la fallida con el tag de la excepcion
+        assertEquals(1, meterRegistry.get("servicio.bancos")
+                .tag("method", "transferir")
+                .tag("exception", "none")
+                .timer().count());
+        assertEquals(1, meterRegistry.get("servicio.bancos")
+                .tag("method", "transferir")
+                .tag("exception", "DineroInsuficienteException")
+                .timer().count());
+
+        assertEquals(1.0, meterRegistry.get("transferencias.fallidas")
+                .tag("motivo", "dinero_insuficiente")
+                .counter().count());
+        assertEquals(0.0, meterRegistry.get("transferencias.en_curso").gauge().value());
+
+        //Las lecturas de cuentas dentro de la transferencia tambien se miden
+        assertTrue(meterRegistry.get("servicio.cuentas").tag("method", "findById").timer().count() >= 2);
+
+    }
+
+}
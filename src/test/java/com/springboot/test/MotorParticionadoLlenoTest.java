@@ -0,0 +1,68 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.ResultadoTransaccionDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.ColaTransferenciasLlenaException;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.services.BancoServiceParticionadoImpl;
+import com.springboot.test.services.ICuentaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Un intervalo de escritura largo deja la primera transferencia sin escribir, con lugar para una sola
+ * el motor rechaza la siguiente en lugar de acumularla
+ */
+@SpringBootTest(properties = {
+        "app.transferencias.motor=particionado",
+        "app.transferencias.particionado.intervalo-escritura=1h",
+        "app.transferencias.particionado.maximo-retenidas=1",
+        "app.transferencias.particionado.espera-admision=50ms",
+        "spring.datasource.url=jdbc:h2:mem:motor-lleno;DB_CLOSE_DELAY=-1"
+})
+class MotorParticionadoLlenoTest {
+
+    @Autowired
+    BancoServiceParticionadoImpl bancoService;
+    @Autowired
+    ICuentaService cuentaService;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testRechazaConElMotorLleno() {
+
+        //Given
+        Long origen = crearCuenta("100");
+        Long destino = crearCuenta("0");
+        bancoService.transferir(1L, origen, destino, BigDecimal.ONE);
+
+        //When
+        assertThrows(ColaTransferenciasLlenaException.class,
+                () -> bancoService.transferir(1L, origen, destino, BigDecimal.ONE));
+        List<ResultadoTransaccionDTO> resultados = bancoService.transferirLote(
+                List.of(new TransaccionDTO(origen, destino, 1L, BigDecimal.ONE)));
+
+        //Then
+        assertEquals(EstadoTransaccion.RECHAZADA, resultados.get(0).getEstado());
+        assertEquals(1.0, meterRegistry.get("transferencias.motor.sin_escribir").gauge().value());
+        assertEquals(1.0, meterRegistry.get("transferencias.motor.retenidas").gauge().value());
+
+    }
+
+    private Long crearCuenta(String saldo) {
+        return cuentaService.guardar(Cuenta.builder()
+                .persona("Motor lleno")
+                .saldo(new BigDecimal(saldo))
+                .build()).getId();
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.springboot.test;
+
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.services.BancoServiceParticionadoImpl;
+import com.springboot.test.services.ICuentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * El escritor solo escribe lotes de dos transferencias: la primera espera en memoria
+ * mientras su cuenta de destino se elimina por fuera del motor
+ */
+@SpringBootTest(properties = {
+        "app.transferencias.motor=particionado",
+        "app.transferencias.particionado.intervalo-escritura=1h",
+        "app.transferencias.particionado.lote-escritura=2",
+        "spring.datasource.url=jdbc:h2:mem:motor-reconciliacion;DB_CLOSE_DELAY=-1"
+})
+class MotorParticionadoReconciliacionTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(10);
+
+    @Autowired
+    BancoServiceParticionadoImpl bancoService;
+    @Autowired
+    ICuentaService cuentaService;
+
+    @Test
+    void testCuentaEliminadaAntesDeEscribirDevuelveElMonto() {
+
+        //Given
+        Long origen = crearCuenta("100");
+        Long eliminada = crearCuenta("0");
+        Long otra = crearCuenta("0");
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+        bancoService.transferir(1L, origen, eliminada, new BigDecimal("30"));
+
+        //When
+        cuentaService.deleteByid(eliminada);
+        //Completa el lote: el UPDATE de la cuenta eliminada no encuentra la fila
+        bancoService.transferir(1L, origen, otra, new BigDecimal("20"));
+
+        //Then
+        assertTrue(bancoService.sincronizar(ESPERA));
+        assertEquals(0, new BigDecimal("80").compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, new BigDecimal("20").compareTo(cuentaService.revisarSaldo(otra)));
+        assertThrows(NoSuchElementException.class, () -> cuentaService.revisarSaldo(eliminada));
+        assertEquals(totalInicial + 1, bancoService.revisarTotalTransferencias(1L));
+        //En memoria el origen tambien volvio a 80
+        bancoService.transferir(1L, origen, otra, new BigDecimal("80"));
+
+    }
+
+    private Long crearCuenta(String saldo) {
+        return cuentaService.guardar(Cuenta.builder()
+                .persona("Reconciliacion")
+                .saldo(new BigDecimal(saldo))
+                .build()).getId();
+    }
+
+}
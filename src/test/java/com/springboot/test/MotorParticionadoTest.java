@@ -0,0 +1,237 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.ResultadoTransaccionDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.DineroInsuficienteException;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.models.Movimiento;
+import com.springboot.test.services.BancoServiceParticionadoImpl;
+import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.IMovimientoService;
+import com.springboot.test.services.MovimientoServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.transferencias.motor=particionado",
+        "app.transferencias.particionado.intervalo-escritura=10ms",
+        "spring.datasource.url=jdbc:h2:mem:motor;DB_CLOSE_DELAY=-1"
+})
+class MotorParticionadoTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(10);
+
+    @Autowired
+    BancoServiceParticionadoImpl bancoService;
+    @Autowired
+    ICuentaService cuentaService;
+    @Autowired
+    IMovimientoService movimientoService;
+
+    @Test
+    void testTransferirYEscribirEnLaBase() {
+
+        //Given
+        Long origen = crearCuenta("1000");
+        Long destino = crearCuenta("0");
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+
+        //When
+        bancoService.transferir(1L, origen, destino, new BigDecimal("100"));
+
+        //Then
+        //El total cuenta la transferencia aunque aun no este escrita
+        assertEquals(totalInicial + 1, bancoService.revisarTotalTransferencias(1L));
+        assertTrue(bancoService.sincronizar(ESPERA));
+        assertEquals(0, new BigDecimal("900").compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, new BigDecimal("100").compareTo(cuentaService.revisarSaldo(destino)));
+        assertEquals(totalInicial + 1, bancoService.revisarTotalTransferencias(1L));
+
+    }
+
+    @Test
+    void testDineroInsuficienteNoModificaElSaldo() {
+
+        //Given
+        Long origen = crearCuenta("50");
+        Long destino = crearCuenta("0");
+
+        //When
+        assertThrows(DineroInsuficienteException.class,
+                () -> bancoService.transferir(1L, origen, destino, new BigDecimal("100")));
+        bancoService.transferir(1L, origen, destino, new BigDecimal("50"));
+
+        //Then
+        assertTrue(bancoService.sincronizar(ESPERA));
+        assertEquals(0, BigDecimal.ZERO.compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, new BigDecimal("50").compareTo(cuentaService.revisarSaldo(destino)));
+
+    }
+
+    @Test
+    void testDestinoInexistenteLiberaLaReserva() {
+
+        //Given
+        Long origen = crearCuenta("100");
+        Long destino = crearCuenta("0");
+
+        //When
+        assertThrows(NoSuchElementException.class,
+                () -> bancoService.transferir(1L, origen, 999_999L, new BigDecimal("100")));
+        //Lo reservado volvio al origen, se puede transferir completo
+        bancoService.transferir(1L, origen, destino, new BigDecimal("100"));
+
+        //Then
+        assertTrue(bancoService.sincronizar(ESPERA));
+        assertEquals(0, BigDecimal.ZERO.compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, new BigDecimal("100").compareTo(cuentaService.revisarSaldo(destino)));
+
+    }
+
+    @Test
+    void testTransferirLote() {
+
+        //Given
+        Long origen = crearCuenta("100");
+        Long destino = crearCuenta("0");
+        List<TransaccionDTO> transacciones = Arrays.asList(
+                new TransaccionDTO(origen, destino, 1L, new BigDecimal("60")),
+                new TransaccionDTO(origen, destino, 1L, new BigDecimal("60")),
+                new TransaccionDTO(origen, destino, 1L, BigDecimal.ZERO),
+                new TransaccionDTO(origen, destino, 99L, BigDecimal.ONE));
+
+        //When
+        List<ResultadoTransaccionDTO> resultados = bancoService.transferirLote(transacciones);
+
+        //Then
+        assertEquals(EstadoTransaccion.REALIZADA, resultados.get(0).getEstado());
+        assertEquals(EstadoTransaccion.DINERO_INSUFICIENTE, resultados.get(1).getEstado());
+        assertEquals(EstadoTransaccion.INVALIDA, resultados.get(2).getEstado());
+        assertEquals(EstadoTransaccion.NO_ENCONTRADA, resultados.get(3).getEstado());
+        assertTrue(bancoService.sincronizar(ESPERA));
+        assertEquals(0, new BigDecimal("40").compareTo(cuentaService.revisarSaldo(origen)));
+
+    }
+
+    @Test
+    void testTransferenciasConcurrentesConservanElDinero() throws Exception {
+
+        //Given
+        int nroCuentas = 20;
+        List<Long> cuentas = new ArrayList<>();
+        for (int i = 0; i < nroCuentas; i++) {
+            cuentas.add(crearCuenta("1000"));
+        }
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+        AtomicInteger realizadas = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //When
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int hilo = 0; hilo < 8; hilo++) {
+            tareas.add(executor.submit(() -> {
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                for (int i = 0; i < 500; i++) {
+                    int origen = aleatorio.nextInt(nroCuentas);
+                    int destino = (origen + 1 + aleatorio.nextInt(nroCuentas - 1)) % nroCuentas;
+                    try {
+                        bancoService.transferir(1L, cuentas.get(origen), cuentas.get(destino),
+                                BigDecimal.valueOf(1 + aleatorio.nextInt(200)));
+                        realizadas.incrementAndGet();
+                    } catch (DineroInsuficienteException e) {
+                        //Esperado con montos al azar
+                    }
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        //Then
+        assertTrue(bancoService.sincronizar(ESPERA));
+        BigDecimal suma = cuentas.stream()
+                .map(cuentaService::revisarSaldo)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, BigDecimal.valueOf(1000L * nroCuentas).compareTo(suma));
+        assertEquals(totalInicial + realizadas.get(), bancoService.revisarTotalTransferencias(1L));
+
+    }
+
+    @Test
+    void testEdicionPorFueraDelMotorSeRecarga() {
+
+        //Given
+        Long origen = crearCuenta("100");
+        Long destino = crearCuenta("0");
+        bancoService.transferir(1L, origen, destino, new BigDecimal("10"));
+        assertTrue(bancoService.sincronizar(ESPERA));
+
+        //When
+        //Como PUT /api/cuentas/{id}, sin pasar por el motor
+        Cuenta cuenta = cuentaService.findById(origen);
+        cuenta.setSaldo(new BigDecimal("500"));
+        cuentaService.update(cuenta);
+        //Con el saldo anterior en memoria (90) seria dinero insuficiente
+        bancoService.transferir(1L, origen, destino, new BigDecimal("450"));
+
+        //Then
+        assertTrue(bancoService.sincronizar(ESPERA));
+        assertEquals(0, new BigDecimal("50").compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, new BigDecimal("460").compareTo(cuentaService.revisarSaldo(destino)));
+
+    }
+
+    @Test
+    void testMontosConFraccionesDeCentavo() {
+
+        //Given
+        Long origen = crearCuenta("100");
+        Long destino = crearCuenta("0");
+
+        //When
+        bancoService.transferir(1L, origen, destino, new BigDecimal("0.125"));
+        bancoService.transferir(1L, origen, destino, new BigDecimal("10.005"));
+        List<ResultadoTransaccionDTO> resultados = bancoService.transferirLote(
+                List.of(new TransaccionDTO(origen, destino, 1L, new BigDecimal("2.675"))));
+
+        //Then
+        assertEquals(EstadoTransaccion.REALIZADA, resultados.get(0).getEstado());
+        assertTrue(bancoService.sincronizar(ESPERA));
+        BigDecimal debitos = sumaMovimientos(origen);
+        //0.12 + 10.00 + 2.68 (HALF_EVEN)
+        assertEquals(0, new BigDecimal("12.80").compareTo(debitos));
+        assertEquals(0, debitos.compareTo(sumaMovimientos(destino)));
+        assertEquals(0, new BigDecimal("100").subtract(debitos).compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, debitos.compareTo(cuentaService.revisarSaldo(destino)));
+
+    }
+
+    private BigDecimal sumaMovimientos(Long cuentaId) {
+        return movimientoService.findPagina(cuentaId, null, MovimientoServiceImpl.LIMITE_MAXIMO).getContenido().stream()
+                .map(Movimiento::getMonto)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private Long crearCuenta(String saldo) {
+        return cuentaService.guardar(Cuenta.builder()
+                .persona("Motor")
+                .saldo(new BigDecimal(saldo))
+                .build()).getId();
+    }
+
+}
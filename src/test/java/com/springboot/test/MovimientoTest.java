@@ -0,0 +1,60 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.PaginaDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.DineroInsuficienteException;
+import com.springboot.test.models.Movimiento;
+import com.springboot.test.models.TipoMovimiento;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.IMovimientoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:movimientos;DB_CLOSE_DELAY=-1")
+class MovimientoTest {
+
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    IMovimientoService movimientoService;
+
+    @Test
+    void testMovimientosDeTransferenciasYLote() {
+
+        bancoService.transferir(1L, 1L, 2L, new BigDecimal("100"));
+        bancoService.transferirLote(Arrays.asList(
+                TransaccionDTO.builder().cuentaOrigenId(1L).cuentaDestinoId(2L).bancoDestinoId(1L).monto(new BigDecimal("50")).build(),
+                TransaccionDTO.builder().cuentaOrigenId(2L).cuentaDestinoId(1L).bancoDestinoId(1L).monto(new BigDecimal("1000000")).build()));
+
+        //Una transferencia fallida no deja movimientos
+        assertThrows(DineroInsuficienteException.class,
+                () -> bancoService.transferir(1L, 1L, 2L, new BigDecimal("1000000")));
+
+        //La cuenta 1 se recorre de a un movimiento por pagina
+        PaginaDTO<Movimiento> primera = movimientoService.findPagina(1L, null, 1);
+        assertEquals(1, primera.getContenido().size());
+        assertEquals(TipoMovimiento.DEBITO, primera.getContenido().get(0).getTipo());
+        assertEquals(0, new BigDecimal("100").compareTo(primera.getContenido().get(0).getMonto()));
+        assertEquals(2L, primera.getContenido().get(0).getCuentaContraparteId());
+        assertNotNull(primera.getSiguiente());
+
+        PaginaDTO<Movimiento> segunda = movimientoService.findPagina(1L, primera.getSiguiente(), 1);
+        assertEquals(1, segunda.getContenido().size());
+        assertEquals(TipoMovimiento.DEBITO, segunda.getContenido().get(0).getTipo());
+        assertEquals(0, new BigDecimal("50").compareTo(segunda.getContenido().get(0).getMonto()));
+        assertNull(segunda.getSiguiente());
+
+        PaginaDTO<Movimiento> destino = movimientoService.findPagina(2L, null, 10);
+        assertEquals(2, destino.getContenido().size());
+        assertTrue(destino.getContenido().stream().allMatch(m -> m.getTipo() == TipoMovimiento.CREDITO));
+        assertNull(destino.getSiguiente());
+
+    }
+
+}
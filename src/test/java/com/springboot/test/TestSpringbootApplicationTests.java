@@ -1,5 +1,6 @@
 package com.springboot.test;
 
+import com.springboot.test.dto.CuentasEncontradasDTO;
 import com.springboot.test.exceptions.DineroInsuficienteException;
 import com.springboot.test.models.Banco;
 import com.springboot.test.models.Cuenta;
@@ -14,8 +15,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static com.springboot.test.Datos.crearCuenta001;
 import static com.springboot.test.Datos.crearCuenta002;
@@ -140,8 +145,9 @@ class TestSpringbootApplicationTests {
         verify(cuentaRepository, times(2)).findById(2L);
         verify(cuentaRepository, times(2)).save(any(Cuenta.class));
 
+        //El contador se incrementa en contadores_transferencias, la fila del banco no se escribe
         verify(bancoRepository, times(2)).findById(1L);
-        verify(bancoRepository).save(any(Banco.class));
+        verify(bancoRepository, never()).save(any(Banco.class));
 
     }
 
@@ -154,6 +160,8 @@ class TestSpringbootApplicationTests {
         when(cuentaRepository.findById(1L)).thenReturn(Datos.crearCuenta001());
         when(cuentaRepository.findById(2L)).thenReturn(Datos.crearCuenta002());
         when(bancoRepository.findById(1L)).thenReturn(Datos.crearBanco());
+        //El contador esta en la base de la prueba y no en el banco de Datos
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
 
         BigDecimal amount = BigDecimal.valueOf(1200);
 
@@ -169,13 +177,13 @@ class TestSpringbootApplicationTests {
         assertEquals("2000", saldoDestino.toPlainString());
 
         int total = bancoService.revisarTotalTransferencias(1L);
-        assertEquals(0, total);
+        assertEquals(totalInicial, total);
 
         verify(cuentaRepository, times(2)).findById(1L);
         verify(cuentaRepository, times(1)).findById(2L);
         verify(cuentaRepository, never()).save(any(Cuenta.class));
 
-        verify(bancoRepository, times(1)).findById(1L);
+        verify(bancoRepository, times(2)).findById(1L);
         verify(bancoRepository, never()).save(any(Banco.class));
 
         //Verificar que se llama 6 veces findById con cualquier id  de tipo long
@@ -247,4 +255,48 @@ class TestSpringbootApplicationTests {
 
     }
 
+    @Test
+    void testFindVarias() {
+
+        //Given
+        //Existen las cuentas con id par
+        when(cuentaRepository.findAllById(anyCollection()))
+                .then(c -> {
+                    Collection<Long> ids = c.getArgument(0);
+                    return ids.stream()
+                            .filter(id -> id % 2 == 0)
+                            .map(id -> Cuenta.builder().id(id).persona("Cuenta " + id).saldo(BigDecimal.TEN).build())
+                            .collect(Collectors.toList());
+                });
+        List<Long> ids = new ArrayList<>();
+        LongStream.rangeClosed(1, 250).forEach(ids::add);
+        ids.add(4L);
+
+        //When
+        CuentasEncontradasDTO resultado = cuentaService.findVarias(ids);
+
+        //Then
+        //250 ids distintos -> 3 consultas IN en vez de 250 findById
+        verify(cuentaRepository, times(3)).findAllById(anyCollection());
+        verify(cuentaRepository, never()).findById(anyLong());
+        assertEquals(125, resultado.getCuentas().size());
+        assertEquals(2L, resultado.getCuentas().get(0).getId().longValue());
+        assertEquals(250L, resultado.getCuentas().get(124).getId().longValue());
+        assertEquals(125, resultado.getNoEncontradas().size());
+        assertEquals(1L, resultado.getNoEncontradas().get(0).longValue());
+
+    }
+
+    @Test
+    void testFindVariasSuperaElLimite() {
+
+        List<Long> ids = new ArrayList<>();
+        LongStream.rangeClosed(1, 501).forEach(ids::add);
+
+        assertThrows(IllegalArgumentException.class, () -> cuentaService.findVarias(ids));
+
+        verify(cuentaRepository, never()).findAllById(anyCollection());
+
+    }
+
 }
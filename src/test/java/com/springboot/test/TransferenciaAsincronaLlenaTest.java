@@ -0,0 +1,73 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.ColaTransferenciasLlenaException;
+import com.springboot.test.models.EstadoEncolada;
+import com.springboot.test.models.TransferenciaEncolada;
+import com.springboot.test.repositories.TransferenciaEncoladaRepository;
+import com.springboot.test.services.ITransferenciaAsincronaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * La capacidad de la cola cuenta tambien las filas que encolaron otras instancias
+ */
+@SpringBootTest(properties = {
+        "app.transferencias.cola.capacidad=2",
+        "app.transferencias.cola.barrido=100ms",
+        "spring.datasource.url=jdbc:h2:mem:cola-llena;DB_CLOSE_DELAY=-1"
+})
+class TransferenciaAsincronaLlenaTest {
+
+    @Autowired
+    ITransferenciaAsincronaService transferenciaService;
+    @Autowired
+    TransferenciaEncoladaRepository encoladaRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testRechazaConLaColaLlenaDeOtraInstancia() throws InterruptedException {
+
+        //Given
+        //Dos filas que otra instancia encolo y esta procesando
+        for (int i = 0; i < 2; i++) {
+            encoladaRepository.save(TransferenciaEncolada.builder()
+                    .cuentaOrigenId(1L)
+                    .cuentaDestinoId(2L)
+                    .bancoId(1L)
+                    .monto(BigDecimal.ONE)
+                    .estado(EstadoEncolada.EN_PROCESO)
+                    .creada(LocalDateTime.now())
+                    .intentos(1)
+                    .reclamo("otra-instancia")
+                    .reclamadaHasta(LocalDateTime.now().plusMinutes(1))
+                    .build());
+        }
+
+        //When
+        //El barrido cuenta las filas de la tabla
+        for (int intento = 0; intento < 100 && pendientes() < 2; intento++) {
+            Thread.sleep(50);
+        }
+
+        //Then
+        assertEquals(2.0, pendientes());
+        assertThrows(ColaTransferenciasLlenaException.class,
+                () -> transferenciaService.encolar(new TransaccionDTO(1L, 2L, 1L, BigDecimal.TEN)));
+        assertEquals(1.0, meterRegistry.get("transferencias.cola.rechazadas").counter().count());
+
+    }
+
+    private double pendientes() {
+        return meterRegistry.get("transferencias.cola.pendientes").gauge().value();
+    }
+
+}
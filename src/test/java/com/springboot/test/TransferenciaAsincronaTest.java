@@ -0,0 +1,145 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.EstadoEncolada;
+import com.springboot.test.models.TransferenciaEncolada;
+import com.springboot.test.repositories.TransferenciaEncoladaRepository;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.ITransferenciaAsincronaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:cola-transferencias;DB_CLOSE_DELAY=-1")
+class TransferenciaAsincronaTest {
+
+    @Autowired
+    ITransferenciaAsincronaService transferenciaService;
+    @Autowired
+    ICuentaService cuentaService;
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    TransferenciaEncoladaRepository encoladaRepository;
+
+    @Test
+    void testEncolarYProcesar() throws InterruptedException {
+
+        //Given
+        BigDecimal saldoInicial = cuentaService.revisarSaldo(1L);
+
+        //When
+        TransferenciaEncolada realizada = transferenciaService.encolar(
+                new TransaccionDTO(1L, 2L, 1L, new BigDecimal("100")));
+        TransferenciaEncolada fallida = transferenciaService.encolar(
+                new TransaccionDTO(1L, 2L, 1L, new BigDecimal("1000000")));
+
+        //Then
+        assertEquals(EstadoEncolada.PENDIENTE, realizada.getEstado());
+        realizada = esperarProcesada(realizada.getId());
+        fallida = esperarProcesada(fallida.getId());
+
+        assertEquals(EstadoEncolada.REALIZADA, realizada.getEstado());
+        assertNotNull(realizada.getProcesada());
+        assertEquals(EstadoEncolada.FALLIDA, fallida.getEstado());
+        assertEquals(EstadoTransaccion.DINERO_INSUFICIENTE, fallida.getResultado());
+        assertEquals("Dinero insuficiente en la cuenta", fallida.getMensaje());
+        assertEquals(0, saldoInicial.subtract(new BigDecimal("100")).compareTo(cuentaService.revisarSaldo(1L)));
+
+    }
+
+    @Test
+    void testMontoEncoladoEnCentavos() throws InterruptedException {
+
+        //Given
+        BigDecimal saldoInicial = cuentaService.revisarSaldo(2L);
+
+        //When
+        TransferenciaEncolada encolada = transferenciaService.encolar(
+                new TransaccionDTO(1L, 2L, 1L, new BigDecimal("0.125")));
+
+        //Then
+        //Se guarda ya redondeado (HALF_EVEN), lo mismo que se acredita
+        assertEquals(0, new BigDecimal("0.12").compareTo(encolada.getMonto()));
+        assertEquals(EstadoEncolada.REALIZADA, esperarProcesada(encolada.getId()).getEstado());
+        assertEquals(0, saldoInicial.add(new BigDecimal("0.12")).compareTo(cuentaService.revisarSaldo(2L)));
+
+    }
+
+    @Test
+    void testRepetirUnaFilaRealizadaNoMueveElDinero() throws InterruptedException {
+
+        //Given
+        TransferenciaEncolada realizada = esperarProcesada(transferenciaService.encolar(
+                new TransaccionDTO(1L, 2L, 1L, new BigDecimal("10"))).getId());
+        BigDecimal saldoOrigen = cuentaService.revisarSaldo(1L);
+        BigDecimal saldoDestino = cuentaService.revisarSaldo(2L);
+
+        //When
+        //Un trabajador cuyo reclamo vencio y otro ya la termino
+        realizada.setReclamo("reclamo-vencido");
+        boolean transferida = bancoService.transferirEncolada(realizada);
+
+        //Then
+        assertFalse(transferida);
+        assertEquals(EstadoEncolada.REALIZADA, transferenciaService.findById(realizada.getId()).getEstado());
+        assertEquals(1, realizada.getIntentos());
+        assertEquals(0, saldoOrigen.compareTo(cuentaService.revisarSaldo(1L)));
+        assertEquals(0, saldoDestino.compareTo(cuentaService.revisarSaldo(2L)));
+
+    }
+
+    @Test
+    void testFilaQueAgotaLosIntentosQuedaFallida() throws InterruptedException {
+
+        //Given
+        //Reclamada 5 veces (app.transferencias.cola.intentos) por trabajadores que no terminaron
+        TransferenciaEncolada abandonada = encoladaRepository.save(TransferenciaEncolada.builder()
+                .cuentaOrigenId(1L)
+                .cuentaDestinoId(2L)
+                .bancoId(1L)
+                .monto(new BigDecimal("10"))
+                .estado(EstadoEncolada.EN_PROCESO)
+                .creada(LocalDateTime.now())
+                .intentos(5)
+                .reclamo("reclamo-vencido")
+                .reclamadaHasta(LocalDateTime.now().minusMinutes(1))
+                .build());
+        BigDecimal saldoOrigen = cuentaService.revisarSaldo(1L);
+
+        //When
+        transferenciaService.procesarPendientes();
+
+        //Then
+        //Si el barrido la reclamo primero, se espera a que termine
+        TransferenciaEncolada fallida = esperarProcesada(abandonada.getId());
+        assertEquals(EstadoEncolada.FALLIDA, fallida.getEstado());
+        assertEquals(EstadoTransaccion.RECHAZADA, fallida.getResultado());
+        assertEquals(6, fallida.getIntentos());
+        assertNull(fallida.getReclamo());
+        assertEquals(0, saldoOrigen.compareTo(cuentaService.revisarSaldo(1L)));
+
+    }
+
+    /**
+     * Hasta que la fila queda REALIZADA o FALLIDA
+     */
+    private TransferenciaEncolada esperarProcesada(Long id) throws InterruptedException {
+        for (int intento = 0; intento < 200; intento++) {
+            TransferenciaEncolada encolada = transferenciaService.findById(id);
+            if (encolada.getEstado() == EstadoEncolada.REALIZADA || encolada.getEstado() == EstadoEncolada.FALLIDA) {
+                return encolada;
+            }
+            Thread.sleep(50);
+        }
+        return fail("La transferencia " + id + " sigue sin procesar");
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.springboot.test;
+
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.services.IBancoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Prueba de carga de POST /api/cuentas/transferir contra la aplicacion embebida y H2.
+ * Las cuentas de origen y destino siguen una distribucion de Zipf, asi unas pocas cuentas calientes
+ * reciben la mayor parte de las transferencias. Al final se verifica que el dinero total no cambio,
+ * que el total de transferencias del banco coincide con las transferencias exitosas y que se cumplen
+ * el throughput minimo (carga.minimo-por-segundo) y la latencia p99 maxima (carga.p99-maximo-ms).
+ *
+ * Solo se ejecuta con el perfil carga: mvn -P carga test -Dcarga.clientes=64 -Dcarga.zipf=1.2
+ */
+@Tag("carga")
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "app.transferencias.bloqueo=${carga.bloqueo:pesimista}",
+        "spring.datasource.url=jdbc:h2:mem:carga;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "logging.level.org.hibernate.SQL=warn"
+})
+class TransferenciaCargaTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferenciaCargaTest.class);
+    private static final int CUENTAS = Integer.getInteger("carga.cuentas", 1000);
+    private static final int CLIENTES = Integer.getInteger("carga.clientes", 32);
+    private static final int TRANSFERENCIAS = Integer.getInteger("carga.transferencias", 20_000);
+    private static final double ZIPF = Double.parseDouble(System.getProperty("carga.zipf", "1.0"));
+    private static final int LOTE_CARGA = 500;
+    //Objetivos por defecto holgados para H2 en memoria, se ajustan por maquina con -D
+    private static final double MINIMO_POR_SEGUNDO = Double.parseDouble(System.getProperty("carga.minimo-por-segundo", "200"));
+    private static final double P99_MAXIMO_MS = Double.parseDouble(System.getProperty("carga.p99-maximo-ms", "500"));
+
+    @LocalServerPort
+    int puerto;
+
+    @PersistenceContext
+    EntityManager entityManager;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    IBancoService bancoService;
+
+    List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+
+        //Carga masiva en transacciones de 500 cuentas, hibernate agrupa los inserts en batch
+        List<Cuenta> cuentas = Datos.crearCuentas(CUENTAS, BigDecimal.valueOf(1_000_000));
+        ids = new ArrayList<>(CUENTAS);
+        for (int inicio = 0; inicio < cuentas.size(); inicio += LOTE_CARGA) {
+            List<Cuenta> lote = cuentas.subList(inicio, Math.min(inicio + LOTE_CARGA, cuentas.size()));
+            transactionTemplate.executeWithoutResult(status -> {
+                lote.forEach(entityManager::persist);
+                entityManager.flush();
+                lote.forEach(cuenta -> ids.add(cuenta.getId()));
+                entityManager.clear();
+            });
+        }
+
+    }
+
+    @Test
+    void testTransferenciasConCuentasCalientes() throws Exception {
+
+        BigDecimal saldoInicial = saldoTotal();
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+
+        GeneradorZipf zipf = new GeneradorZipf(ids.size(), ZIPF);
+        HttpClient cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        URI uri = URI.create("http://localhost:" + puerto + "/api/cuentas/transferir");
+
+        AtomicInteger pendientes = new AtomicInteger(TRANSFERENCIAS);
+        AtomicLong exitosas = new AtomicLong();
+        AtomicLong fallidas = new AtomicLong();
+        long[][] latencias = new long[CLIENTES][];
+
+        ExecutorService clientes = Executors.newFixedThreadPool(CLIENTES);
+        List<Future<?>> tareas = new ArrayList<>();
+        long inicio = System.nanoTime();
+        for (int c = 0; c < CLIENTES; c++) {
+            int numero = c;
+            tareas.add(clientes.submit(() -> {
+                long[] propias = new long[TRANSFERENCIAS];
+                int cantidad = 0;
+                while (pendientes.getAndDecrement() > 0) {
+                    int origen = zipf.siguiente();
+                    int destino = zipf.siguiente();
+                    while (destino == origen) {
+                        destino = zipf.siguiente();
+                    }
+                    String cuerpo = String.format("{\"cuentaOrigenId\":%d,\"cuentaDestinoId\":%d,\"bancoDestinoId\":1,\"monto\":%d}",
+                            ids.get(origen), ids.get(destino), 1 + ThreadLocalRandom.current().nextInt(100));
+                    HttpRequest peticion = HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                            .build();
+
+                    long antes = System.nanoTime();
+                    HttpResponse<Void> respuesta = cliente.send(peticion, HttpResponse.BodyHandlers.discarding());
+                    propias[cantidad++] = System.nanoTime() - antes;
+                    if (respuesta.statusCode() == 200) {
+                        exitosas.incrementAndGet();
+                    } else {
+                        fallidas.incrementAndGet();
+                    }
+                }
+                latencias[numero] = Arrays.copyOf(propias, cantidad);
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.MINUTES);
+        }
+        long duracion = System.nanoTime() - inicio;
+        clientes.shutdown();
+
+        long[] todas = Arrays.stream(latencias).flatMapToLong(Arrays::stream).sorted().toArray();
+        double porSegundo = todas.length / (duracion / 1e9);
+        double p99 = percentil(todas, 0.99);
+        log.info("Carga: {} cuentas, {} clientes, zipf {}, bloqueo {}",
+                CUENTAS, CLIENTES, ZIPF, System.getProperty("carga.bloqueo", "pesimista"));
+        log.info("Transferencias: {} exitosas, {} fallidas en {} ms -> {} por segundo",
+                exitosas.get(), fallidas.get(), TimeUnit.NANOSECONDS.toMillis(duracion), Math.round(porSegundo));
+        log.info("Latencia (ms): p50 {} p99 {} p999 {} max {}",
+                percentil(todas, 0.50), p99, percentil(todas, 0.999), percentil(todas, 1.0));
+
+        //Objetivos de rendimiento
+        assertTrue(porSegundo >= MINIMO_POR_SEGUNDO,
+                () -> String.format("%.0f transferencias por segundo, el minimo es %.0f", porSegundo, MINIMO_POR_SEGUNDO));
+        assertTrue(p99 <= P99_MAXIMO_MS,
+                () -> String.format("p99 de %.2f ms, el maximo es %.2f ms", p99, P99_MAXIMO_MS));
+
+        //Invariantes: el dinero no se crea ni se pierde y cada transferencia exitosa se conto una vez
+        assertEquals(TRANSFERENCIAS, todas.length);
+        assertTrue(exitosas.get() > 0);
+        assertEquals(0, saldoInicial.compareTo(saldoTotal()));
+        assertEquals(totalInicial + exitosas.get(), (long) bancoService.revisarTotalTransferencias(1L));
+
+    }
+
+    private BigDecimal saldoTotal() {
+        return jdbcTemplate.queryForObject("select sum(saldo) from cuentas", BigDecimal.class);
+    }
+
+    private static double percentil(long[] ordenadas, double percentil) {
+        int posicion = (int) Math.ceil(percentil * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, Math.min(posicion, ordenadas.length - 1))] / 1e6;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.ResultadoTransaccionDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.models.Movimiento;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.IMovimientoService;
+import com.springboot.test.services.MovimientoServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Prueba base para los modos de bloqueo, cada subclase indica el modo con @SpringBootTest
+ * y usa una base de datos propia para no alterar los datos de las demas pruebas
+ */
+abstract class TransferenciaConcurrente {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferenciaConcurrente.class);
+    private static final int HILOS = 8;
+    private static final int TRANSFERENCIAS_POR_HILO = 50;
+    //Lo que puede salir de cada cuenta si todas sus transferencias corren antes que las de vuelta
+    private static final BigDecimal SALDO_INICIAL = BigDecimal.TEN.multiply(BigDecimal.valueOf(HILOS / 2 * TRANSFERENCIAS_POR_HILO));
+
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    ICuentaService cuentaService;
+    @Autowired
+    IMovimientoService movimientoService;
+
+    /**
+     * Sin bloqueo dos cuentas compartidas por todos los hilos pueden agotar los reintentos,
+     * en los demas modos ninguna transferencia se abandona
+     */
+    boolean puedeAbandonarTransferencias() {
+        return false;
+    }
+
+    @Test
+    void testTransferenciasCruzadasConservanSaldos() throws Exception {
+
+        //Given
+        //Con saldo para todas las transferencias de ida, DineroInsuficienteException haria fallar la prueba
+        Long cuentaA = crearCuenta(SALDO_INICIAL.toPlainString());
+        Long cuentaB = crearCuenta(SALDO_INICIAL.toPlainString());
+        BigDecimal saldoInicial = saldoTotal();
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch inicio = new CountDownLatch(1);
+        AtomicInteger realizadas = new AtomicInteger();
+        AtomicInteger abandonadas = new AtomicInteger();
+        List<Future<?>> tareas = new ArrayList<>();
+
+        //When
+        for (int hilo = 0; hilo < HILOS; hilo++) {
+
+            //La mitad de los hilos transfiere de A a B y la otra mitad de B a A
+            Long origen = hilo % 2 == 0 ? cuentaA : cuentaB;
+            Long destino = hilo % 2 == 0 ? cuentaB : cuentaA;
+
+            tareas.add(executor.submit(() -> {
+                inicio.await();
+                for (int i = 0; i < TRANSFERENCIAS_POR_HILO; i++) {
+                    try {
+                        bancoService.transferir(1L, origen, destino, BigDecimal.TEN);
+                        realizadas.incrementAndGet();
+                    } catch (OptimisticLockingFailureException e) {
+                        abandonadas.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long t0 = System.nanoTime();
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        long milisegundos = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+        executor.shutdown();
+        log.info("{} transferencias en {} ms ({} tx/s), {} abandonadas", realizadas.get(), milisegundos,
+                realizadas.get() * 1000L / milisegundos, abandonadas.get());
+
+        //Then
+        if (!puedeAbandonarTransferencias()) {
+            assertEquals(0, abandonadas.get());
+            assertEquals(HILOS * TRANSFERENCIAS_POR_HILO, realizadas.get());
+            //Cada cuenta envio y recibio lo mismo
+            assertEquals(0, SALDO_INICIAL.compareTo(cuentaService.revisarSaldo(cuentaA)));
+            assertEquals(0, SALDO_INICIAL.compareTo(cuentaService.revisarSaldo(cuentaB)));
+        }
+        assertEquals(HILOS * TRANSFERENCIAS_POR_HILO, realizadas.get() + abandonadas.get());
+        //No se pierde ni se crea dinero
+        assertEquals(0, saldoInicial.compareTo(saldoTotal()));
+        //Entre las dos cuentas conservan lo que tenian al empezar
+        assertEquals(0, SALDO_INICIAL.multiply(BigDecimal.valueOf(2))
+                .compareTo(cuentaService.revisarSaldo(cuentaA).add(cuentaService.revisarSaldo(cuentaB))));
+        //No se pierde ninguna actualizacion del contador del banco
+        assertEquals(totalInicial + realizadas.get(), bancoService.revisarTotalTransferencias(1L));
+
+    }
+
+    /**
+     * El monto se redondea a centavos una sola vez: cada saldo cambia exactamente lo que suman sus movimientos
+     */
+    @Test
+    void testMontosConFraccionesDeCentavo() {
+
+        //Given
+        Long origen = crearCuenta("100");
+        Long destino = crearCuenta("0");
+
+        //When
+        for (String monto : new String[]{"0.125", "0.135", "10.005", "1.0049"}) {
+            bancoService.transferir(1L, origen, destino, new BigDecimal(monto));
+        }
+        List<ResultadoTransaccionDTO> resultados = bancoService.transferirLote(
+                List.of(new TransaccionDTO(origen, destino, 1L, new BigDecimal("2.675"))));
+
+        //Then
+        assertEquals(EstadoTransaccion.REALIZADA, resultados.get(0).getEstado());
+        BigDecimal debitos = sumaMovimientos(origen);
+        //0.12 + 0.14 + 10.00 + 1.00 + 2.68 (HALF_EVEN)
+        assertEquals(0, new BigDecimal("13.94").compareTo(debitos));
+        assertEquals(0, debitos.compareTo(sumaMovimientos(destino)));
+        assertEquals(0, new BigDecimal("100").subtract(debitos).compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, debitos.compareTo(cuentaService.revisarSaldo(destino)));
+
+    }
+
+    Long crearCuenta(String saldo) {
+        return cuentaService.guardar(Cuenta.builder()
+                .persona("Concurrente")
+                .saldo(new BigDecimal(saldo))
+                .build()).getId();
+    }
+
+    BigDecimal sumaMovimientos(Long cuentaId) {
+        return movimientoService.findPagina(cuentaId, null, MovimientoServiceImpl.LIMITE_MAXIMO).getContenido().stream()
+                .map(Movimiento::getMonto)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    BigDecimal saldoTotal() {
+        return cuentaService.findAll().stream()
+                .map(Cuenta::getSaldo)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.springboot.test;
+
+import com.springboot.test.config.CacheBancosConfig;
+import com.springboot.test.config.TransferenciaProperties;
+import com.springboot.test.config.TransferenciaProperties.ModoBloqueo;
+import com.springboot.test.exceptions.DineroInsuficienteException;
+import com.springboot.test.models.Banco;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.models.Movimiento;
+import com.springboot.test.repositories.BancoRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.transferencias.bloqueo=condicional",
+        "app.cache.bancos.estadisticas=true",
+        "spring.datasource.url=jdbc:h2:mem:condicional;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"
+})
+@Import(ContadorSentencias.class)
+class TransferenciaCondicionalTest extends TransferenciaConcurrente {
+
+    private static final int TRANSFERENCIAS = 10;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    BancoRepository bancoRepository;
+    @Autowired
+    ContadorSentencias contadorSentencias;
+    @Autowired
+    TransferenciaProperties transferenciaProperties;
+
+    @Test
+    void testTransferirActualizaAmbasCuentas() {
+
+        //Given
+        Long origen = crearCuenta("1000");
+        Long destino = crearCuenta("0");
+
+        //When
+        bancoService.transferir(1L, origen, destino, new BigDecimal("100"));
+
+        //Then
+        assertEquals(0, new BigDecimal("900").compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, new BigDecimal("100").compareTo(cuentaService.revisarSaldo(destino)));
+
+    }
+
+    @Test
+    void testDineroInsuficienteNoModificaLosSaldos() {
+
+        //Given
+        Long origen = crearCuenta("50");
+        Long destino = crearCuenta("0");
+
+        //When
+        assertThrows(DineroInsuficienteException.class,
+                () -> bancoService.transferir(1L, origen, destino, new BigDecimal("100")));
+
+        //Then
+        //El credito al destino se deshizo junto con la transaccion
+        assertEquals(0, new BigDecimal("50").compareTo(cuentaService.revisarSaldo(origen)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(cuentaService.revisarSaldo(destino)));
+
+    }
+
+    @Test
+    void testDestinoInexistenteNoModificaElOrigen() {
+
+        //Given
+        Long origen = crearCuenta("100");
+
+        //When
+        assertThrows(NoSuchElementException.class,
+                () -> bancoService.transferir(1L, origen, 999_999L, new BigDecimal("100")));
+
+        //Then
+        assertEquals(0, new BigDecimal("100").compareTo(cuentaService.revisarSaldo(origen)));
+
+    }
+
+    /**
+     * Todo lo que llega a la base, de hibernate y de JdbcTemplate (numeros de cambio incluidos),
+     * contra la misma medicion del camino que lee y guarda las cuentas (bloqueo=ninguno)
+     */
+    @Test
+    void testMenosSentenciasQueLeerYGuardarLasCuentas() {
+
+        //Given
+        Long origen = crearCuenta("1000000");
+        Long destino = crearCuenta("0");
+        //Los slots del contador y las entidades de la cache de bancos ya existen en ambas mediciones
+        transferir(origen, destino, 1);
+
+        //When
+        ContadorSentencias.Medicion leyendo = medir(ModoBloqueo.NINGUNO, origen, destino);
+        ContadorSentencias.Medicion condicional = medir(ModoBloqueo.CONDICIONAL, origen, destino);
+
+        //Then
+        String mediciones = leyendo + " / " + condicional;
+        //Sin bloqueo las cuentas cuestan 2 SELECT y 2 UPDATE (un batch): 4 sentencias en 3 viajes.
+        //Condicional: un solo UPDATE para las dos. Los movimientos y el contador son los mismos en ambos caminos.
+        assertEquals(2L * TRANSFERENCIAS, leyendo.getConsultas(), mediciones);
+        assertEquals(0, condicional.getConsultas(), mediciones);
+        assertEquals(leyendo.getSentencias() - leyendo.getSecuencias() - 3L * TRANSFERENCIAS,
+                condicional.getSentencias() - condicional.getSecuencias(), mediciones);
+        assertEquals(leyendo.getViajes() - leyendo.getSecuencias() - 2L * TRANSFERENCIAS,
+                condicional.getViajes() - condicional.getSecuencias(), mediciones);
+        //Los numeros de cambio y los ids de movimientos salen de bloques de 50: con 20 de cada uno
+        //cada medicion pide a lo sumo un bloque nuevo de cada secuencia
+        assertTrue(leyendo.getSecuencias() <= 2, mediciones);
+        assertTrue(condicional.getSecuencias() <= 2, mediciones);
+
+    }
+
+    @Test
+    void testSinLeerCuentasNiInvalidarLaCacheDelBanco() {
+
+        //Given
+        Long origen = crearCuenta("1000000");
+        Long destino = crearCuenta("0");
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        bancoRepository.findAll();
+        bancoService.findById(1L);
+        estadisticas.clear();
+
+        //When
+        transferir(origen, destino, TRANSFERENCIAS);
+
+        //Then
+        assertEquals(0, estadisticas.getEntityStatistics(Cuenta.class.getName()).getLoadCount());
+        assertEquals(2L * TRANSFERENCIAS, estadisticas.getEntityStatistics(Movimiento.class.getName()).getInsertCount());
+        //Ninguna sentencia toca la tabla bancos: la entidad y la consulta siguen en la cache
+        assertTrue(entityManagerFactory.getCache().contains(Banco.class, 1L));
+        bancoRepository.findAll();
+        assertEquals(1, estadisticas.getQueryCacheHitCount());
+        assertEquals(0, estadisticas.getDomainDataRegionStatistics(CacheBancosConfig.REGION_BANCOS).getPutCount());
+
+    }
+
+    private ContadorSentencias.Medicion medir(ModoBloqueo modo, Long origen, Long destino) {
+        ModoBloqueo anterior = transferenciaProperties.getBloqueo();
+        transferenciaProperties.setBloqueo(modo);
+        try {
+            contadorSentencias.reiniciar();
+            transferir(origen, destino, TRANSFERENCIAS);
+            return contadorSentencias.medicion();
+        } finally {
+            transferenciaProperties.setBloqueo(anterior);
+        }
+    }
+
+    private void transferir(Long origen, Long destino, int veces) {
+        for (int i = 0; i < veces; i++) {
+            bancoService.transferir(1L, origen, destino, BigDecimal.ONE);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.springboot.test;
+
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.ResultadoTransaccionDTO;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.springboot.test.dto.EstadoTransaccion.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * transferirLote con bloques de 3 transacciones: un lote de 8 ocupa 3 bloques y cada uno es una transaccion
+ */
+@SpringBootTest(properties = {
+        "app.transferencias.lote.tamanio=3",
+        "spring.datasource.url=jdbc:h2:mem:lote;DB_CLOSE_DELAY=-1"
+})
+class TransferenciaLoteTest {
+
+    @Autowired
+    IBancoService bancoService;
+    @Autowired
+    ICuentaService cuentaService;
+
+    @Test
+    void testLoteMixtoEnVariosBloques() {
+
+        //Given
+        Long a = crearCuenta("1000");
+        Long b = crearCuenta("0");
+        Long c = crearCuenta("50");
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+        List<TransaccionDTO> lote = List.of(
+                //Bloque 1
+                transaccion(a, b, 1L, "100"),
+                transaccion(a, 999999L, 1L, "10"),
+                transaccion(a, b, 1L, "-5"),
+                //Bloque 2: usa el saldo que dejo el bloque 1 en la cuenta b
+                transaccion(b, a, 1L, "30"),
+                transaccion(a, b, 1L, "0"),
+                transaccion(a, b, 999L, "10"),
+                //Bloque 3
+                transaccion(c, a, 1L, "1000"),
+                transaccion(c, b, 1L, "50"));
+
+        //When
+        List<ResultadoTransaccionDTO> resultados = bancoService.transferirLote(lote);
+
+        //Then
+        assertEquals(lote.size(), resultados.size());
+        List<EstadoTransaccion> esperados = List.of(
+                REALIZADA, NO_ENCONTRADA, INVALIDA,
+                REALIZADA, INVALIDA, NO_ENCONTRADA,
+                DINERO_INSUFICIENTE, REALIZADA);
+        for (int i = 0; i < esperados.size(); i++) {
+            assertEquals(i, resultados.get(i).getIndice());
+            assertEquals(esperados.get(i), resultados.get(i).getEstado(), "transaccion " + i);
+        }
+        //Solo las realizadas mueven dinero
+        assertEquals(0, new BigDecimal("930").compareTo(cuentaService.revisarSaldo(a)));
+        assertEquals(0, new BigDecimal("120").compareTo(cuentaService.revisarSaldo(b)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(cuentaService.revisarSaldo(c)));
+        //El contador del banco suma las realizadas de todos los bloques
+        assertEquals(totalInicial + 3, bancoService.revisarTotalTransferencias(1L));
+
+    }
+
+    @Test
+    void testBloqueSinRealizadas() {
+
+        //Given
+        Long a = crearCuenta("10");
+        Long b = crearCuenta("0");
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+
+        //When
+        List<ResultadoTransaccionDTO> resultados = bancoService.transferirLote(List.of(
+                transaccion(a, b, 1L, "20"),
+                transaccion(999999L, b, 1L, "1"),
+                transaccion(a, b, 1L, "-1"),
+                transaccion(a, b, 1L, "10")));
+
+        //Then
+        assertEquals(List.of(DINERO_INSUFICIENTE, NO_ENCONTRADA, INVALIDA, REALIZADA),
+                List.of(resultados.get(0).getEstado(), resultados.get(1).getEstado(),
+                        resultados.get(2).getEstado(), resultados.get(3).getEstado()));
+        assertEquals(3, resultados.get(3).getIndice());
+        assertEquals(0, BigDecimal.ZERO.compareTo(cuentaService.revisarSaldo(a)));
+        assertEquals(0, BigDecimal.TEN.compareTo(cuentaService.revisarSaldo(b)));
+        assertEquals(totalInicial + 1, bancoService.revisarTotalTransferencias(1L));
+
+    }
+
+    private static TransaccionDTO transaccion(Long origen, Long destino, Long banco, String monto) {
+        return TransaccionDTO.builder()
+                .cuentaOrigenId(origen)
+                .cuentaDestinoId(destino)
+                .bancoDestinoId(banco)
+                .monto(new BigDecimal(monto))
+                .build();
+    }
+
+    private Long crearCuenta(String saldo) {
+        return cuentaService.guardar(Cuenta.builder()
+                .persona("Lote")
+                .saldo(new BigDecimal(saldo))
+                .build()).getId();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.springboot.test;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Todas las transferencias actualizan la fila del banco, por eso se permiten mas reintentos.
+ * MV_STORE=FALSE -> Con MVStore, H2 1.4.200 puede perder el UPDATE del contador de una transaccion que esperaba
+ * la fila cuando la que la tenia bloqueada hace rollback, y aqui casi cada conflicto de @Version termina en rollback
+ */
+@SpringBootTest(properties = {
+        "app.transferencias.bloqueo=optimista",
+        "app.transferencias.reintentos.maximo=100",
+        "app.transferencias.reintentos.espera-maxima=20ms",
+        "spring.datasource.url=jdbc:h2:mem:optimista;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;MV_STORE=FALSE"
+})
+class TransferenciaOptimistaTest extends TransferenciaConcurrente {
+
+}
@@ -0,0 +1,14 @@
+package com.springboot.test;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * LOCK_TIMEOUT -> Tiempo que espera una transaccion por una fila bloqueada antes de fallar
+ */
+@SpringBootTest(properties = {
+        "app.transferencias.bloqueo=pesimista",
+        "spring.datasource.url=jdbc:h2:mem:pesimista;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"
+})
+class TransferenciaPesimistaTest extends TransferenciaConcurrente {
+
+}
@@ -0,0 +1,80 @@
+package com.springboot.test;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Configuracion por defecto (bloqueo=ninguno, contador=fila): el @Version de las cuentas y la fila
+ * unica del contador son los puntos de conflicto, los reintentos deben absorberlos.
+ * Sin MVStore por lo mismo que en TransferenciaOptimistaTest: los rollbacks no deben perder incrementos del contador
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sinbloqueo;DB_CLOSE_DELAY=-1;MV_STORE=FALSE"
+})
+class TransferenciaSinBloqueoTest extends TransferenciaConcurrente {
+
+    private static final int PARES = 8;
+    private static final int TRANSFERENCIAS_POR_PAR = 50;
+
+    @Override
+    boolean puedeAbandonarTransferencias() {
+        //Con 5 reintentos por defecto los 8 hilos sobre las mismas dos cuentas pueden agotarlos
+        return true;
+    }
+
+    @Test
+    void testParesDistintosSinFallas() throws Exception {
+
+        //Given
+        //Cada hilo usa un par de cuentas propio, todos incrementan el contador del mismo banco
+        List<Long[]> pares = new ArrayList<>();
+        for (int i = 0; i < PARES; i++) {
+            pares.add(new Long[]{crearCuenta("1000"), crearCuenta("0")});
+        }
+        BigDecimal saldoInicial = saldoTotal();
+        int totalInicial = bancoService.revisarTotalTransferencias(1L);
+        ExecutorService executor = Executors.newFixedThreadPool(PARES);
+        CountDownLatch inicio = new CountDownLatch(1);
+        AtomicInteger fallidas = new AtomicInteger();
+        List<Future<?>> tareas = new ArrayList<>();
+
+        //When
+        for (Long[] par : pares) {
+            tareas.add(executor.submit(() -> {
+                inicio.await();
+                for (int i = 0; i < TRANSFERENCIAS_POR_PAR; i++) {
+                    try {
+                        bancoService.transferir(1L, par[0], par[1], BigDecimal.ONE);
+                    } catch (RuntimeException e) {
+                        fallidas.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //Then
+        assertEquals(0, fallidas.get());
+        assertEquals(0, saldoInicial.compareTo(saldoTotal()));
+        assertEquals(totalInicial + PARES * TRANSFERENCIAS_POR_PAR, bancoService.revisarTotalTransferencias(1L));
+        for (Long[] par : pares) {
+            assertEquals(0, new BigDecimal(1000 - TRANSFERENCIAS_POR_PAR).compareTo(cuentaService.revisarSaldo(par[0])));
+            assertEquals(0, new BigDecimal(TRANSFERENCIAS_POR_PAR).compareTo(cuentaService.revisarSaldo(par[1])));
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.TestSpringbootApplication;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compara el throughput de transferir con el contador del banco en una sola fila
+ * contra el contador particionado y el acumulado en memoria.
+ * Cada hilo transfiere entre sus propias cuentas, asi la unica fila compartida es la del contador.
+ * cacheBancos compara con y sin la cache de segundo nivel de Banco: el contador no esta en Banco,
+ * asi que en los tres modos las transferencias solo leen la entrada cacheada.
+ *
+ * Ejecutar: java -cp target/test-classes:<classpath de test> org.openjdk.jmh.Main ContadorTransferenciaBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(8)
+public class ContadorTransferenciaBenchmark {
+
+    private static final int MAX_HILOS = 128;
+
+    @Param({"fila", "particionado", "memoria"})
+    public String modo;
+
+    @Param({"true", "false"})
+    public boolean cacheBancos;
+
+    ConfigurableApplicationContext contexto;
+    IBancoService bancoService;
+    final List<Long> cuentas = new ArrayList<>();
+    final AtomicInteger siguientePar = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+
+        contexto = new SpringApplicationBuilder(TestSpringbootApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "app.transferencias.bloqueo=pesimista",
+                        "app.transferencias.contador.modo=" + modo,
+                        "app.cache.bancos.habilitado=" + cacheBancos,
+                        "spring.datasource.url=jdbc:h2:mem:contador-" + modo + "-" + cacheBancos
+                                + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                        "logging.level.root=warn",
+                        "logging.level.org.hibernate.SQL=warn")
+                .run();
+
+        bancoService = contexto.getBean(IBancoService.class);
+        ICuentaService cuentaService = contexto.getBean(ICuentaService.class);
+        for (int i = 0; i < MAX_HILOS * 2; i++) {
+            Cuenta cuenta = cuentaService.guardar(Cuenta.builder()
+                    .persona("Benchmark " + i)
+                    .saldo(BigDecimal.valueOf(1_000_000))
+                    .build());
+            cuentas.add(cuenta.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        contexto.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Hilo {
+
+        long origen;
+        long destino;
+
+        @Setup(Level.Trial)
+        public void iniciar(ContadorTransferenciaBenchmark benchmark) {
+            int par = benchmark.siguientePar.getAndIncrement() % MAX_HILOS;
+            origen = benchmark.cuentas.get(par * 2);
+            destino = benchmark.cuentas.get(par * 2 + 1);
+        }
+
+    }
+
+    @Benchmark
+    public void transferir(Hilo hilo) {
+
+        bancoService.transferir(1L, hilo.origen, hilo.destino, BigDecimal.ONE);
+
+        //Se invierte el sentido para que las cuentas nunca se queden sin saldo
+        long origen = hilo.origen;
+        hilo.origen = hilo.destino;
+        hilo.destino = origen;
+
+    }
+
+}
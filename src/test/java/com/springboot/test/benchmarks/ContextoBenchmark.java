@@ -0,0 +1,79 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.TestSpringbootApplication;
+import com.springboot.test.models.Cuenta;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Arranque y datos comunes de los benchmarks que usan el contexto de spring
+ */
+final class ContextoBenchmark {
+
+    private static final int LOTE = 500;
+
+    private ContextoBenchmark() {
+    }
+
+    /**
+     * Aplicacion sin servidor web, con una base de datos H2 propia para cada trial
+     */
+    static ConfigurableApplicationContext iniciar(String baseDatos, String... propiedades) {
+
+        List<String> todas = new ArrayList<>(Arrays.asList(
+                "spring.datasource.url=jdbc:h2:mem:" + baseDatos + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "logging.level.root=warn",
+                "logging.level.org.hibernate.SQL=warn"));
+        todas.addAll(Arrays.asList(propiedades));
+
+        return new SpringApplicationBuilder(TestSpringbootApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(todas.toArray(new String[0]))
+                .run();
+    }
+
+    /**
+     * Crea las cuentas "Benchmark 0".."Benchmark n-1" con saldo de sobra, en transacciones de 500
+     * para que hibernate agrupe los inserts. Devuelve los ids en el orden de creacion.
+     */
+    static List<Long> crearCuentas(ConfigurableApplicationContext contexto, int cantidad) {
+
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                contexto.getBean(EntityManagerFactory.class));
+        TransactionTemplate transaccion = new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class));
+        List<Long> ids = new ArrayList<>(cantidad);
+
+        for (int inicio = 0; inicio < cantidad; inicio += LOTE) {
+            int fin = Math.min(inicio + LOTE, cantidad);
+            int desde = inicio;
+            transaccion.executeWithoutResult(status -> {
+                List<Cuenta> lote = new ArrayList<>(fin - desde);
+                for (int i = desde; i < fin; i++) {
+                    Cuenta cuenta = Cuenta.builder()
+                            .persona("Benchmark " + i)
+                            .saldo(BigDecimal.valueOf(1_000_000_000L))
+                            .build();
+                    entityManager.persist(cuenta);
+                    lote.add(cuenta);
+                }
+                entityManager.flush();
+                lote.forEach(cuenta -> ids.add(cuenta.getId()));
+                entityManager.clear();
+            });
+        }
+
+        return ids;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.TestSpringbootApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara CuentaController (tomcat) con CuentaReactivaController (netty) en las mismas rutas.
+ * SampleTime entrega el throughput y los percentiles de latencia (p50, p99, p99.9).
+ * Subir @Threads (o -t) para ver como se comporta cada servidor con mas clientes concurrentes.
+ *
+ * Ejecutar: java -cp target/test-classes:<classpath de test> org.openjdk.jmh.Main CuentaWebBenchmark -t 64
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(16)
+public class CuentaWebBenchmark {
+
+    @Param({"mvc", "reactivo"})
+    public String servidor;
+
+    ConfigurableApplicationContext contexto;
+    HttpClient cliente;
+    HttpRequest detalle;
+    HttpRequest pagina;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+
+        contexto = new SpringApplicationBuilder(TestSpringbootApplication.class)
+                .web("reactivo".equals(servidor) ? WebApplicationType.REACTIVE : WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:web-" + servidor + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.root=warn",
+                        "logging.level.org.hibernate.SQL=warn")
+                .run();
+
+        String base = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port") + "/api/cuentas";
+        cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        detalle = HttpRequest.newBuilder(URI.create(base + "/1")).GET().build();
+        pagina = HttpRequest.newBuilder(URI.create(base + "?limit=50")).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public int detalle() throws Exception {
+        return cliente.send(detalle, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+    @Benchmark
+    public int listarPagina() throws Exception {
+        return cliente.send(pagina, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+}
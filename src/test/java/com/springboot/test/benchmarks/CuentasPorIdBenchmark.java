@@ -0,0 +1,98 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.TestSpringbootApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Lo que tarda una pantalla en obtener el saldo de N cuentas:
+ * N peticiones GET /api/cuentas/{id} contra una sola GET /api/cuentas?ids=... o POST /api/cuentas/varias.
+ *
+ * Ejecutar: mvn -P benchmark verify -Djmh.incluir=CuentasPorIdBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class CuentasPorIdBenchmark {
+
+    private static final int CUENTAS = 10_000;
+
+    @Param({"50", "200"})
+    public int cantidad;
+
+    ConfigurableApplicationContext contexto;
+    HttpClient cliente;
+    List<HttpRequest> detalles;
+    HttpRequest porIds;
+    HttpRequest porIdsPost;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+
+        contexto = new SpringApplicationBuilder(TestSpringbootApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:cuentas-por-id-" + cantidad + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.root=warn",
+                        "logging.level.org.hibernate.SQL=warn")
+                .run();
+
+        //Ids al azar entre las cuentas creadas, como los de una pantalla cualquiera
+        List<Long> ids = new ArrayList<>(ContextoBenchmark.crearCuentas(contexto, CUENTAS));
+        Collections.shuffle(ids);
+        ids = ids.subList(0, cantidad);
+
+        String base = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port") + "/api/cuentas";
+        String lista = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        detalles = ids.stream()
+                .map(id -> HttpRequest.newBuilder(URI.create(base + "/" + id)).GET().build())
+                .collect(Collectors.toList());
+        porIds = HttpRequest.newBuilder(URI.create(base + "?ids=" + lista)).GET().build();
+        porIdsPost = HttpRequest.newBuilder(URI.create(base + "/varias"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[" + lista + "]"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public int unaPeticionPorCuenta() throws Exception {
+        int estados = 0;
+        for (HttpRequest detalle : detalles) {
+            estados += cliente.send(detalle, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+        }
+        return estados;
+    }
+
+    @Benchmark
+    public int listarPorIds() throws Exception {
+        return cliente.send(porIds, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+    @Benchmark
+    public int buscarPorIdsPost() throws Exception {
+        return cliente.send(porIdsPost, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+}
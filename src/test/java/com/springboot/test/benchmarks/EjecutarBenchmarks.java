@@ -0,0 +1,40 @@
+package com.springboot.test.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Ejecuta los benchmarks una vez por cada cantidad de hilos y guarda los resultados en JSON
+ * (target/jmh/resultados-hilos-N.json), para comparar entre commits.
+ *
+ * mvn -P benchmark verify -Djmh.incluir=TransferirBenchmark -Djmh.hilos=1,8
+ */
+public class EjecutarBenchmarks {
+
+    public static void main(String[] args) throws RunnerException {
+
+        String incluir = System.getProperty("jmh.incluir", ".*Benchmark");
+        File carpeta = new File(System.getProperty("jmh.resultados", "target/jmh"));
+        if (!carpeta.isDirectory() && !carpeta.mkdirs()) {
+            throw new IllegalStateException("No se pudo crear " + carpeta);
+        }
+
+        for (String valor : System.getProperty("jmh.hilos", "1").split(",")) {
+            int hilos = Integer.parseInt(valor.trim());
+            Options opciones = new OptionsBuilder()
+                    .include(incluir)
+                    .threads(hilos)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(carpeta, "resultados-hilos-" + hilos + ".json").getPath())
+                    .build();
+            new Runner(opciones).run();
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.services.IExportacionCuentaService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput de la exportacion de cuentas. El contador bytes se reporta como bytes por segundo
+ * (dividir por 1e6 para MB/s), con -prof gc se verifica que la memoria asignada no crece con la tabla.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(1)
+public class ExportacionBenchmark {
+
+    @Param({"100000"})
+    public int cuentas;
+
+    @Param({"csv", "binario"})
+    public String formato;
+
+    ConfigurableApplicationContext contexto;
+    IExportacionCuentaService exportacionService;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = ContextoBenchmark.iniciar("exportacion-" + cuentas + "-" + formato);
+        exportacionService = contexto.getBean(IExportacionCuentaService.class);
+        ContextoBenchmark.crearCuentas(contexto, cuentas);
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        contexto.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Salida extends OutputStream {
+
+        public long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+
+    }
+
+    @Benchmark
+    public long exportar(Salida salida) {
+        return "binario".equals(formato)
+                ? exportacionService.exportarBinario(salida, null, null)
+                : exportacionService.exportarCsv(salida, null, null);
+    }
+
+}
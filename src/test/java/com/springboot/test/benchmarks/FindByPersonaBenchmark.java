@@ -0,0 +1,46 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.repositories.CuentaRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CuentaRepository.findByPersona con una persona al azar, usa el indice idx_cuentas_persona
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class FindByPersonaBenchmark {
+
+    @Param({"100", "10000"})
+    public int cuentas;
+
+    ConfigurableApplicationContext contexto;
+    CuentaRepository cuentaRepository;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        contexto = ContextoBenchmark.iniciar("persona-" + cuentas);
+        cuentaRepository = contexto.getBean(CuentaRepository.class);
+        ContextoBenchmark.crearCuentas(contexto, cuentas);
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Optional<Cuenta> findByPersona() {
+        return cuentaRepository.findByPersona("Benchmark " + ThreadLocalRandom.current().nextInt(cuentas));
+    }
+
+}
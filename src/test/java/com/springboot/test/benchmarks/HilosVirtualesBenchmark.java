@@ -0,0 +1,135 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.TestSpringbootApplication;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CuentaController con hilos de plataforma en tomcat contra el mismo controller con hilos virtuales.
+ * Tomcat tiene un hilo por cada CLIENTES_POR_HILO clientes (-t), asi en modo plataforma las peticiones
+ * hacen cola en tomcat y en modo virtuales solo esperan una conexion, con cualquier cantidad de hilos.
+ * JMH informa throughput y percentiles de latencia; con -prof gc la memoria asignada por operacion, que es
+ * tasa de asignacion y no huella. La huella con todas las peticiones en curso se muestrea cada 100 ms y se
+ * imprime al final de cada iteracion: hilos de plataforma, heap que queda despues de cada GC y RSS
+ * del proceso (Linux), todos como maximo de la iteracion. Los clientes corren en el mismo proceso y
+ * cuentan igual en ambos modos, la diferencia entre modos es la del servidor.
+ *
+ * Requiere Java 21 para el modo virtuales (mvn -P hilos-virtuales).
+ * mvn -P benchmark,hilos-virtuales verify -Djmh.incluir=HilosVirtualesBenchmark -Djmh.hilos=64,256
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(256)
+public class HilosVirtualesBenchmark {
+
+    private static final int CLIENTES_POR_HILO = 8;
+    private static final long MB = 1024 * 1024;
+
+    @Param({"plataforma", "virtuales"})
+    public String hilos;
+
+    ConfigurableApplicationContext contexto;
+    HttpClient cliente;
+    HttpRequest pagina;
+    ScheduledExecutorService muestreo;
+    final AtomicLong hilosPlataforma = new AtomicLong();
+    final AtomicLong heapTrasGc = new AtomicLong();
+    final AtomicLong rss = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void iniciar(BenchmarkParams parametros) {
+
+        int hilosTomcat = Math.max(1, parametros.getThreads() / CLIENTES_POR_HILO);
+        contexto = new SpringApplicationBuilder(TestSpringbootApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + hilosTomcat,
+                        "app.hilos-virtuales.habilitado=" + "virtuales".equals(hilos),
+                        "spring.datasource.url=jdbc:h2:mem:hilos-" + hilos + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.root=warn",
+                        "logging.level.org.hibernate.SQL=warn")
+                .run();
+
+        String base = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port") + "/api/cuentas";
+        cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        pagina = HttpRequest.newBuilder(URI.create(base + "?limit=50")).GET().build();
+
+        muestreo = Executors.newSingleThreadScheduledExecutor();
+        muestreo.scheduleAtFixedRate(this::muestrear, 100, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void informarHuella(BenchmarkParams parametros) {
+        System.out.printf("%nHuella %s con %d clientes: %d hilos de plataforma, heap tras GC %d MB, RSS %d MB%n",
+                hilos, parametros.getThreads(), hilosPlataforma.getAndSet(0),
+                heapTrasGc.getAndSet(0) / MB, rss.getAndSet(0) / MB);
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        muestreo.shutdownNow();
+        contexto.close();
+    }
+
+    @Benchmark
+    public int listarPagina() throws Exception {
+        return cliente.send(pagina, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+    /**
+     * Los hilos virtuales no cuentan en ThreadMXBean. El heap tras GC es lo que sobrevivio a la ultima
+     * coleccion de cada pool, sin la basura que aun no se recolecta.
+     */
+    private void muestrear() {
+        hilosPlataforma.accumulateAndGet(ManagementFactory.getThreadMXBean().getThreadCount(), Math::max);
+        long heap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage trasGc = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && trasGc != null) {
+                heap += trasGc.getUsed();
+            }
+        }
+        heapTrasGc.accumulateAndGet(heap, Math::max);
+        rss.accumulateAndGet(leerRss(), Math::max);
+    }
+
+    /**
+     * VmRSS de /proc/self/status en bytes, 0 fuera de Linux
+     */
+    private static long leerRss() {
+        try {
+            return Files.readAllLines(Path.of("/proc/self/status")).stream()
+                    .filter(linea -> linea.startsWith("VmRSS:"))
+                    .mapToLong(linea -> Long.parseLong(linea.replaceAll("\\D", "")) * 1024)
+                    .findFirst()
+                    .orElse(0);
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.springboot.test.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.Cuenta;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializacion de las respuestas de CuentaController con la misma configuracion de jackson
+ * que usa spring boot (Jackson2ObjectMapperBuilder)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"10", "1000"})
+    public int cuentas;
+
+    ObjectMapper objectMapper;
+    List<Cuenta> listaCuentas;
+    Map<String, Object> respuestaTransferir;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        listaCuentas = new ArrayList<>(cuentas);
+        for (long i = 1; i <= cuentas; i++) {
+            listaCuentas.add(Cuenta.builder()
+                    .id(i)
+                    .persona("Benchmark " + i)
+                    .saldo(new BigDecimal("1000.50"))
+                    .version(0L)
+                    .build());
+        }
+
+        //Misma estructura que arma CuentaController al transferir
+        respuestaTransferir = new HashMap<>();
+        respuestaTransferir.put("date", LocalDate.now().toString());
+        respuestaTransferir.put("status", "OK");
+        respuestaTransferir.put("mensaje", "Transferencia realizada con éxito!");
+        respuestaTransferir.put("transaccion", TransaccionDTO.builder()
+                .cuentaOrigenId(1L)
+                .cuentaDestinoId(2L)
+                .bancoDestinoId(1L)
+                .monto(new BigDecimal("100"))
+                .build());
+    }
+
+    @Benchmark
+    public byte[] listaCuentas() throws Exception {
+        return objectMapper.writeValueAsBytes(listaCuentas);
+    }
+
+    @Benchmark
+    public byte[] respuestaTransferir() throws Exception {
+        return objectMapper.writeValueAsBytes(respuestaTransferir);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.springboot.test.benchmarks;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de medir un metodo con @Timed (histograma incluido) comparado con el mismo metodo
+ * sin proxy y con proxy pero sin anotacion. La diferencia entre medido y proxySinMetricas
+ * es lo que agrega TimedAspect a cada llamada de los services.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricasBenchmark {
+
+    public static class Operacion {
+
+        public long sinMetricas(long valor) {
+            return valor * 31 + 7;
+        }
+
+        @Timed(value = "benchmark.operacion", histogram = true)
+        public long conMetricas(long valor) {
+            return valor * 31 + 7;
+        }
+
+    }
+
+    Operacion directa;
+    Operacion proxy;
+    long valor;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+        directa = new Operacion();
+        AspectJProxyFactory fabrica = new AspectJProxyFactory(new Operacion());
+        fabrica.setProxyTargetClass(true);
+        fabrica.addAspect(new TimedAspect(new SimpleMeterRegistry()));
+        proxy = fabrica.getProxy();
+    }
+
+    @Benchmark
+    public long directo() {
+        return directa.sinMetricas(valor++);
+    }
+
+    @Benchmark
+    public long proxySinMetricas() {
+        return proxy.sinMetricas(valor++);
+    }
+
+    @Benchmark
+    public long medido() {
+        return proxy.conMetricas(valor++);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.models.Centavos;
+import com.springboot.test.models.Cuenta;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara debito, credito y comparacion de saldos con BigDecimal contra centavos en long.
+ * Con -prof gc se ve ademas la memoria asignada por operacion.
+ *
+ * Ejecutar: java -cp target/test-classes:<classpath de test> org.openjdk.jmh.Main SaldoBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaldoBenchmark {
+
+    @Param({"100", "100.50"})
+    public String monto;
+
+    BigDecimal saldoDecimal;
+    BigDecimal montoDecimal;
+    long saldoCentavos;
+    long montoCentavos;
+    Cuenta cuenta;
+
+    @Setup(Level.Iteration)
+    public void iniciar() {
+        saldoDecimal = new BigDecimal("1000000000");
+        montoDecimal = new BigDecimal(monto);
+        saldoCentavos = Centavos.de(saldoDecimal);
+        montoCentavos = Centavos.de(montoDecimal);
+        cuenta = Cuenta.builder().persona("Benchmark").saldo(saldoDecimal).build();
+    }
+
+    @Benchmark
+    public BigDecimal debitoBigDecimal() {
+        if (montoDecimal.compareTo(saldoDecimal) > 0) {
+            throw new IllegalStateException();
+        }
+        BigDecimal resultado = saldoDecimal.subtract(montoDecimal);
+        return resultado.add(montoDecimal);
+    }
+
+    @Benchmark
+    public long debitoCentavos() {
+        if (montoCentavos > saldoCentavos) {
+            throw new IllegalStateException();
+        }
+        long resultado = Centavos.restar(saldoCentavos, montoCentavos);
+        return Centavos.sumar(resultado, montoCentavos);
+    }
+
+    /**
+     * Lo que cuesta en la entidad, que recibe y devuelve BigDecimal
+     */
+    @Benchmark
+    public BigDecimal debitoCreditoCuenta() {
+        cuenta.debito(montoDecimal);
+        cuenta.credito(montoDecimal);
+        return cuenta.getSaldo();
+    }
+
+    @Benchmark
+    public int compararBigDecimal() {
+        return montoDecimal.compareTo(saldoDecimal);
+    }
+
+    @Benchmark
+    public int compararCentavos() {
+        return Long.compare(montoCentavos, saldoCentavos);
+    }
+
+}
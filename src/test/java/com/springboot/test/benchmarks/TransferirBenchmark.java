@@ -0,0 +1,64 @@
+package com.springboot.test.benchmarks;
+
+import com.springboot.test.services.IBancoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BancoServiceImpl.transferir contra H2 en memoria entre dos cuentas al azar.
+ * Con pocas cuentas y varios hilos aumentan los conflictos entre transferencias.
+ * Con motor=particionado el bloqueo no se usa: cada cuenta la modifica solo el hilo de su particion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TransferirBenchmark {
+
+    @Param({"100", "10000"})
+    public int cuentas;
+
+    @Param({"ninguno", "pesimista"})
+    public String bloqueo;
+
+    @Param({"transaccional", "particionado"})
+    public String motor;
+
+    ConfigurableApplicationContext contexto;
+    IBancoService bancoService;
+    long[] ids;
+
+    @Setup(Level.Trial)
+    public void iniciar() {
+
+        contexto = ContextoBenchmark.iniciar("transferir-" + cuentas + "-" + bloqueo + "-" + motor,
+                "app.transferencias.bloqueo=" + bloqueo,
+                "app.transferencias.motor=" + motor);
+        bancoService = contexto.getBean(IBancoService.class);
+        List<Long> creadas = ContextoBenchmark.crearCuentas(contexto, cuentas);
+        ids = creadas.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public void transferir() {
+
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        int origen = aleatorio.nextInt(ids.length);
+        int destino = (origen + 1 + aleatorio.nextInt(ids.length - 1)) % ids.length;
+        bancoService.transferir(1L, ids[origen], ids[destino], BigDecimal.ONE);
+
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET condicionales contra la base de datos: el ETag cambia con cada escritura confirmada
+ */
+@SpringBootTest(properties = {
+        "app.cache.bancos.estadisticas=true",
+        "spring.datasource.url=jdbc:h2:mem:etag;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+class CuentaControllerEtagTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ICuentaService cuentaService;
+    @Autowired
+    private IBancoService bancoService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testDetalleCambiaConLaVersion() throws Exception {
+
+        //Given
+        Long origen = crearCuenta("1000");
+        Long destino = crearCuenta("0");
+        String etag = etag("/api/cuentas/" + origen);
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        //When
+        estadisticas.clear();
+        mockMvc.perform(get("/api/cuentas/" + origen).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        long cuentasCargadas = estadisticas.getEntityStatistics(Cuenta.class.getName()).getLoadCount();
+
+        bancoService.transferir(1L, origen, destino, new BigDecimal("100"));
+
+        //Then
+        //El 304 solo consulto la version
+        assertEquals(0, cuentasCargadas);
+        String nuevo = mockMvc.perform(get("/api/cuentas/" + origen).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, nuevo);
+
+    }
+
+    @Test
+    void testListarCambiaConCadaEscritura() throws Exception {
+
+        //Given
+        crearCuenta("10");
+        String etag = etag("/api/cuentas");
+
+        //When
+        mockMvc.perform(get("/api/cuentas").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        crearCuenta("20");
+
+        //Then
+        String nuevo = mockMvc.perform(get("/api/cuentas").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, nuevo);
+
+    }
+
+    @Test
+    void testListarCambiaConUnaTransferencia() throws Exception {
+
+        //Given
+        Long origen = crearCuenta("100");
+        Long destino = crearCuenta("0");
+        String etag = etag("/api/cuentas");
+        Instant antes = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        //When
+        bancoService.transferir(1L, origen, destino, new BigDecimal("10"));
+
+        //Then
+        String nuevo = mockMvc.perform(get("/api/cuentas").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, nuevo);
+        //Last-Modified de la transferencia con el mismo reloj que las demas escrituras
+        long modificado = mockMvc.perform(get("/api/cuentas/" + origen))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getDateHeader("Last-Modified");
+        assertTrue(modificado >= antes.toEpochMilli());
+
+    }
+
+    @Test
+    void testListarCambiaConUnaEscrituraFueraDeLaAplicacion() throws Exception {
+
+        //Given
+        crearCuenta("10");
+        String etag = etag("/api/cuentas");
+
+        //When
+        //Como la importacion o SQL directo: no pasa por el servicio ni toma numero de cambio
+        jdbcTemplate.update("insert into cuentas (id, persona, persona_normalizada, saldo, version) " +
+                "values (900001, 'Externa', 'externa', 5, 0)");
+
+        //Then
+        mockMvc.perform(get("/api/cuentas").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+    }
+
+    private String etag(String ruta) throws Exception {
+        String etag = mockMvc.perform(get(ruta))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        return etag;
+    }
+
+    private Long crearCuenta(String saldo) {
+        return cuentaService.guardar(Cuenta.builder()
+                .persona("Etag")
+                .saldo(new BigDecimal(saldo))
+                .build()).getId();
+    }
+
+}
@@ -1,10 +1,22 @@
 package com.springboot.test.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.test.dto.CambioCuentaDTO;
+import com.springboot.test.dto.CambiosCuentasDTO;
+import com.springboot.test.dto.CuentasEncontradasDTO;
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.PaginaDTO;
+import com.springboot.test.dto.ResultadoTransaccionDTO;
 import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.dto.VersionCuentaDTO;
+import com.springboot.test.exceptions.ClaveIdempotenciaReutilizadaException;
 import com.springboot.test.models.Cuenta;
+import com.springboot.test.models.Movimiento;
+import com.springboot.test.models.TipoMovimiento;
 import com.springboot.test.services.IBancoService;
 import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.IIdempotenciaService;
+import com.springboot.test.services.IMovimientoService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,21 +24,31 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static com.springboot.test.Datos.crearCuenta001;
 import static com.springboot.test.Datos.crearCuenta002;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,6 +64,10 @@ class CuentaControllerTest {
     private ICuentaService cuentaService;
     @MockBean
     private IBancoService bancoService;
+    @MockBean
+    private IIdempotenciaService idempotenciaService;
+    @MockBean
+    private IMovimientoService movimientoService;
 
     ObjectMapper objectMapper;
 
@@ -130,6 +156,181 @@ class CuentaControllerTest {
 
     }
 
+    @Test
+    void testTransferirIdempotente() throws Exception {
+
+        //Given
+        TransaccionDTO transaccionDTO = TransaccionDTO.builder()
+                .bancoDestinoId(1L)
+                .cuentaOrigenId(1L)
+                .cuentaDestinoId(2L)
+                .monto(new BigDecimal("100"))
+                .build();
+
+        Map<String, Object> respuestaGuardada = new HashMap<>();
+        respuestaGuardada.put("status", "OK");
+        respuestaGuardada.put("mensaje", "Transferencia realizada con éxito!");
+
+        //Simula un reintento: la clave ya tiene una respuesta guardada
+        when(idempotenciaService.ejecutar(eq("clave-1"), any(), any(), any())).thenReturn(respuestaGuardada);
+
+        //When
+        mockMvc.perform(post("/api/cuentas/transferir")
+                    .header("Idempotency-Key", "clave-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(transaccionDTO)))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mensaje").value("Transferencia realizada con éxito!"));
+
+        verify(idempotenciaService).ejecutar(eq("clave-1"), any(), any(), any());
+        verify(bancoService, never()).transferir(anyLong(), anyLong(), anyLong(), any());
+
+    }
+
+    @Test
+    void testTransferirClaveReutilizada() throws Exception {
+
+        //Given
+        TransaccionDTO transaccionDTO = TransaccionDTO.builder()
+                .bancoDestinoId(1L)
+                .cuentaOrigenId(1L)
+                .cuentaDestinoId(2L)
+                .monto(new BigDecimal("100"))
+                .build();
+        when(idempotenciaService.ejecutar(eq("clave-1"), any(), any(), any()))
+                .thenThrow(new ClaveIdempotenciaReutilizadaException("La clave clave-1 ya se uso con otra peticion"));
+
+        //When
+        mockMvc.perform(post("/api/cuentas/transferir")
+                    .header("Idempotency-Key", "clave-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(transaccionDTO)))
+        //Then
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(bancoService, never()).transferir(anyLong(), anyLong(), anyLong(), any());
+
+    }
+
+    @Test
+    void testTransferirLote() throws Exception {
+
+        //Given
+        List<TransaccionDTO> transacciones = Arrays.asList(
+                TransaccionDTO.builder()
+                        .bancoDestinoId(1L)
+                        .cuentaOrigenId(1L)
+                        .cuentaDestinoId(2L)
+                        .monto(new BigDecimal("100"))
+                        .build(),
+                TransaccionDTO.builder()
+                        .bancoDestinoId(1L)
+                        .cuentaOrigenId(1L)
+                        .cuentaDestinoId(2L)
+                        .monto(new BigDecimal("5000"))
+                        .build());
+
+        when(bancoService.transferirLote(any()))
+                .thenReturn(Arrays.asList(
+                        new ResultadoTransaccionDTO(0, EstadoTransaccion.REALIZADA, "Transferencia realizada con éxito!"),
+                        new ResultadoTransaccionDTO(1, EstadoTransaccion.DINERO_INSUFICIENTE, "Dinero insuficiente en la cuenta")));
+
+        //When
+        mockMvc.perform(post("/api/cuentas/transferir/lote")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(transacciones)))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.total", is(2)))
+                .andExpect(jsonPath("$.realizadas", is(1)))
+                .andExpect(jsonPath("$.resultados", hasSize(2)))
+                .andExpect(jsonPath("$.resultados[0].estado", is("REALIZADA")))
+                .andExpect(jsonPath("$.resultados[1].estado", is("DINERO_INSUFICIENTE")));
+
+        verify(bancoService).transferirLote(any());
+
+    }
+
+    @Test
+    void testDetalleConEtag() throws Exception {
+
+        //Given
+        Cuenta cuenta = crearCuenta001().orElseThrow();
+        cuenta.setVersion(3L);
+        cuenta.setModificado(Instant.parse("2021-04-01T10:15:30Z"));
+        when(cuentaService.findById(1L)).thenReturn(cuenta);
+
+        //When
+        mockMvc.perform(get("/api/cuentas/1"))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(header().string("Last-Modified", "Thu, 01 Apr 2021 10:15:30 GMT"))
+                .andExpect(jsonPath("$.persona").value("Andrés"));
+
+        verify(cuentaService, never()).findVersion(anyLong());
+
+    }
+
+    @Test
+    void testDetalleNoModificado() throws Exception {
+
+        //Given
+        when(cuentaService.findVersion(1L))
+                .thenReturn(new VersionCuentaDTO(3L, Instant.parse("2021-04-01T10:15:30Z")));
+
+        //When
+        mockMvc.perform(get("/api/cuentas/1")
+                    .header("If-None-Match", "\"3\""))
+        //Then
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(content().string(""));
+
+        //Solo se consulto la version, la cuenta no se cargo
+        verify(cuentaService).findVersion(1L);
+        verify(cuentaService, never()).findById(anyLong());
+
+    }
+
+    @Test
+    void testDetalleModificado() throws Exception {
+
+        //Given
+        Cuenta cuenta = crearCuenta001().orElseThrow();
+        cuenta.setVersion(4L);
+        when(cuentaService.findVersion(1L)).thenReturn(new VersionCuentaDTO(4L, null));
+        when(cuentaService.findById(1L)).thenReturn(cuenta);
+
+        //When
+        mockMvc.perform(get("/api/cuentas/1")
+                    .header("If-None-Match", "\"3\""))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.persona").value("Andrés"));
+
+    }
+
+    @Test
+    void testListarNoModificado() throws Exception {
+
+        //Given
+        when(cuentaService.versionCuentas()).thenReturn("12-7");
+
+        //When
+        mockMvc.perform(get("/api/cuentas")
+                    .header("If-None-Match", "\"12-7\""))
+        //Then
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"12-7\""));
+
+        verify(cuentaService, never()).findAll();
+
+    }
+
     @Test
     void testListar() throws Exception {
 
@@ -139,6 +340,7 @@ class CuentaControllerTest {
                 crearCuenta002().orElseThrow());
 
         when(cuentaService.findAll()).thenReturn(cuentaList);
+        when(cuentaService.versionCuentas()).thenReturn("2-2");
 
         /**
          * hasSize(nro) -> Se valida el número de elementos del array
@@ -160,6 +362,180 @@ class CuentaControllerTest {
 
     }
 
+    @Test
+    void testListarPagina() throws Exception {
+
+        //Given
+        when(cuentaService.findPagina(0L, 1))
+                .thenReturn(new PaginaDTO<>(Arrays.asList(crearCuenta001().orElseThrow()), 1L));
+
+        //When
+        mockMvc.perform(get("/api/cuentas")
+                    .param("limit", "1")
+                    .param("afterId", "0"))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.contenido", hasSize(1)))
+                .andExpect(jsonPath("$.contenido[0].persona").value("Andrés"))
+                .andExpect(jsonPath("$.siguiente", is(1)));
+
+        verify(cuentaService).findPagina(0L, 1);
+
+    }
+
+    @Test
+    void testListarPorIds() throws Exception {
+
+        //Given
+        when(cuentaService.findVarias(Arrays.asList(1L, 2L, 9L)))
+                .thenReturn(new CuentasEncontradasDTO(
+                        Arrays.asList(crearCuenta001().orElseThrow(), crearCuenta002().orElseThrow()),
+                        Arrays.asList(9L)));
+
+        //When
+        mockMvc.perform(get("/api/cuentas")
+                    .param("ids", "1,2,9"))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.cuentas", hasSize(2)))
+                .andExpect(jsonPath("$.cuentas[0].persona").value("Andrés"))
+                .andExpect(jsonPath("$.noEncontradas", hasSize(1)))
+                .andExpect(jsonPath("$.noEncontradas[0]", is(9)));
+
+        verify(cuentaService).findVarias(Arrays.asList(1L, 2L, 9L));
+
+    }
+
+    @Test
+    void testBuscarPorIds() throws Exception {
+
+        //Given
+        when(cuentaService.findVarias(Arrays.asList(1L, 2L)))
+                .thenReturn(new CuentasEncontradasDTO(
+                        Arrays.asList(crearCuenta001().orElseThrow(), crearCuenta002().orElseThrow()),
+                        Arrays.asList()));
+
+        //When
+        mockMvc.perform(post("/api/cuentas/varias")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2]"))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cuentas", hasSize(2)))
+                .andExpect(jsonPath("$.noEncontradas", hasSize(0)));
+
+    }
+
+    @Test
+    void testBuscarPorIdsSuperaElLimite() throws Exception {
+
+        //Given
+        when(cuentaService.findVarias(any()))
+                .thenThrow(new IllegalArgumentException("Se pueden pedir hasta 500 cuentas"));
+
+        //When
+        mockMvc.perform(post("/api/cuentas/varias")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[1,2,3]"))
+        //Then
+                .andExpect(status().isBadRequest());
+
+    }
+
+    @Test
+    void testCambios() throws Exception {
+
+        //Given
+        when(cuentaService.findCambios(10L, 2))
+                .thenReturn(new CambiosCuentasDTO(Arrays.asList(
+                        new CambioCuentaDTO(11L, 1L, false, crearCuenta001().orElseThrow()),
+                        new CambioCuentaDTO(12L, 5L, true, null)), 12L, true));
+
+        //When
+        mockMvc.perform(get("/api/cuentas/cambios")
+                    .param("desde", "10")
+                    .param("limit", "2"))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.cambios", hasSize(2)))
+                .andExpect(jsonPath("$.cambios[0].cambio", is(11)))
+                .andExpect(jsonPath("$.cambios[0].cuenta.persona").value("Andrés"))
+                .andExpect(jsonPath("$.cambios[1].cuentaId", is(5)))
+                .andExpect(jsonPath("$.cambios[1].eliminada", is(true)))
+                .andExpect(jsonPath("$.siguiente", is(12)))
+                .andExpect(jsonPath("$.hayMas", is(true)));
+
+        verify(cuentaService).findCambios(10L, 2);
+
+    }
+
+    @Test
+    void testMovimientos() throws Exception {
+
+        //Given
+        Movimiento debito = Movimiento.builder()
+                .id(7L)
+                .cuentaId(1L)
+                .cuentaContraparteId(2L)
+                .bancoId(1L)
+                .tipo(TipoMovimiento.DEBITO)
+                .monto(new BigDecimal("100"))
+                .fecha(LocalDateTime.now())
+                .build();
+        when(movimientoService.findPagina(1L, null, 1))
+                .thenReturn(new PaginaDTO<>(Arrays.asList(debito), 7L));
+
+        //When
+        mockMvc.perform(get("/api/cuentas/1/movimientos")
+                    .param("limit", "1"))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.contenido", hasSize(1)))
+                .andExpect(jsonPath("$.contenido[0].tipo").value("DEBITO"))
+                .andExpect(jsonPath("$.contenido[0].cuentaContraparteId", is(2)))
+                .andExpect(jsonPath("$.contenido[0].monto", is(100)))
+                .andExpect(jsonPath("$.siguiente", is(7)));
+
+        verify(movimientoService).findPagina(1L, null, 1);
+
+    }
+
+    @Test
+    void testListarStream() throws Exception {
+
+        //Given
+        doAnswer(invocacion -> {
+            Consumer<Cuenta> consumidor = invocacion.getArgument(0);
+            consumidor.accept(crearCuenta001().orElseThrow());
+            consumidor.accept(crearCuenta002().orElseThrow());
+            return null;
+        }).when(cuentaService).recorrer(any());
+
+        /**
+         * StreamingResponseBody se ejecuta de forma asincrona,
+         * asyncDispatch(...) -> espera a que termine para validar la respuesta
+         */
+
+        //When
+        MvcResult resultado = mockMvc.perform(get("/api/cuentas/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //Then
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().bytes((
+                        objectMapper.writeValueAsString(crearCuenta001().orElseThrow()) + "\n" +
+                        objectMapper.writeValueAsString(crearCuenta002().orElseThrow()) + "\n")
+                        .getBytes(StandardCharsets.UTF_8)));
+
+    }
+
     @Test
     void testGuardar() throws Exception {
 
@@ -0,0 +1,128 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.dto.ResultadoImportacionDTO;
+import com.springboot.test.services.IExportacionCuentaService;
+import com.springboot.test.services.IImportacionCuentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CuentaMasivaController.class)
+class CuentaMasivaControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private IImportacionCuentaService importacionService;
+    @MockBean
+    private IExportacionCuentaService exportacionService;
+
+    @Test
+    void testImportarCsv() throws Exception {
+
+        //Given
+        String csv = "persona,saldo\nAndrés,1000\nJohn,2000\n";
+        String[] leido = new String[1];
+        when(importacionService.importarCsv(any(Reader.class))).then(invocacion -> {
+            leido[0] = FileCopyUtils.copyToString(invocacion.getArgument(0, Reader.class));
+            return new ResultadoImportacionDTO(2, 10, 200);
+        });
+
+        //When
+        mockMvc.perform(post("/api/cuentas/importar")
+                    .contentType(CuentaMasivaController.TEXT_CSV_VALUE)
+                    .content(csv.getBytes(StandardCharsets.UTF_8)))
+        //Then
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.filas", is(2)))
+                .andExpect(jsonPath("$.filasPorSegundo", is(200)));
+
+        //Sin charset en el content type se lee como UTF-8
+        assertEquals(csv, leido[0]);
+        verify(importacionService, never()).importarNdjson(any());
+
+    }
+
+    @Test
+    void testImportarNdjson() throws Exception {
+
+        //Given
+        when(importacionService.importarNdjson(any(Reader.class)))
+                .thenReturn(new ResultadoImportacionDTO(1, 5, 200));
+
+        //When
+        mockMvc.perform(post("/api/cuentas/importar")
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .content("{\"persona\":\"Pepe\",\"saldo\":3000}\n"))
+        //Then
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.filas", is(1)));
+
+        verify(importacionService).importarNdjson(any(Reader.class));
+        verify(importacionService, never()).importarCsv(any());
+
+    }
+
+    @Test
+    void testExportarCsv() throws Exception {
+
+        //Given
+        when(exportacionService.exportarCsv(any(OutputStream.class), eq(new BigDecimal("1500")), isNull()))
+                .then(invocacion -> {
+                    invocacion.getArgument(0, OutputStream.class)
+                            .write("id,persona,saldo\n2,John,2000.00\n".getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        //When
+        MvcResult resultado = mockMvc.perform(get("/api/cuentas/exportar")
+                    .param("saldoMinimo", "1500"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //Then
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=cuentas.csv"))
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string("id,persona,saldo\n2,John,2000.00\n"));
+
+    }
+
+    @Test
+    void testExportarFormatoDesconocido() throws Exception {
+
+        mockMvc.perform(get("/api/cuentas/exportar")
+                    .param("formato", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(exportacionService, never()).exportarCsv(any(), any(), any());
+
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.models.Cuenta;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Levanta la aplicacion en modo reactivo (netty + CuentaReactivaController) con su propia base de datos
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.datasource.url=jdbc:h2:mem:reactivo;DB_CLOSE_DELAY=-1"
+})
+class CuentaReactivaControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Test
+    @Order(1)
+    void testListarStream() {
+
+        client.get().uri("/api/cuentas/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Cuenta.class)
+                .hasSize(2)
+                .consumeWith(respuesta -> {
+                    assertEquals("Andrés", respuesta.getResponseBody().get(0).getPersona());
+                    assertEquals("John", respuesta.getResponseBody().get(1).getPersona());
+                });
+
+    }
+
+    @Test
+    @Order(2)
+    void testDetalle() {
+
+        client.get().uri("/api/cuentas/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.persona").isEqualTo("Andrés")
+                .jsonPath("$.saldo").isEqualTo(1000);
+
+        client.get().uri("/api/cuentas/10")
+                .exchange()
+                .expectStatus().isNotFound();
+
+    }
+
+    @Test
+    @Order(3)
+    void testTransferir() {
+
+        TransaccionDTO transaccionDTO = TransaccionDTO.builder()
+                .cuentaOrigenId(1L)
+                .cuentaDestinoId(2L)
+                .bancoDestinoId(1L)
+                .monto(new BigDecimal("100"))
+                .build();
+
+        client.post().uri("/api/cuentas/transferir")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(transaccionDTO)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("OK")
+                .jsonPath("$.transaccion.cuentaOrigenId").isEqualTo(1);
+
+        client.get().uri("/api/cuentas/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.saldo").isEqualTo(900);
+
+        client.get().uri("/api/cuentas/1/movimientos")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.contenido[0].tipo").isEqualTo("DEBITO");
+
+    }
+
+    @Test
+    @Order(4)
+    void testTransferirIdempotente() {
+
+        TransaccionDTO transaccionDTO = TransaccionDTO.builder()
+                .cuentaOrigenId(1L)
+                .cuentaDestinoId(2L)
+                .bancoDestinoId(1L)
+                .monto(new BigDecimal("50"))
+                .build();
+
+        for (int intento = 0; intento < 2; intento++) {
+            client.post().uri("/api/cuentas/transferir")
+                    .header("Idempotency-Key", "reactivo-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(transaccionDTO)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.mensaje").isEqualTo("Transferencia realizada con éxito!");
+        }
+
+        //El reintento no vuelve a mover el dinero
+        client.get().uri("/api/cuentas/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.saldo").isEqualTo(850);
+
+        //La misma clave con otra transferencia
+        client.post().uri("/api/cuentas/transferir")
+                .header("Idempotency-Key", "reactivo-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(TransaccionDTO.builder()
+                        .cuentaOrigenId(1L)
+                        .cuentaDestinoId(2L)
+                        .bancoDestinoId(1L)
+                        .monto(new BigDecimal("60"))
+                        .build())
+                .exchange()
+                .expectStatus().isEqualTo(422);
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.config.EventosSaldoProperties;
+import com.springboot.test.dto.EventoSaldoDTO;
+import com.springboot.test.services.IEventoSaldoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(EventoSaldoController.class)
+@EnableConfigurationProperties(EventosSaldoProperties.class)
+class EventoSaldoControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private IEventoSaldoService eventoSaldoService;
+
+    @Test
+    void testEventosDeUnaCuenta() throws Exception {
+
+        //Given
+        AtomicReference<IEventoSaldoService.Receptor> receptor = new AtomicReference<>();
+        Runnable cancelar = () -> { };
+        when(eventoSaldoService.suscribir(eq(List.of(1L)), any())).thenAnswer(invocacion -> {
+            receptor.set(invocacion.getArgument(1));
+            return cancelar;
+        });
+
+        //When
+        MvcResult resultado = mockMvc.perform(get("/api/cuentas/1/eventos").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        receptor.get().enviar(new EventoSaldoDTO(1L, new BigDecimal("900"), 3L));
+        receptor.get().cerrar();
+
+        //Then
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:saldo")))
+                .andExpect(content().string(containsString("id:3")))
+                .andExpect(content().string(containsString("\"saldo\":900")));
+
+    }
+
+    @Test
+    void testEventosDeVariasCuentas() throws Exception {
+
+        //Given
+        when(eventoSaldoService.suscribir(anyCollection(), any())).thenReturn(() -> { });
+
+        //When
+        mockMvc.perform(get("/api/cuentas/eventos").param("ids", "1,2"))
+        //Then
+                .andExpect(request().asyncStarted());
+        verify(eventoSaldoService).suscribir(eq(List.of(1L, 2L)), any());
+
+    }
+
+    @Test
+    void testEventosDemasiadasCuentas() throws Exception {
+
+        //Given
+        when(eventoSaldoService.suscribir(anyCollection(), any())).thenThrow(new IllegalArgumentException());
+
+        //When
+        mockMvc.perform(get("/api/cuentas/eventos").param("ids", "1,2,3"))
+        //Then
+                .andExpect(status().isBadRequest());
+
+    }
+
+    @Test
+    void testEventosCuentaInexistente() throws Exception {
+
+        //Given
+        when(eventoSaldoService.suscribir(anyCollection(), any())).thenThrow(new NoSuchElementException());
+
+        //When
+        mockMvc.perform(get("/api/cuentas/99/eventos"))
+        //Then
+                .andExpect(status().isNotFound());
+
+    }
+
+}
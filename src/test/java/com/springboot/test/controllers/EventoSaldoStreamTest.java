@@ -0,0 +1,286 @@
+package com.springboot.test.controllers;
+
+import com.springboot.test.config.EventosSaldoProperties;
+import com.springboot.test.dto.EventoSaldoDTO;
+import com.springboot.test.models.Cuenta;
+import com.springboot.test.repositories.CuentaRepository;
+import com.springboot.test.services.EventoSaldoServiceImpl;
+import com.springboot.test.services.IBancoService;
+import com.springboot.test.services.ICuentaService;
+import com.springboot.test.services.IEventoSaldoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Saldos por Server-Sent Events contra el servidor real: el saldo inicial y un evento por cada commit
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:eventos;DB_CLOSE_DELAY=-1",
+        "app.eventos.saldos.latido=200ms"
+})
+class EventoSaldoStreamTest {
+
+    @LocalServerPort
+    private int puerto;
+    @Autowired
+    private ICuentaService cuentaService;
+    @Autowired
+    private IBancoService bancoService;
+    @Autowired
+    private IEventoSaldoService eventoSaldoService;
+    @Autowired
+    private CuentaRepository cuentaRepository;
+
+    private final HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void testSaldoInicialYUnEventoPorCommit() throws Exception {
+
+        //Given
+        Long origen = crearCuenta("1000");
+        Long destino = crearCuenta("0");
+        BlockingQueue<String> datos = new LinkedBlockingQueue<>();
+        CompletableFuture<HttpResponse<Stream<String>>> respuesta = conectar("/api/cuentas/" + origen + "/eventos", datos);
+
+        //When
+        String inicial = datos.poll(10, TimeUnit.SECONDS);
+        bancoService.transferir(1L, origen, destino, new BigDecimal("100"));
+        String transferencia = datos.poll(10, TimeUnit.SECONDS);
+
+        //Then
+        assertEquals(200, respuesta.get(10, TimeUnit.SECONDS).statusCode());
+        assertNotNull(inicial);
+        assertTrue(inicial.contains("\"saldo\":1000"), inicial);
+        assertNotNull(transferencia);
+        assertTrue(transferencia.contains("\"saldo\":900"), transferencia);
+        //El destino no esta suscrito en esta conexion
+        assertNull(datos.poll(500, TimeUnit.MILLISECONDS));
+
+        respuesta.get().body().close();
+
+    }
+
+    @Test
+    void testVariasCuentasEnUnaConexion() throws Exception {
+
+        //Given
+        Long origen = crearCuenta("500");
+        Long destino = crearCuenta("0");
+        BlockingQueue<String> datos = new LinkedBlockingQueue<>();
+        conectar("/api/cuentas/eventos?ids=" + origen + "," + destino, datos);
+        assertNotNull(datos.poll(10, TimeUnit.SECONDS));
+        assertNotNull(datos.poll(10, TimeUnit.SECONDS));
+
+        //When
+        bancoService.transferir(1L, origen, destino, new BigDecimal("200"));
+
+        //Then
+        String primero = datos.poll(10, TimeUnit.SECONDS);
+        String segundo = datos.poll(10, TimeUnit.SECONDS);
+        assertNotNull(primero);
+        assertNotNull(segundo);
+        String eventos = primero + segundo;
+        assertTrue(eventos.contains("\"cuentaId\":" + origen + ",\"saldo\":300"), eventos);
+        assertTrue(eventos.contains("\"cuentaId\":" + destino + ",\"saldo\":200"), eventos);
+
+    }
+
+    @Test
+    void testLaConexionCerradaSeLibera() throws Exception {
+
+        //Given
+        Long cuenta = crearCuenta("10");
+        int antes = eventoSaldoService.suscripciones();
+        BlockingQueue<String> datos = new LinkedBlockingQueue<>();
+        HttpResponse<Stream<String>> respuesta = conectar("/api/cuentas/" + cuenta + "/eventos", datos)
+                .get(10, TimeUnit.SECONDS);
+        assertNotNull(datos.poll(10, TimeUnit.SECONDS));
+        assertEquals(antes + 1, eventoSaldoService.suscripciones());
+
+        //When
+        respuesta.body().close();
+
+        //Then
+        //El latido descubre la conexion cerrada
+        long limite = System.currentTimeMillis() + 10_000;
+        while (eventoSaldoService.suscripciones() > antes && System.currentTimeMillis() < limite) {
+            Thread.sleep(100);
+        }
+        assertEquals(antes, eventoSaldoService.suscripciones());
+
+    }
+
+    @Test
+    void testUnClienteLentoNoDemoraALosDemas() throws Exception {
+
+        //Given
+        Long cuenta = crearCuenta("300");
+        CountDownLatch liberar = new CountDownLatch(1);
+        EventoSaldoServiceImpl servicio = new EventoSaldoServiceImpl(cuentaRepository, properties(2, 10), new SimpleMeterRegistry());
+
+        try {
+            //Un cliente lento ocupa uno de los dos hilos de envio
+            servicio.suscribir(List.of(cuenta), new ReceptorDePrueba(liberar));
+            ReceptorDePrueba rapido = new ReceptorDePrueba(null);
+
+            //When
+            servicio.suscribir(List.of(cuenta), rapido);
+            EventoSaldoDTO inicial = rapido.recibidos.poll(5, TimeUnit.SECONDS);
+            servicio.publicar(cuenta, new EventoSaldoDTO(cuenta, new BigDecimal("250"), Long.MAX_VALUE));
+            EventoSaldoDTO publicado = rapido.recibidos.poll(5, TimeUnit.SECONDS);
+
+            //Then
+            assertNotNull(inicial);
+            assertEquals(0, new BigDecimal("300").compareTo(inicial.getSaldo()));
+            assertNotNull(publicado);
+            assertEquals(0, new BigDecimal("250").compareTo(publicado.getSaldo()));
+        } finally {
+            liberar.countDown();
+            servicio.destroy();
+        }
+
+    }
+
+    @Test
+    void testConLaColaDeEnviosLlenaLaSuscripcionSeCierra() throws Exception {
+
+        //Given
+        Long cuenta = crearCuenta("400");
+        CountDownLatch liberar = new CountDownLatch(1);
+        EventoSaldoServiceImpl servicio = new EventoSaldoServiceImpl(cuentaRepository, properties(1, 1), new SimpleMeterRegistry());
+
+        try {
+            //El unico hilo queda escribiendo a un cliente lento y otra suscripcion espera en la cola
+            ReceptorDePrueba lento = new ReceptorDePrueba(liberar);
+            servicio.suscribir(List.of(cuenta), lento);
+            assertTrue(lento.enviando.await(5, TimeUnit.SECONDS));
+            ReceptorDePrueba enCola = new ReceptorDePrueba(null);
+            servicio.suscribir(List.of(cuenta), enCola);
+            ReceptorDePrueba sinLugar = new ReceptorDePrueba(null);
+
+            //When
+            servicio.suscribir(List.of(cuenta), sinLugar);
+
+            //Then
+            assertTrue(sinLugar.cerrado.await(5, TimeUnit.SECONDS));
+            assertTrue(sinLugar.recibidos.isEmpty());
+            assertEquals(2, servicio.suscripciones());
+            //La que espero en la cola recibe su saldo cuando el hilo se libera
+            liberar.countDown();
+            EventoSaldoDTO inicial = enCola.recibidos.poll(5, TimeUnit.SECONDS);
+            assertNotNull(inicial);
+            assertEquals(0, new BigDecimal("400").compareTo(inicial.getSaldo()));
+            assertEquals(1, enCola.cerrado.getCount());
+        } finally {
+            liberar.countDown();
+            servicio.destroy();
+        }
+
+    }
+
+    @Test
+    void testCuentaInexistente() throws Exception {
+
+        //When
+        HttpResponse<Void> respuesta = cliente.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/api/cuentas/999999/eventos")).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        //Then
+        assertEquals(404, respuesta.statusCode());
+
+    }
+
+    /**
+     * Deja en la cola las lineas "data:" de los eventos a medida que llegan
+     */
+    private CompletableFuture<HttpResponse<Stream<String>>> conectar(String ruta, BlockingQueue<String> datos) {
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        CompletableFuture<HttpResponse<Stream<String>>> respuesta = cliente.sendAsync(peticion, HttpResponse.BodyHandlers.ofLines());
+        respuesta.thenAcceptAsync(r -> {
+            try (Stream<String> lineas = r.body()) {
+                lineas.filter(linea -> linea.startsWith("data:")).forEach(datos::add);
+            } catch (RuntimeException e) {
+                //La conexion se cerro
+            }
+        });
+        return respuesta;
+    }
+
+    private static EventosSaldoProperties properties(int hilos, int cola) {
+        EventosSaldoProperties properties = new EventosSaldoProperties();
+        properties.setHilosEnvio(hilos);
+        properties.setColaEnvios(cola);
+        return properties;
+    }
+
+    /**
+     * Registra los eventos de saldo; con liberar cada envio se bloquea como la escritura a un cliente que no lee
+     */
+    private static class ReceptorDePrueba implements IEventoSaldoService.Receptor {
+
+        private final CountDownLatch liberar;
+        private final BlockingQueue<EventoSaldoDTO> recibidos = new LinkedBlockingQueue<>();
+        private final CountDownLatch enviando = new CountDownLatch(1);
+        private final CountDownLatch cerrado = new CountDownLatch(1);
+
+        ReceptorDePrueba(CountDownLatch liberar) {
+            this.liberar = liberar;
+        }
+
+        @Override
+        public void enviar(EventoSaldoDTO evento) throws IOException {
+            enviando.countDown();
+            if (liberar != null) {
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            recibidos.add(evento);
+        }
+
+        @Override
+        public void latido() {
+        }
+
+        @Override
+        public void cerrar() {
+            cerrado.countDown();
+        }
+
+    }
+
+    private Long crearCuenta(String saldo) {
+        return cuentaService.guardar(Cuenta.builder()
+                .persona("Eventos")
+                .saldo(new BigDecimal(saldo))
+                .build()).getId();
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.springboot.test.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.test.dto.EstadoTransaccion;
+import com.springboot.test.dto.TransaccionDTO;
+import com.springboot.test.exceptions.ColaTransferenciasLlenaException;
+import com.springboot.test.models.EstadoEncolada;
+import com.springboot.test.models.TransferenciaEncolada;
+import com.springboot.test.services.ITransferenciaAsincronaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(TransferenciaController.class)
+class TransferenciaControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ITransferenciaAsincronaService transferenciaService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testEncolar() throws Exception {
+
+        //Given
+        TransaccionDTO transaccion = new TransaccionDTO(1L, 2L, 1L, new BigDecimal("100"));
+        when(transferenciaService.encolar(any(TransaccionDTO.class))).thenReturn(TransferenciaEncolada.builder()
+                .id(7L)
+                .cuentaOrigenId(1L)
+                .cuentaDestinoId(2L)
+                .bancoId(1L)
+                .monto(new BigDecimal("100"))
+                .estado(EstadoEncolada.PENDIENTE)
+                .build());
+
+        //When
+        mockMvc.perform(post("/api/cuentas/transferencias")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(transaccion)))
+        //Then
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, endsWith("/api/cuentas/transferencias/7")))
+                .andExpect(jsonPath("$.id", is(7)))
+                .andExpect(jsonPath("$.estado", is("PENDIENTE")));
+
+    }
+
+    @Test
+    void testEncolarConLaColaLlena() throws Exception {
+
+        //Given
+        TransaccionDTO transaccion = new TransaccionDTO(1L, 2L, 1L, new BigDecimal("100"));
+        when(transferenciaService.encolar(any(TransaccionDTO.class)))
+                .thenThrow(new ColaTransferenciasLlenaException("La cola de transferencias esta llena"));
+
+        //When
+        mockMvc.perform(post("/api/cuentas/transferencias")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(transaccion)))
+        //Then
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+
+    }
+
+    @Test
+    void testEncolarMontoInvalido() throws Exception {
+
+        //Given
+        TransaccionDTO transaccion = new TransaccionDTO(1L, 2L, 1L, BigDecimal.ZERO);
+
+        //When
+        mockMvc.perform(post("/api/cuentas/transferencias")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(transaccion)))
+        //Then
+                .andExpect(status().isBadRequest());
+
+        verify(transferenciaService, never()).encolar(any());
+
+    }
+
+    @Test
+    void testEstado() throws Exception {
+
+        //Given
+        when(transferenciaService.findById(7L)).thenReturn(TransferenciaEncolada.builder()
+                .id(7L)
+                .estado(EstadoEncolada.FALLIDA)
+                .resultado(EstadoTransaccion.DINERO_INSUFICIENTE)
+                .mensaje("Dinero insuficiente en la cuenta")
+                .build());
+        when(transferenciaService.findById(8L)).thenThrow(NoSuchElementException.class);
+
+        //When
+        mockMvc.perform(get("/api/cuentas/transferencias/7"))
+        //Then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.estado", is("FALLIDA")))
+                .andExpect(jsonPath("$.resultado", is("DINERO_INSUFICIENTE")))
+                .andExpect(jsonPath("$.mensaje", is("Dinero insuficiente en la cuenta")));
+
+        mockMvc.perform(get("/api/cuentas/transferencias/8"))
+                .andExpect(status().isNotFound());
+
+    }
+
+}